@@ -17,8 +17,10 @@ import nav.statusplattform.core.enums.OpsMessageSeverity;
 import nav.statusplattform.core.enums.RuleType;
 import nav.statusplattform.core.enums.ServiceStatus;
 import nav.statusplattform.core.enums.ServiceType;
+import nav.statusplattform.core.records.ChartPoint;
 import no.nav.statusplattform.api.TeamKatalogIntegrasjon.TeamKatalogKlient;
 import no.nav.statusplattform.generated.api.AreaDto;
+import no.nav.statusplattform.generated.api.ChartPointDto;
 import no.nav.statusplattform.generated.api.DashboardDto;
 import no.nav.statusplattform.generated.api.DashboardNameIdDto;
 import no.nav.statusplattform.generated.api.HelpTextDto;
@@ -284,6 +286,18 @@ public class EntityDtoMappers {
         return dto;
     }
 
+    public static List<ChartPointDto> toChartPointDto(List<ChartPoint> points) {
+        return points.stream().map(EntityDtoMappers::toChartPointDto).collect(Collectors.toList());
+    }
+
+    public static ChartPointDto toChartPointDto(ChartPoint point) {
+        return new ChartPointDto()
+                .timestamp(point.getTimestamp().toOffsetDateTime())
+                .responseTime(point.getResponseTime())
+                .status(StatusDto.fromValue(point.getStatus().getDbRepresentation()))
+                .count(point.getCount());
+    }
+
     public static RecordDto toRecordDtoFromRecordDelta(RecordDeltaEntity recordDeltaEntity){
         RecordDto dto = new RecordDto();
         dto.setId(recordDeltaEntity.getId());
@@ -2,14 +2,17 @@ package no.nav.statusplattform.api.Helpers;
 
 import nav.statusplattform.core.entities.AreaEntity;
 import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.records.StatusTree;
 import nav.statusplattform.core.repositories.AreaRepository;
 import nav.statusplattform.core.repositories.DashboardRepository;
 import nav.statusplattform.core.repositories.RecordRepository;
 import nav.statusplattform.core.repositories.ServiceRepository;
 import no.nav.statusplattform.api.EntityDtoMappers;
 import no.nav.statusplattform.generated.api.AreaDto;
+import no.nav.statusplattform.generated.api.AreaSummaryDto;
 import no.nav.statusplattform.generated.api.ServiceDto;
 import no.nav.statusplattform.generated.api.ServiceTypeDto;
+import no.nav.statusplattform.generated.api.StatusDto;
 import no.nav.statusplattform.generated.api.SubAreaDto;
 import org.actioncontroller.HttpRequestException;
 import org.fluentjdbc.DbContext;
@@ -18,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -26,6 +30,7 @@ public class AreaControllerHelper {
     private final DashboardRepository dashboardRepository;
     private final ServiceRepository serviceRepository;
     private final RecordRepository recordRepository;
+    private final DbContext dbContext;
     Comparator<AreaDto> areaNameComparator
             = Comparator.comparing(a -> a.getName().toLowerCase());
 
@@ -34,6 +39,7 @@ public class AreaControllerHelper {
         this.dashboardRepository = new DashboardRepository(dbContext);
         this.serviceRepository = new ServiceRepository(dbContext);
         this.recordRepository = new RecordRepository(dbContext);
+        this.dbContext = dbContext;
     }
 
 
@@ -54,6 +60,34 @@ public class AreaControllerHelper {
     }
 
 
+    //Status per område leses fra StatusTree, uten å hente tjenestene i områdene
+    public List<AreaSummaryDto> getAreaSummaries(){
+        StatusTree.ensureBuilt(dbContext);
+        return areaRepository.retriveAllShallow().stream()
+                .map(area -> toAreaSummaryDto(area, StatusTree.getArea(area.getId())))
+                .sorted(Comparator.comparing(a -> a.getName().toLowerCase()))
+                .collect(Collectors.toList());
+    }
+
+    private static AreaSummaryDto toAreaSummaryDto(AreaEntity area, Optional<StatusTree.StatusCounts> statusCounts) {
+        AreaSummaryDto dto = new AreaSummaryDto()
+                .id(area.getId())
+                .name(area.getName())
+                .numberOfServices(0)
+                .ok(0)
+                .issue(0)
+                .down(0)
+                .unknown(0);
+        statusCounts.ifPresent(counts -> dto
+                .status(counts.getWorstStatus().map(status -> StatusDto.fromValue(status.getDbRepresentation())).orElse(null))
+                .numberOfServices(counts.getNumberOfServices())
+                .ok(counts.getOk())
+                .issue(counts.getIssue())
+                .down(counts.getDown())
+                .unknown(counts.getUnknown()));
+        return dto;
+    }
+
     public List<AreaDto> getAllAreas(){
         List<AreaDto> result = new ArrayList<>();
         Map<AreaEntity,List<ServiceEntity>> areaAndServises  = areaRepository.retrieveAll();
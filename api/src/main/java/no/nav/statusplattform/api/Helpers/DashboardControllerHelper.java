@@ -1,12 +1,16 @@
 package no.nav.statusplattform.api.Helpers;
 
+import nav.statusplattform.core.cache.DashboardResponseCache;
+import nav.statusplattform.core.entities.AreaWithServices;
+import nav.statusplattform.core.entities.DashboardEntity;
+import nav.statusplattform.core.entities.RecordEntity;
 import nav.statusplattform.core.openingHours.OpeningHoursDailyMap;
 import nav.statusplattform.core.openingHours.OpeningHoursDisplayData;
 import nav.statusplattform.core.openingHours.OpeningHoursParser;
-import nav.statusplattform.core.repositories.AreaRepository;
+import nav.statusplattform.core.records.LatestStatusCache;
+import nav.statusplattform.core.records.StatusTree;
 import nav.statusplattform.core.repositories.DashboardRepository;
 import nav.statusplattform.core.repositories.RecordRepository;
-import nav.statusplattform.core.repositories.SubAreaRepository;
 import no.nav.statusplattform.api.EntityDtoMappers;
 import no.nav.statusplattform.generated.api.DashboardDto;
 import no.nav.statusplattform.generated.api.DashboardUpdateDto;
@@ -15,40 +19,58 @@ import no.nav.statusplattform.generated.api.RecordDto;
 import no.nav.statusplattform.generated.api.ServiceDto;
 import no.nav.statusplattform.generated.api.StatusDto;
 import org.fluentjdbc.DbContext;
+import org.jsonbuddy.pojo.JsonGenerator;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class DashboardControllerHelper {
 
     private final DashboardRepository dashboardRepository;
     private final RecordRepository recordRepository;
-    private final AreaRepository areaRepository;
-    private final SubAreaRepository subAreaRepository;
     private final OpsControllerHelper opsControllerHelper;
+    private final DbContext dbContext;
 
 
     public DashboardControllerHelper(DbContext dbContext) {
         this.dashboardRepository = new DashboardRepository(dbContext);
         this.recordRepository = new RecordRepository(dbContext);
-        this.areaRepository = new AreaRepository(dbContext);
-        this.subAreaRepository = new SubAreaRepository(dbContext);
         this.opsControllerHelper = new OpsControllerHelper(dbContext);
+        this.dbContext = dbContext;
 
     }
 
     public DashboardDto getDashboard(UUID dashboard_id){
-        DashboardDto dashboardDto = EntityDtoMappers.toDashboardDtoDeep(dashboardRepository.retrieveOne(dashboard_id));
+        long cacheGeneration = DashboardResponseCache.getGeneration();
+        long started = System.nanoTime();
+        DashboardDto dashboardDto = buildDashboard(dashboard_id);
+        //Serialiseres som i @JsonBody, slik at neste forespørsel kan besvares fra cachen
+        DashboardResponseCache.put(dashboard_id,
+                JsonGenerator.generate(dashboardDto).toJson().getBytes(StandardCharsets.UTF_8),
+                getServiceIds(dashboardDto),
+                cacheGeneration,
+                Duration.ofNanos(System.nanoTime() - started));
+        return dashboardDto;
+    }
 
-        setSubAreas(dashboardDto);
+    private DashboardDto buildDashboard(UUID dashboard_id){
+        //Områder, tjenester og underområder hentes samlet, status fra cachen
+        Map.Entry<DashboardEntity, List<AreaWithServices>> dashboard = dashboardRepository.retrieveOne(dashboard_id);
+        DashboardDto dashboardDto = EntityDtoMappers.toDashboardDtoDeep(dashboard);
+        StatusTree.ensureBuilt(dbContext);
 
-        setStatusOnAllServisesDirectlyUnderArea(dashboardDto);
+        setSubAreas(dashboardDto, dashboard.getValue());
 
-        setStatusOnAllServisesInSubAreas(dashboardDto);
+        setStatusOnAllServices(dashboardDto);
 
         setStatusOnSubAreas(dashboardDto);
 
@@ -61,6 +83,15 @@ public class DashboardControllerHelper {
         return dashboardDto;
     }
 
+    private static Set<UUID> getServiceIds(DashboardDto dashboardDto) {
+        return dashboardDto.getAreas().stream()
+                .flatMap(area -> Stream.concat(
+                        area.getServices().stream(),
+                        area.getSubAreas().stream().flatMap(subArea -> subArea.getServices().stream())))
+                .map(ServiceDto::getId)
+                .collect(Collectors.toSet());
+    }
+
     private void setOpeningHoursOnServices(DashboardDto dashboardDto){
         Map<UUID, OpeningHoursDisplayData>todaysDisplayData  = OpeningHoursDailyMap.getMap();
         dashboardDto.getAreas().forEach(a -> {
@@ -84,20 +115,19 @@ public class DashboardControllerHelper {
         });
     }
 
-    private void setSubAreas(DashboardDto dashboardDto) {
-        dashboardDto.getAreas().forEach(areaDto -> {
-            areaDto.setSubAreas(areaRepository.getSubAreasOnArea(areaDto.getId())
-                            .stream()
-                            .map(subAreaEntity -> EntityDtoMappers.toSubAreaDtoDeep(subAreaEntity, subAreaRepository.getServicesOnSubArea(subAreaEntity.getId())))
-                            .collect(Collectors.toList()));
-                });
+    private void setSubAreas(DashboardDto dashboardDto, List<AreaWithServices> areas) {
+        for (int i = 0; i < areas.size(); i++) {
+            dashboardDto.getAreas().get(i).setSubAreas(areas.get(i).getSubAreas()
+                    .stream()
+                    .map(subArea -> EntityDtoMappers.toSubAreaDtoDeep(subArea.getSubArea(), subArea.getServices()))
+                    .collect(Collectors.toList()));
+        }
     }
 
     private void setStatusOnSubAreas(DashboardDto dashboardDto) {
         dashboardDto.getAreas().forEach(areaDto ->
                 areaDto.getSubAreas().forEach(
-                        subArea -> subArea.setStatus(getWorstStatusAmongst(subArea.getServices()))
-
+                        subArea -> subArea.setStatus(getWorstStatus(StatusTree.getSubArea(subArea.getId()), subArea.getServices()))
                         )
                 );
     }
@@ -109,51 +139,44 @@ public class DashboardControllerHelper {
                     areaDto.getSubAreas().forEach(subArea->
                             allServicesInAreaAndSubAreas.addAll(subArea.getServices())
                     );
-                    areaDto.setStatus(getWorstStatusAmongst(allServicesInAreaAndSubAreas));
+                    areaDto.setStatus(getWorstStatus(StatusTree.getArea(areaDto.getId()), allServicesInAreaAndSubAreas));
                 });
     }
 
-    private void setStatusOnAllServisesInSubAreas(DashboardDto dashboardDto) {
-        dashboardDto.getAreas()
-                .forEach(area -> area.getSubAreas().forEach(subArea -> subArea.getServices()
-                        .forEach(this::settStatusOnService)));
+    //Status fra StatusTree dersom noden har de samme tjenestene som dashboardet viser.
+    //Er katalogen endret på en annen instans siden treet ble bygget, beregnes statusen fra tjenestene.
+    private static StatusDto getWorstStatus(Optional<StatusTree.StatusCounts> statusCounts, List<ServiceDto> services) {
+        long numberOfServices = services.stream().map(ServiceDto::getId).distinct().count();
+        return statusCounts
+                .filter(counts -> counts.getNumberOfServices() == numberOfServices)
+                .map(counts -> counts.getWorstStatus().map(status -> StatusDto.fromValue(status.getDbRepresentation())).orElse(null))
+                .orElseGet(() -> getWorstStatusAmongst(services));
     }
 
-    private void setStatusOnAllServisesDirectlyUnderArea(DashboardDto dashboardDto) {
-        dashboardDto.getAreas()
-                .forEach(area -> area.getServices()
-                        .forEach(this::settStatusOnService));
+    private void setStatusOnAllServices(DashboardDto dashboardDto) {
+        List<ServiceDto> services = new ArrayList<>();
+        dashboardDto.getAreas().forEach(area -> {
+            services.addAll(area.getServices());
+            area.getSubAreas().forEach(subArea -> services.addAll(subArea.getServices()));
+        });
+        Map<UUID, Optional<RecordEntity>> statuses = LatestStatusCache.getAll(
+                services.stream().map(ServiceDto::getId).collect(Collectors.toSet()), recordRepository);
+        services.forEach(service -> service.setRecord(statuses.get(service.getId())
+                .map(EntityDtoMappers::toRecordDto)
+                .orElseGet(RecordDto::new)));
     }
 
-    private void settStatusOnService(ServiceDto service){
-        if(recordRepository.getLatestRecord(service.getId()).isPresent()){
-            service.setRecord(
-                    EntityDtoMappers.toRecordDto(recordRepository.getLatestRecord(service.getId()).get())
-            );
-        }
-        else if(recordRepository.getActiveRecordDelta(service.getId()).isPresent()){
-            service.setRecord(
-                    EntityDtoMappers.toRecordDtoFromRecordDelta(recordRepository.getActiveRecordDelta(service.getId()).get())
-                    );
-        }
-        else{
-            service.setRecord(new RecordDto());
+    private static StatusDto getWorstStatusAmongst(List<ServiceDto> services){
+        boolean issue = false;
+        boolean ok = false;
+        for (ServiceDto service : services) {
+            StatusDto status = service.getRecord() != null ? service.getRecord().getStatus() : null;
+            if (status == StatusDto.DOWN) return StatusDto.DOWN;
+            issue |= status == StatusDto.ISSUE;
+            ok |= status == StatusDto.OK;
         }
-    }
-
-    private StatusDto getWorstStatusAmongst(List<ServiceDto> services){
-        if(services.stream()
-                .map(s -> s.getRecord() != null? s.getRecord().getStatus(): null)
-                .collect(Collectors.toList())
-                .contains(StatusDto.DOWN)) return StatusDto.DOWN;
-        if(services.stream()
-                .map(s -> s.getRecord() != null? s.getRecord().getStatus(): null)
-                .collect(Collectors.toList())
-                .contains(StatusDto.ISSUE)) return StatusDto.ISSUE;
-        if(services.stream()
-                .map(s -> s.getRecord() != null? s.getRecord().getStatus(): null)
-                .collect(Collectors.toList())
-                .contains(StatusDto.OK)) return StatusDto.OK;
+        if (issue) return StatusDto.ISSUE;
+        if (ok) return StatusDto.OK;
         return null;
     }
 
@@ -13,6 +13,7 @@ import org.fluentjdbc.DbContext;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -61,29 +62,27 @@ public class OpsControllerHelper {
     }
 
     public List<OPSmessageDto> getOpsMessagesForDashboard(DashboardDto dashboardDto){
-        ArrayList<UUID> servicesOnDashboard = new ArrayList<>();
-
-        dashboardDto.getAreas().forEach(area ->
-                area.getServices().stream().map(ServiceDto::getId).forEach(serviceId -> {
-                            if(!servicesOnDashboard.contains(serviceId)){
-                                servicesOnDashboard.add(serviceId);
-                            }
-                        }
-                )
-        );
-        //Adding opsmessages without services
-        Map<OpsMessageEntity, List<ServiceEntity>> allActive = opsRepository.retrieveAllActive();
-        List<OPSmessageDto> result = new ArrayList<>();
-        allActive.forEach((k,v) ->{
-            if(allActive.get(k).isEmpty()){
-                result.add(EntityDtoMappers.toOpsMessageDtoShallow(k));
+        Set<UUID> servicesOnDashboard = dashboardDto.getAreas().stream()
+                .flatMap(area -> area.getServices().stream())
+                .map(ServiceDto::getId)
+                .collect(Collectors.toSet());
+        //Alle aktive hentes i én spørring: meldinger uten tjenester, og meldinger med tjenester på dashboardet
+        List<OPSmessageDto> withoutServices = new ArrayList<>();
+        List<OPSmessageDto> forServices = new ArrayList<>();
+        opsRepository.retrieveAllActive().forEach((opsMessage, services) -> {
+            if (services.isEmpty()) {
+                withoutServices.add(EntityDtoMappers.toOpsMessageDtoShallow(opsMessage));
+                return;
             }
-        } );
-        //Adding opssmessages with service on dashboard
-        Map<OpsMessageEntity, List<ServiceEntity>> messagesForServices = opsRepository.retrieveAllActiveForServices(servicesOnDashboard);
-        messagesForServices.forEach((opsMessage, services) ->
-                result.add(EntityDtoMappers.toOpsMessageDtoDeep(opsMessage,services)));
-
-        return  result;
+            List<ServiceEntity> servicesOnDashboardForMessage = services.stream()
+                    .filter(service -> servicesOnDashboard.contains(service.getId()))
+                    .collect(Collectors.toList());
+            if (!servicesOnDashboardForMessage.isEmpty()) {
+                forServices.add(EntityDtoMappers.toOpsMessageDtoDeep(opsMessage, servicesOnDashboardForMessage));
+            }
+        });
+        List<OPSmessageDto> result = new ArrayList<>(withoutServices);
+        result.addAll(forServices);
+        return result;
     }
 }
@@ -1,61 +1,264 @@
 package no.nav.statusplattform.api.Helpers;
 
-import nav.statusplattform.core.entities.RecordDeltaEntity;
+import nav.statusplattform.core.cache.DashboardResponseCache;
+import nav.statusplattform.core.cache.ResourceVersions;
 import nav.statusplattform.core.entities.RecordEntity;
 import nav.statusplattform.core.enums.RecordSource;
 import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.records.ChartDownsampler;
+import nav.statusplattform.core.records.ChartPoint;
+import nav.statusplattform.core.records.LatestStatusCache;
+import nav.statusplattform.core.records.RecentRecordBuffer;
+import nav.statusplattform.core.records.RecordCursor;
+import nav.statusplattform.core.records.ResponseTimeHistogram;
+import nav.statusplattform.core.records.ResponseTimeHistogramBuffer;
+import nav.statusplattform.core.records.StatusDeltaCounterBuffer;
+import nav.statusplattform.core.records.StatusDeltaWriter;
+import nav.statusplattform.core.repositories.AfterCommit;
 import nav.statusplattform.core.repositories.RecordRepository;
+import nav.statusplattform.core.repositories.ResponseTimeHistogramRepository;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import nav.statusplattform.core.repositories.TimeOrderedUuid;
 import no.nav.statusplattform.generated.api.RecordDto;
+import no.nav.statusplattform.generated.api.ResponseTimeDto;
+import org.actioncontroller.HttpRequestException;
 import org.fluentjdbc.DbContext;
+import org.jsonbuddy.parse.JsonParseException;
+import org.jsonbuddy.parse.JsonParser;
+import org.jsonbuddy.pojo.CanNotMapException;
+import org.jsonbuddy.pojo.PojoMapper;
 
-import java.util.List;
-import java.util.Optional;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class RecordControllerHelper {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final Duration DEFAULT_RESPONSE_TIME_PERIOD = Duration.ofHours(24);
+    private static final int DEFAULT_MAX_POINTS = 500;
+    private static final int MAX_POINTS = 5000;
+
     private final RecordRepository recordRepository;
+    private final ResponseTimeHistogramRepository histogramRepository;
 
 
 
     public RecordControllerHelper(DbContext dbContext) {
         this.recordRepository = new RecordRepository(dbContext);
-    }
-    public void deleteRecordsOlderThan48Hours(){
-        recordRepository.deleteRecordsOlderThan48hours();
+        this.histogramRepository = new ResponseTimeHistogramRepository(dbContext);
     }
 
     public void updateRecords(List<RecordDto> dtos){
-        dtos.forEach(this::updateRecordForService);
+        saveRecords(dtos.stream().map(this::mapToRecordEntity).collect(Collectors.toList()));
     }
 
 
+    //Leser én record per linje (NDJSON) og gir dem videre i batcher mens forespørselen fortsatt leses.
+    //Returnerer antall records som er lest.
+    public int readRecords(BufferedReader reader, int batchSize, Consumer<List<RecordEntity>> batchConsumer) throws IOException {
+        List<RecordEntity> batch = new ArrayList<>(batchSize);
+        int lineNumber = 0;
+        int numberOfRecords = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            batch.add(mapToRecordEntity(parseRecord(line, lineNumber)));
+            numberOfRecords++;
+            if (batch.size() >= batchSize) {
+                batchConsumer.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batchConsumer.accept(batch);
+        }
+        return numberOfRecords;
+    }
+
+    private static RecordDto parseRecord(String line, int lineNumber) {
+        try {
+            return PojoMapper.map(JsonParser.parseToObject(line), RecordDto.class);
+        } catch (JsonParseException | CanNotMapException e) {
+            throw new HttpRequestException("Could not parse record on line " + lineNumber + ": " + e.getMessage());
+        }
+    }
+
     public void updateRecordForService(RecordDto recordDto){
+        updateRecords(List.of(recordDto));
+    }
+
+    //Lagrer en batch med records, og oppdaterer service_status_delta med StatusDeltaWriter.
+    public void saveRecords(List<RecordEntity> records){
+        if(records.isEmpty()){
+            return;
+        }
+        ZonedDateTime now = ZonedDateTime.now();
+        Map<UUID, List<RecordEntity>> recordsByService = new TreeMap<>();
+        for (RecordEntity record : records) {
+            //Tidsordnet id, som også blir id på en eventuell ny delta
+            record.setId(TimeOrderedUuid.generate());
+            //Samme presisjon som i databasen, så cursor fra RecentRecordBuffer treffer lagrede records
+            record.setCreated_at((record.getCreated_at() != null ? record.getCreated_at() : now).truncatedTo(ChronoUnit.MICROS));
+            recordsByService.computeIfAbsent(record.getServiceId(), id -> new ArrayList<>()).add(record);
+        }
+
+        //Samme status som forrige gang telles i minnet. Ved statusendring skrives ventende records sammen med de nye,
+        //så de telles på gammel delta før den settes inaktiv.
+        Map<UUID, List<RecordEntity>> countedRecords = new TreeMap<>();
+        Iterator<Map.Entry<UUID, List<RecordEntity>>> iterator = recordsByService.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<UUID, List<RecordEntity>> entry = iterator.next();
+            UUID serviceId = entry.getKey();
+            if (StatusDeltaCounterBuffer.isTracked(serviceId, entry.getValue())) {
+                countedRecords.put(serviceId, entry.getValue());
+                iterator.remove();
+                continue;
+            }
+            List<RecordEntity> pending = StatusDeltaCounterBuffer.remove(serviceId);
+            if (!pending.isEmpty()) {
+                AfterCommit.onRollback(() -> StatusDeltaCounterBuffer.restore(serviceId, pending));
+                entry.getValue().addAll(pending);
+            }
+        }
+        recordsByService.values().forEach(serviceRecords -> serviceRecords.sort(Comparator.comparing(RecordEntity::getCreated_at)));
+
+        StatusDeltaWriter writer = new StatusDeltaWriter(recordRepository).write(recordsByService);
+        recordRepository.saveAll(records);
+        //Buffere og cacher i minnet oppdateres først når recordene er committet
+        AfterCommit.onCommit(() -> {
+            countedRecords.forEach(StatusDeltaCounterBuffer::add);
+            writer.getActiveStatuses().forEach(StatusDeltaCounterBuffer::track);
+            RecentRecordBuffer.add(records);
+            ResponseTimeHistogramBuffer.add(records);
+            LatestStatusCache.update(records.stream().filter(record -> !writer.getLateRecords().contains(record)).collect(Collectors.toList()));
+            //Etter at statusen er oppdatert i LatestStatusCache, som dashboardene bygges fra
+            DashboardResponseCache.invalidateServices(writer.getChangedServices());
+            ResourceVersions.servicesChanged(writer.getChangedServices());
+        });
+    }
 
-        Optional<RecordDeltaEntity> latestDiffRecord = recordRepository.getLatestRecordDiff(recordDto.getServiceId());
-        RecordEntity newRecord = mapToRecordEntity(recordDto);
+    //Én side av historikken til tjenesten. Er siden full, gis cursor til neste side til nextCursor.
+    //Første side uten filtre leses fra RecentRecordBuffer.
+    public List<RecordEntity> getRecordHistoryPage(UUID serviceId, Optional<String> cursor, Optional<Integer> pageSize,
+                                                   Optional<String> from, Optional<String> to, Optional<String> status,
+                                                   Consumer<String> nextCursor) {
+        int size = pageSize.orElse(DEFAULT_PAGE_SIZE);
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new HttpRequestException("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        Optional<RecordCursor> after = cursor.map(RecordControllerHelper::parseCursor);
+        Optional<ZonedDateTime> fromTime = from.map(RecordControllerHelper::parseTime);
+        Optional<ZonedDateTime> toTime = to.map(RecordControllerHelper::parseTime);
+        Optional<ServiceStatus> statusFilter = status.map(s -> ServiceStatus.fromDb(s.toUpperCase())
+                .orElseThrow(() -> new HttpRequestException("Could not parse status: " + s)));
 
-        //Dersom ny status er forskjellig fra gammel, legges det til en status_diff
-        if(latestDiffRecord.isEmpty() || !latestDiffRecord.get().getStatus().equals(newRecord.getStatus())){
-            newRecord.setActive(true);
-            recordRepository.saveNewStatusDiff(newRecord);
-            //Setter den gamle til inaktiv
-            latestDiffRecord.ifPresent(recordRepository::setOldStatusDiffInactive);
+        boolean firstPageWithoutFilters = after.isEmpty() && fromTime.isEmpty() && toTime.isEmpty() && statusFilter.isEmpty();
+        List<RecordEntity> page = firstPageWithoutFilters && size <= RecentRecordBuffer.CAPACITY
+                ? RecentRecordBuffer.getRecordHistory(serviceId, size, recordRepository)
+                : recordRepository.getRecordHistoryPage(serviceId, after, fromTime, toTime, statusFilter, size);
+        if (page.size() == size) {
+            nextCursor.accept(RecordCursor.after(page.get(page.size() - 1)).encode());
         }
-        else{
-            //Hvis ikke økes teller på status
-            recordRepository.increaseCountOnStatusDiff(latestDiffRecord.get());
+        return page;
+    }
 
+    //Records i perioden nedsamplet til maks maxPoints punkter, mens radene leses fra databasen
+    public List<ChartPoint> getRecordRange(UUID serviceId, Optional<String> from, Optional<String> to, Optional<Integer> maxPoints) {
+        int points = maxPoints.orElse(DEFAULT_MAX_POINTS);
+        if (points < 2 || points > MAX_POINTS) {
+            throw new HttpRequestException("maxPoints must be between 2 and " + MAX_POINTS);
+        }
+        ZonedDateTime toTime = to.map(RecordControllerHelper::parseTime).orElse(ZonedDateTime.now());
+        ZonedDateTime fromTime = from.map(RecordControllerHelper::parseTime).orElse(toTime.minus(DEFAULT_RESPONSE_TIME_PERIOD));
+        if (!fromTime.isBefore(toTime)) {
+            throw new HttpRequestException("from must be before to");
         }
-        recordRepository.save(newRecord);
+        ChartDownsampler downsampler = new ChartDownsampler(fromTime, toTime, points);
+        recordRepository.forEachRecordInPeriod(serviceId, fromTime, toTime, downsampler);
+        return downsampler.finish();
+    }
+
+    //Persentiler for timene som overlapper perioden: lagrede timer slått sammen med timene denne instansen ikke har skrevet ennå.
+    //Timer som er slettet etter RetentionPolicy hentes fra døgnaggregeringen, og der telles hele døgn.
+    public ResponseTimeDto getResponseTime(UUID serviceId, Optional<String> from, Optional<String> to) {
+        ZonedDateTime toTime = to.map(RecordControllerHelper::parseTime).orElse(ZonedDateTime.now());
+        ZonedDateTime fromTime = from.map(RecordControllerHelper::parseTime).orElse(toTime.minus(DEFAULT_RESPONSE_TIME_PERIOD));
+        if (!fromTime.isBefore(toTime)) {
+            throw new HttpRequestException("from must be before to");
+        }
+        ZonedDateTime firstHour = fromTime.withZoneSameInstant(ServiceRepository.AGGREGATION_ZONE).truncatedTo(ChronoUnit.HOURS);
+        ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+        Optional<ZonedDateTime> oldestHour = histogramRepository.getOldestHour(serviceId);
+        if (oldestHour.isPresent() && firstHour.isBefore(oldestHour.get())) {
+            ZoneId zone = ServiceRepository.AGGREGATION_ZONE;
+            ZonedDateTime lastDailyHour = oldestHour.get().isBefore(toTime) ? oldestHour.get() : toTime;
+            Map<LocalDate, ResponseTimeHistogram> days = histogramRepository.getDailyHistograms(serviceId,
+                    fromTime.withZoneSameInstant(zone).toLocalDate(), lastDailyHour.withZoneSameInstant(zone).toLocalDate());
+            for (Map.Entry<LocalDate, ResponseTimeHistogram> day : days.entrySet()) {
+                histogram.merge(day.getValue());
+                ZonedDateTime dayEnd = day.getKey().plusDays(1).atStartOfDay(zone);
+                firstHour = dayEnd.isAfter(firstHour) ? dayEnd : firstHour;
+            }
+        }
+        histogram.merge(histogramRepository.getHistogram(serviceId, firstHour, toTime));
+        histogram.merge(ResponseTimeHistogramBuffer.getPending(serviceId, firstHour.toInstant(), toTime.toInstant()));
+        return new ResponseTimeDto()
+                .serviceId(serviceId)
+                .from(fromTime.toOffsetDateTime())
+                .to(toTime.toOffsetDateTime())
+                .count(histogram.getCount())
+                .p50(toInteger(histogram.getPercentile(50)))
+                .p90(toInteger(histogram.getPercentile(90)))
+                .p99(toInteger(histogram.getPercentile(99)))
+                .max(histogram.getCount() == 0 ? null : histogram.getMax());
+    }
+
+    private static Integer toInteger(OptionalInt value) {
+        return value.isPresent() ? value.getAsInt() : null;
     }
-    private RecordEntity mapToRecordEntity(RecordDto recordDto) {
+
+    private static RecordCursor parseCursor(String cursor) {
+        try {
+            return RecordCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new HttpRequestException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private static ZonedDateTime parseTime(String time) {
+        try {
+            return OffsetDateTime.parse(time).toZonedDateTime();
+        } catch (DateTimeParseException e) {
+            throw new HttpRequestException("Could not parse time: " + time + " should be on format ISO-8601, e.g. 2021-01-01T00:00:00Z");
+        }
+    }
+
+    //Records uten tidspunkt får tidspunktet de lagres, i saveRecords
+    public RecordEntity mapToRecordEntity(RecordDto recordDto) {
+        if (recordDto.getServiceId() == null || recordDto.getStatus() == null) {
+            throw new HttpRequestException("Record must have serviceId and status");
+        }
         RecordSource source = recordDto.getSource()== null? RecordSource.UNKNOWN: RecordSource.valueOf(recordDto.getSource().getValue());
         return new RecordEntity()
                 .setServiceId(recordDto.getServiceId())
                 .setStatus(ServiceStatus.valueOf(recordDto.getStatus().getValue()))
                 .setDescription(recordDto.getDescription())
                 .setLogglink(recordDto.getLogLink())
-                .setCreated_at(recordDto.getTimestamp().toZonedDateTime())
+                .setCreated_at(Optional.ofNullable(recordDto.getTimestamp()).map(OffsetDateTime::toZonedDateTime).orElse(null))
                 .setResponsetime(recordDto.getResponseTime())
                 .setRecordSource(source);
     }
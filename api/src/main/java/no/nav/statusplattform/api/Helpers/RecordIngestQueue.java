@@ -0,0 +1,186 @@
+package no.nav.statusplattform.api.Helpers;
+
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.repositories.AfterCommit;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.fluentjdbc.DbTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+//Begrenset kø for records som skrives til databasen av egne skrivetråder, slik at poller-kall ikke
+//holder request-tråd og databaseforbindelse til alt er lagret.
+//Records for samme tjeneste havner alltid på samme skrivetråd, slik at rekkefølgen beholdes.
+public class RecordIngestQueue {
+    private static final Logger logger = LoggerFactory.getLogger(RecordIngestQueue.class);
+
+    private static final int BATCH_SIZE = 500;
+    private static final long POLL_TIMEOUT_MILLIS = 500;
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 100;
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+    private final DbContext dbContext;
+    private final RecordControllerHelper recordControllerHelper;
+    private final List<BlockingQueue<RecordEntity>> queues = new ArrayList<>();
+    private final List<Thread> writers = new ArrayList<>();
+    private DataSource dataSource;
+    private volatile boolean running = false;
+
+    public RecordIngestQueue(DbContext dbContext, int capacity, int numberOfWriters) {
+        this.dbContext = dbContext;
+        this.recordControllerHelper = new RecordControllerHelper(dbContext);
+        for (int i = 0; i < numberOfWriters; i++) {
+            BlockingQueue<RecordEntity> queue = new ArrayBlockingQueue<>(Math.max(1, capacity / numberOfWriters));
+            queues.add(queue);
+            Thread writer = new Thread(() -> writeFromQueue(queue));
+            writer.setName("Record writer " + i);
+            writer.setDaemon(true);
+            writers.add(writer);
+        }
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void start() {
+        running = true;
+        writers.forEach(Thread::start);
+    }
+
+    //Legger til alle records, eller ingen dersom køen er full eller stoppet
+    public synchronized boolean offer(List<RecordEntity> records) {
+        if (!running) {
+            return false;
+        }
+        int[] needed = new int[queues.size()];
+        records.forEach(record -> needed[queueIndex(record)]++);
+        for (int i = 0; i < queues.size(); i++) {
+            if (queues.get(i).remainingCapacity() < needed[i]) {
+                return false;
+            }
+        }
+        records.forEach(record -> queues.get(queueIndex(record)).add(record));
+        return true;
+    }
+
+    public int size() {
+        return queues.stream().mapToInt(BlockingQueue::size).sum();
+    }
+
+    //Slutter å ta imot nye records og venter til køen er tømt. Records som ikke er lagret innen fristen,
+    //for eksempel fordi databasen ikke svarer, logges før skrivetrådene avbrytes.
+    public void shutdown(Duration timeout) throws InterruptedException {
+        synchronized (this) {
+            running = false;
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (Thread writer : writers) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis > 0) {
+                writer.join(remainingMillis);
+            }
+        }
+        for (Thread writer : writers) {
+            writer.interrupt();
+        }
+        if (size() > 0) {
+            logger.error("Record ingest queue stopped with {} unsaved records", size());
+        }
+    }
+
+    private int queueIndex(RecordEntity record) {
+        return Math.floorMod(record.getServiceId().hashCode(), queues.size());
+    }
+
+    private void writeFromQueue(BlockingQueue<RecordEntity> queue) {
+        List<RecordEntity> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                RecordEntity first = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                writeWithRetry(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                if (!batch.isEmpty()) {
+                    logger.error("Record writer stopped with {} unsaved records", batch.size());
+                }
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    //Records i køen er allerede kvittert ut, så batchen prøves på nytt med økende ventetid til den er lagret
+    private void writeWithRetry(List<RecordEntity> batch) throws InterruptedException {
+        long delay = INITIAL_RETRY_DELAY_MILLIS;
+        while (true) {
+            try {
+                write(batch);
+                return;
+            } catch (Exception e) {
+                if (isConstraintViolation(e)) {
+                    batch = writeEachService(batch);
+                    if (batch.isEmpty()) {
+                        return;
+                    }
+                } else {
+                    logger.warn("Could not save {} records, retrying in {} ms", batch.size(), delay, e);
+                }
+            }
+            Thread.sleep(delay);
+            delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+        }
+    }
+
+    //Lagrer records for hver tjeneste for seg. Records som bryter en constraint, for eksempel for en tjeneste som er slettet,
+    //kan aldri lagres, og logges i stedet for å stoppe resten av køen. Returnerer records som må prøves på nytt.
+    private List<RecordEntity> writeEachService(List<RecordEntity> batch) {
+        Map<UUID, List<RecordEntity>> recordsByService = new LinkedHashMap<>();
+        batch.forEach(record -> recordsByService.computeIfAbsent(record.getServiceId(), id -> new ArrayList<>()).add(record));
+        List<RecordEntity> retries = new ArrayList<>();
+        recordsByService.forEach((serviceId, records) -> {
+            try {
+                write(records);
+            } catch (Exception e) {
+                if (isConstraintViolation(e)) {
+                    logger.error("Discarding {} records for service {} that can not be saved", records.size(), serviceId, e);
+                } else {
+                    retries.addAll(records);
+                }
+            }
+        });
+        return retries;
+    }
+
+    private static boolean isConstraintViolation(Exception e) {
+        return e instanceof SQLException && ((SQLException) e).getSQLState() != null && ((SQLException) e).getSQLState().startsWith("23");
+    }
+
+    private void write(List<RecordEntity> batch) {
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource);
+             AfterCommit afterCommit = AfterCommit.begin()) {
+            try (DbTransaction transaction = dbContext.ensureTransaction()) {
+                recordControllerHelper.saveRecords(batch);
+                transaction.setComplete();
+            }
+            afterCommit.committed();
+        }
+    }
+}
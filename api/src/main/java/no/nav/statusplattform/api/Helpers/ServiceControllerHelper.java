@@ -1,10 +1,17 @@
 package no.nav.statusplattform.api.Helpers;
 
+import nav.statusplattform.core.entities.AreaEntity;
 import nav.statusplattform.core.entities.DailyStatusAggregationForServiceEntity;
+import nav.statusplattform.core.entities.RecordEntity;
 import nav.statusplattform.core.entities.ServiceEntity;
 import nav.statusplattform.core.openingHours.OpeningHoursDailyMap;
 import nav.statusplattform.core.openingHours.OpeningHoursDisplayData;
 import nav.statusplattform.core.openingHours.OpeningHoursParser;
+import nav.statusplattform.core.records.AvailabilityCalculator;
+import nav.statusplattform.core.records.LatestStatusCache;
+import nav.statusplattform.core.records.RecentRecordBuffer;
+import nav.statusplattform.core.records.ServiceAvailability;
+import nav.statusplattform.core.repositories.AfterCommit;
 import nav.statusplattform.core.repositories.AreaRepository;
 import nav.statusplattform.core.repositories.RecordRepository;
 import nav.statusplattform.core.repositories.ServiceRepository;
@@ -13,29 +20,43 @@ import no.nav.statusplattform.generated.api.AreaDto;
 import no.nav.statusplattform.generated.api.MaintenanceDto;
 import no.nav.statusplattform.generated.api.OHdisplayDto;
 import no.nav.statusplattform.generated.api.RecordDto;
+import no.nav.statusplattform.generated.api.ServiceAvailabilityDto;
 import no.nav.statusplattform.generated.api.ServiceDto;
 import no.nav.statusplattform.generated.api.ServiceHistoryDayEntryDto;
 import no.nav.statusplattform.generated.api.ServiceHistoryDto;
 import no.nav.statusplattform.generated.api.ServiceHistoryMonthEntryDto;
 import no.nav.statusplattform.generated.api.StatusDto;
+import org.actioncontroller.HttpRequestException;
 import org.fluentjdbc.DbContext;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.time.format.TextStyle;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 public class ServiceControllerHelper {
+    private static final Locale NORWEGIAN = Locale.forLanguageTag("nb-NO");
+    private static final int DEFAULT_AVAILABILITY_DAYS = 30;
+    private static final int MAX_AVAILABILITY_DAYS = 400;
+
     ServiceRepository serviceRepository;
     RecordRepository recordRepository;
     AreaRepository areaRepository;
     RecordControllerHelper recordControllerHelper;
+    AvailabilityCalculator availabilityCalculator;
 
     Comparator<ServiceDto> serviceDtoComparator
             = Comparator.comparing(a -> a.getName().toLowerCase());
@@ -45,6 +66,7 @@ public class ServiceControllerHelper {
         this.serviceRepository = new ServiceRepository(context);
         this.recordRepository = new RecordRepository(context);
         this.recordControllerHelper = new RecordControllerHelper(context);
+        this.availabilityCalculator = new AvailabilityCalculator(context);
     }
 
 
@@ -52,8 +74,7 @@ public class ServiceControllerHelper {
     public List<ServiceDto> getAll() {
         Map<ServiceEntity, List<ServiceEntity>> services = serviceRepository.retrieveAllDeep();
         List<ServiceDto> result = services.entrySet().stream().map(EntityDtoMappers::toServiceDtoDeep).toList();
-        //TODO status skal hentes i dbspørringer, ikke slik som dette:
-        result.forEach(this::settStatusOnService);
+        settStatusOnServices(result);
         return result.stream().sorted(Comparator.comparing(ServiceDto::getName)).collect(Collectors.toList());
     }
 
@@ -68,9 +89,13 @@ public class ServiceControllerHelper {
     public List<ServiceDto> getAllComponents() {
         Map<ServiceEntity, List<ServiceEntity>> services = serviceRepository.retrieveAllComponents();
         List<ServiceDto> result = services.entrySet().stream().map(EntityDtoMappers::toServiceDtoDeep).toList();
-        result.forEach(componentDto -> componentDto.setServicesDependentOnThisComponent(getServicesDependantOnComponent(componentDto.getId())));
-        //TODO status skal hentes i dbspørringer, ikke slik som dette:
-        result.forEach(this::settStatusOnService);
+        Map<UUID, List<ServiceEntity>> dependantServices = serviceRepository.getServicesDependantOnComponents(
+                result.stream().map(ServiceDto::getId).collect(Collectors.toList()));
+        result.forEach(componentDto -> componentDto.setServicesDependentOnThisComponent(
+                dependantServices.getOrDefault(componentDto.getId(), List.of()).stream()
+                        .map(EntityDtoMappers::toServiceDtoShallow)
+                        .collect(Collectors.toList())));
+        settStatusOnServices(result);
         return result.stream()
                 .sorted(serviceDtoComparator)
                 .collect(Collectors.toList());
@@ -90,27 +115,33 @@ public class ServiceControllerHelper {
     public List<ServiceDto> getAllServices() {
         Map<ServiceEntity, List<ServiceEntity>> services = serviceRepository.retrieveAllServices();
         List<ServiceDto> result = services.entrySet().stream().map(EntityDtoMappers::toServiceDtoDeep).toList();
-        result.forEach(serviceDto -> serviceDto.setAreasContainingThisService(getAreasContainingService(serviceDto.getId())));
-        //TODO status skal hentes i dbspørringer, ikke slik som dette:
-        result.forEach(this::settStatusOnService);
+        Map<UUID, List<AreaEntity>> areasContainingServices = areaRepository.getAreasContainingServices(
+                result.stream().map(ServiceDto::getId).collect(Collectors.toList()));
+        result.forEach(serviceDto -> serviceDto.setAreasContainingThisService(
+                areasContainingServices.getOrDefault(serviceDto.getId(), List.of()).stream()
+                        .map(EntityDtoMappers::toAreaDtoShallow)
+                        .collect(Collectors.toList())));
+        settStatusOnServices(result);
         return result.stream()
                 .sorted(serviceDtoComparator)
                 .collect(Collectors.toList());
     }
 
-    private void settStatusOnService(ServiceDto service){
-        service.getServiceDependencies().forEach(this::settStatusOnService);
-        service.getComponentDependencies().forEach(this::settStatusOnService);
-        if(recordRepository.getLatestRecord(service.getId()).isPresent()){
-            service.setRecord(EntityDtoMappers.toRecordDto(recordRepository.getLatestRecord(service.getId()).get()));
-        }
-        else if(recordRepository.getLatestRecordDiff(service.getId()).isPresent()){
-            service.setRecord(EntityDtoMappers.toRecordDtoFromRecordDelta(recordRepository.getLatestRecordDiff(service.getId()).get()));
-        }
+    //Status for tjenestene og alle avhengighetene hentes samlet, og settes på i minnet
+    private void settStatusOnServices(List<ServiceDto> services){
+        List<ServiceDto> servicesWithDependencies = new ArrayList<>();
+        services.forEach(service -> addWithDependencies(service, servicesWithDependencies));
+        Map<UUID, Optional<RecordEntity>> statuses = LatestStatusCache.getAll(
+                servicesWithDependencies.stream().map(ServiceDto::getId).collect(Collectors.toSet()), recordRepository);
+        servicesWithDependencies.forEach(service -> service.setRecord(statuses.get(service.getId())
+                .map(EntityDtoMappers::toRecordDto)
+                .orElseGet(RecordDto::new)));
+    }
 
-        else {
-            service.setRecord(new RecordDto());
-        }
+    private static void addWithDependencies(ServiceDto service, List<ServiceDto> result){
+        result.add(service);
+        service.getServiceDependencies().forEach(dependency -> addWithDependencies(dependency, result));
+        service.getComponentDependencies().forEach(dependency -> addWithDependencies(dependency, result));
     }
 
     public ServiceDto saveNewService(ServiceDto serviceDto){
@@ -185,18 +216,26 @@ public class ServiceControllerHelper {
         areaRepository.removeServiceFromAllAreas(service_id);
         //Skal ikke fjerne avhengigheter her.
         serviceRepository.delete(service_id);
+        AfterCommit.onCommit(() -> {
+            LatestStatusCache.remove(service_id);
+            RecentRecordBuffer.remove(service_id);
+        });
     }
 
     public void deleteComponent(UUID component_id){
         //Skal ikke fjerne avhengigheter her.
         serviceRepository.delete(component_id);
+        AfterCommit.onCommit(() -> {
+            LatestStatusCache.remove(component_id);
+            RecentRecordBuffer.remove(component_id);
+        });
     }
 
 
 
     public ServiceDto retrieveOneService(UUID service_id) {
         ServiceDto serviceDto =  EntityDtoMappers.toServiceDtoDeep(serviceRepository.retrieveOneWithDependencies(service_id));
-        settStatusOnService(serviceDto);
+        settStatusOnServices(List.of(serviceDto));
         setOHdisplayOnService(serviceDto);
         return serviceDto;
     }
@@ -230,6 +269,77 @@ public class ServiceControllerHelper {
                 map(EntityDtoMappers::toAreaDtoShallow).collect(Collectors.toList());
     }
 
+    //Aggregert historikk per dag for de siste tolv månedene, nyeste måned først. Måneder uten data har ingen dager.
+    public ServiceHistoryDto getServiceHistoryTwelveMonthsBack(UUID service_id) {
+        YearMonth thisMonth = YearMonth.now();
+        Map<YearMonth, List<ServiceHistoryDayEntryDto>> daysByMonth = serviceRepository
+                .getServiceHistory(service_id, thisMonth.minusMonths(11).atDay(1)).stream()
+                .collect(Collectors.groupingBy(entity -> YearMonth.from(entity.getAggregation_date()),
+                        Collectors.mapping(ServiceControllerHelper::mapToHistoryDayDto, Collectors.toList())));
+        List<ServiceHistoryMonthEntryDto> history = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            YearMonth month = thisMonth.minusMonths(i);
+            history.add(new ServiceHistoryMonthEntryDto()
+                    .month(toNorwegianMonthName(month.getMonth()))
+                    .year(month.getYear())
+                    .entries(daysByMonth.getOrDefault(month, new ArrayList<>())));
+        }
+        return new ServiceHistoryDto().history(history);
+    }
+
+    public ServiceAvailabilityDto getServiceAvailability(UUID service_id, Optional<String> from, Optional<String> to, Optional<Boolean> openingHoursOnly) {
+        return getAvailability(List.of(service_id), from, to, openingHoursOnly).get(0);
+    }
+
+    //Hele katalogen i én beregning: deltaene hentes i én spørring, og ferdige døgn tas fra cachen
+    public List<ServiceAvailabilityDto> getAllServiceAvailability(Optional<String> from, Optional<String> to, Optional<Boolean> openingHoursOnly) {
+        List<UUID> serviceIds = serviceRepository.retrieveAllServicesAndComponentsShallow().stream()
+                .map(ServiceEntity::getId)
+                .toList();
+        return getAvailability(serviceIds, from, to, openingHoursOnly);
+    }
+
+    private List<ServiceAvailabilityDto> getAvailability(List<UUID> serviceIds, Optional<String> from, Optional<String> to, Optional<Boolean> openingHoursOnly) {
+        LocalDate toDate = to.map(ServiceControllerHelper::parseDate).orElse(LocalDate.now());
+        LocalDate fromDate = from.map(ServiceControllerHelper::parseDate).orElse(toDate.minusDays(DEFAULT_AVAILABILITY_DAYS - 1));
+        if (fromDate.isAfter(toDate) || fromDate.plusDays(MAX_AVAILABILITY_DAYS).isBefore(toDate)) {
+            throw new HttpRequestException("from must be before to, and at most " + MAX_AVAILABILITY_DAYS + " days before");
+        }
+        boolean onlyOpeningHours = openingHoursOnly.orElse(false);
+        Map<UUID, ServiceAvailability> availability = availabilityCalculator.calculate(serviceIds, fromDate, toDate, onlyOpeningHours);
+        return serviceIds.stream()
+                .map(id -> toServiceAvailabilityDto(id, availability.get(id))
+                        .from(fromDate)
+                        .to(toDate)
+                        .openingHoursOnly(onlyOpeningHours))
+                .toList();
+    }
+
+    static ServiceAvailabilityDto toServiceAvailabilityDto(UUID serviceId, ServiceAvailability availability) {
+        return new ServiceAvailabilityDto()
+                .serviceId(serviceId)
+                .uptimePercentage(availability.getUptimePercentage().orElse(null))
+                .okMinutes(availability.getOk().toMinutes())
+                .issueMinutes(availability.getIssue().toMinutes())
+                .downMinutes(availability.getDown().toMinutes())
+                .incidents(availability.getIncidents())
+                .mttrMinutes(availability.getMttr().map(Duration::toMinutes).orElse(null))
+                .mtbfMinutes(availability.getMtbf().map(Duration::toMinutes).orElse(null));
+    }
+
+    private static LocalDate parseDate(String date) {
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new HttpRequestException("Could not parse date: " + date + " should be on format yyyy-MM-dd");
+        }
+    }
+
+    private static String toNorwegianMonthName(Month month) {
+        String name = month.getDisplayName(TextStyle.FULL, NORWEGIAN);
+        return name.substring(0, 1).toUpperCase(NORWEGIAN) + name.substring(1);
+    }
+
     static ServiceHistoryDayEntryDto mapToHistoryDayDto(DailyStatusAggregationForServiceEntity entity){
         ServiceHistoryDayEntryDto result = new ServiceHistoryDayEntryDto();
         result.information(entity.getInformation());
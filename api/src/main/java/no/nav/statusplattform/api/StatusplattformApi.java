@@ -1,5 +1,11 @@
 package no.nav.statusplattform.api;
 
+import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.records.RecentRecordBuffer;
+import nav.statusplattform.core.records.StatusDeltaCounterBuffer;
+import nav.statusplattform.core.repositories.RecordRepository;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import no.nav.statusplattform.api.Helpers.RecordIngestQueue;
 import no.nav.statusplattform.api.v3.controllers.AreaController;
 import no.nav.statusplattform.api.v3.controllers.DashboardController;
 import no.nav.statusplattform.api.v3.controllers.HealthCheck;
@@ -13,23 +19,39 @@ import no.nav.statusplattform.infrastructure.ApiFilter;
 import no.nav.statusplattform.infrastructure.AuthenticationFilter;
 import no.nav.statusplattform.infrastructure.CORSFilter;
 import no.nav.statusplattform.infrastructure.ClasspathWebAppContext;
+import no.nav.statusplattform.infrastructure.ConditionalGetFilter;
+import no.nav.statusplattform.infrastructure.DashboardCacheFilter;
+import no.nav.statusplattform.infrastructure.SingleFlightFilter;
 import no.nav.statusplattform.infrastructure.WebJarServlet;
 import org.actioncontroller.servlet.ApiServlet;
 import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.servlet.DispatcherType;
 import javax.sql.DataSource;
+import java.time.Duration;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
 
 public class StatusplattformApi extends ClasspathWebAppContext {
+    private static final Logger logger = LoggerFactory.getLogger(StatusplattformApi.class);
+
+    private static final Duration INGEST_SHUTDOWN_TIMEOUT = Duration.ofSeconds(20);
+    private static final int RECENT_RECORDS_LOAD_BATCH_SIZE = 500;
 
     private final DbContext dbContext = new DbContext();
 
     private final ApiFilter filter;
     private final CORSFilter corsFilter;
+    private final RecordController recordController = new RecordController(dbContext);
+    private RecordIngestQueue recordIngestQueue;
+    private DataSource dataSource;
 
 
     public StatusplattformApi(String context) {
@@ -41,7 +63,7 @@ public class StatusplattformApi extends ClasspathWebAppContext {
                 new AreaController(dbContext),
                 new DashboardController(dbContext),
                 new ServiceController(dbContext),
-                new RecordController(dbContext),
+                recordController,
                 new OpsController(dbContext),
                 new OpeningHoursController(dbContext),
                 new HealthCheck(dbContext),
@@ -50,12 +72,71 @@ public class StatusplattformApi extends ClasspathWebAppContext {
         ))), "/*");
 
         addFilter(new FilterHolder( new AuthenticationFilter()), "/*", EnumSet.of(DispatcherType.REQUEST));
+        //Før cachen og ApiFilter, slik at 304 ikke trenger databaseforbindelse
+        addFilter(new FilterHolder(new ConditionalGetFilter()), "/*", EnumSet.of(DispatcherType.REQUEST));
+        //Før ApiFilter, slik at dashboard fra cachen ikke trenger databaseforbindelse
+        addFilter(new FilterHolder(new DashboardCacheFilter()), "/*", EnumSet.of(DispatcherType.REQUEST));
+        //Før ApiFilter, slik at forespørsler som venter på samme svar ikke holder databaseforbindelse
+        addFilter(new FilterHolder(new SingleFlightFilter()), "/*", EnumSet.of(DispatcherType.REQUEST));
         filter = new ApiFilter(dbContext);
         addFilter(new FilterHolder(filter), "/*", EnumSet.of(DispatcherType.REQUEST));
     }
 
     public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
         filter.setDataSource(dataSource);
+        if (recordIngestQueue != null) {
+            recordIngestQueue.setDataSource(dataSource);
+        }
+    }
+
+    public void enableAsyncRecordIngest(int queueCapacity, int numberOfWriters) {
+        recordIngestQueue = new RecordIngestQueue(dbContext, queueCapacity, numberOfWriters);
+        recordController.setRecordIngestQueue(recordIngestQueue);
+        //Records legges i køen uten databaseforbindelse, så opplasting og parsing holder ikke en forbindelse fra poolen
+        filter.skipConnectionFor(List.of("/ServiceStatus", "/UpdateRecords", "/UpdateRecordsStream"));
+    }
+
+    private void flushStatusDeltaCounters() {
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+            StatusDeltaCounterBuffer.flush(dbContext);
+        }
+    }
+
+    //Fyller RecentRecordBuffer ved oppstart. Feiler lastingen, lastes historikken ved første oppslag i stedet.
+    private void loadRecentRecords() {
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+            List<UUID> serviceIds = new ServiceRepository(dbContext).retrieveAllServicesAndComponentsShallow().stream()
+                    .map(ServiceEntity::getId)
+                    .collect(Collectors.toList());
+            RecordRepository recordRepository = new RecordRepository(dbContext);
+            for (int i = 0; i < serviceIds.size(); i += RECENT_RECORDS_LOAD_BATCH_SIZE) {
+                RecentRecordBuffer.loadAll(serviceIds.subList(i, Math.min(i + RECENT_RECORDS_LOAD_BATCH_SIZE, serviceIds.size())), recordRepository);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not load recent records", e);
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        loadRecentRecords();
+        if (recordIngestQueue != null) {
+            recordIngestQueue.start();
+        }
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        //Records som allerede er kvittert ut skal lagres før vi stopper
+        if (recordIngestQueue != null) {
+            recordIngestQueue.shutdown(INGEST_SHUTDOWN_TIMEOUT);
+        }
+        if (dataSource != null) {
+            flushStatusDeltaCounters();
+        }
+        super.doStop();
     }
 
     public void setFrontEndLocation(String frontEndLocation){
@@ -6,6 +6,7 @@ import no.nav.statusplattform.api.EntityDtoMappers;
 import no.nav.statusplattform.api.Helpers.AreaControllerHelper;
 import no.nav.statusplattform.api.Helpers.SubAreaControllerHelper;
 import no.nav.statusplattform.generated.api.AreaDto;
+import no.nav.statusplattform.generated.api.AreaSummaryDto;
 import no.nav.statusplattform.generated.api.IdContainerDto;
 import no.nav.statusplattform.generated.api.ServiceDto;
 import no.nav.statusplattform.generated.api.SubAreaDto;
@@ -43,6 +44,12 @@ public class AreaController {
       return areaControllerHelper.getAllAreasShallow();
    }
 
+   @GET("/Areas/Summary")
+   @JsonBody
+   public List<AreaSummaryDto> getAreaSummaries() {
+      return areaControllerHelper.getAreaSummaries();
+   }
+
    @GET("/Areas/WithComponents/Minimal")
    @JsonBody
    public List<AreaDto> getAllAreasWithComponentsMinimal() {
@@ -1,5 +1,7 @@
 package no.nav.statusplattform.api.v3.controllers;
 
+import nav.statusplattform.core.cache.DashboardResponseCache;
+import nav.statusplattform.core.records.RetentionMetrics;
 import nav.statusplattform.core.repositories.AreaRepository;
 import nav.statusplattform.core.repositories.RecordRepository;
 import org.actioncontroller.GET;
@@ -34,5 +36,26 @@ public class HealthCheck {
                 ", DbStatus: "+dbConnectionStatus;
     }
 
+    @GET("/isAlive/DashboardCache")
+    @JsonBody
+    public String dashboardCacheMetrics() {
+        return "Hits: " + DashboardResponseCache.getHits() +
+                ", Misses: " + DashboardResponseCache.getMisses() +
+                ", Rebuilds: " + DashboardResponseCache.getRebuilds() +
+                ", AverageRebuildMillis: " + DashboardResponseCache.getAverageRebuildTime().toMillis() +
+                ", CachedDashboards: " + DashboardResponseCache.size();
+    }
+
+    @GET("/isAlive/Retention")
+    @JsonBody
+    public String retentionMetrics() {
+        return "Runs: " + RetentionMetrics.getRuns() +
+                ", LastRun: " + RetentionMetrics.getLastRun().orElse(null) +
+                ", RecordsDeleted: " + RetentionMetrics.getRecordsDeleted() +
+                ", RecordTextsDeleted: " + RetentionMetrics.getRecordTextsDeleted() +
+                ", HourlyRowsDeleted: " + RetentionMetrics.getHourlyRowsDeleted() +
+                ", PartitionsDropped: " + RetentionMetrics.getPartitionsDropped();
+    }
+
 
 }
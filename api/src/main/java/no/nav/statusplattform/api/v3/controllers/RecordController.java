@@ -2,41 +2,57 @@ package no.nav.statusplattform.api.v3.controllers;
 
 import nav.statusplattform.core.entities.RecordEntity;
 import nav.statusplattform.core.enums.ServiceStatus;
-import nav.statusplattform.core.repositories.RecordRepository;
 import no.nav.statusplattform.api.EntityDtoMappers;
 import no.nav.statusplattform.api.Helpers.RecordControllerHelper;
+import no.nav.statusplattform.api.Helpers.RecordIngestQueue;
 import no.nav.statusplattform.generated.api.AlertDto;
 import no.nav.statusplattform.generated.api.AlertSeverityDto;
 import no.nav.statusplattform.generated.api.AlertStatusDto;
+import no.nav.statusplattform.generated.api.ChartPointDto;
 import no.nav.statusplattform.generated.api.RecordDto;
+import no.nav.statusplattform.generated.api.ResponseTimeDto;
 import no.nav.statusplattform.generated.api.StatusDto;
+import org.actioncontroller.ContentBody;
 import org.actioncontroller.GET;
+import org.actioncontroller.HttpHeader;
 import org.actioncontroller.HttpRequestException;
 import org.actioncontroller.POST;
 import org.actioncontroller.PathParam;
+import org.actioncontroller.RequestParam;
 import org.actioncontroller.json.JsonBody;
 import org.fluentjdbc.DbContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class RecordController {
     private static final Logger logger = LoggerFactory.getLogger(RecordController.class);
-    private RecordRepository recordRepository;
+    private static final int RETRY_AFTER_SECONDS = 5;
+    private static final int STREAM_BATCH_SIZE = 500;
     private RecordControllerHelper recordControllerHelper;
+    private RecordIngestQueue recordIngestQueue;
     private AlertDto currentAlert;
 
     public RecordController(DbContext dbContext) {
         this.recordControllerHelper = new RecordControllerHelper(dbContext);
-        this.recordRepository = new RecordRepository(dbContext);
+    }
+
+    //Når køen er satt, lagres records asynkront av køens skrivetråder
+    public void setRecordIngestQueue(RecordIngestQueue recordIngestQueue) {
+        this.recordIngestQueue = recordIngestQueue;
     }
 
 
     @POST("/ServiceStatus")
-    public  void addServiceStatus(@JsonBody RecordDto recordDto){
+    public  void addServiceStatus(@JsonBody RecordDto recordDto, @HttpHeader("Retry-After") Consumer<String> retryAfter){
         //TODO denne må utbedres
         ServiceStatus status = ServiceStatus.fromDb(recordDto.getStatus().getValue().toUpperCase())
                 .orElseThrow(() -> new HttpRequestException("Could not parse status: "+ recordDto.getStatus() +
@@ -48,21 +64,70 @@ public class RecordController {
                 .setCreated_at(ZonedDateTime.now())
                 .setLogglink(recordDto.getLogLink())
                 .setResponsetime(42);//TODO se her
-        recordRepository.save(entity);
+        saveRecords(List.of(entity), retryAfter);
     }
 
     @POST("/UpdateRecords")
-    public  void updateRecords(@JsonBody List<RecordDto> recordDtos){
+    public  void updateRecords(@JsonBody List<RecordDto> recordDtos, @HttpHeader("Retry-After") Consumer<String> retryAfter){
         //Endpoint used by poller job, see https://github.com/navikt/statusportal-gcp-poll.git
-        recordControllerHelper.updateRecords(recordDtos);
-        recordControllerHelper.deleteRecordsOlderThan48Hours();
+        saveRecords(recordDtos.stream().map(recordControllerHelper::mapToRecordEntity).collect(Collectors.toList()), retryAfter);
+    }
+
+    //Som /UpdateRecords, men med én record per linje (application/x-ndjson). Records lagres i batcher mens de leses,
+    //slik at minnebruken ikke vokser med størrelsen på forespørselen.
+    //Strømmen lagres ikke atomisk: feiler en linje (400) eller er køen full (429), er batchene før allerede lagret eller lagt i kø.
+    //X-Accepted-Records gir antall records som er tatt imot, så klienten kan sende resten på nytt.
+    @POST("/UpdateRecordsStream")
+    public  void updateRecordsStream(@ContentBody BufferedReader reader, @HttpHeader("Retry-After") Consumer<String> retryAfter,
+                                     @HttpHeader("X-Accepted-Records") Consumer<String> acceptedRecords) throws IOException {
+        int[] accepted = {0};
+        try {
+            recordControllerHelper.readRecords(reader, STREAM_BATCH_SIZE, batch -> {
+                saveRecords(batch, retryAfter);
+                accepted[0] += batch.size();
+            });
+        } finally {
+            acceptedRecords.accept(String.valueOf(accepted[0]));
+        }
+    }
+
+    private void saveRecords(List<RecordEntity> records, Consumer<String> retryAfter) {
+        if (recordIngestQueue == null) {
+            recordControllerHelper.saveRecords(records);
+        } else if (!recordIngestQueue.offer(records)) {
+            retryAfter.accept(String.valueOf(RETRY_AFTER_SECONDS));
+            throw new HttpRequestException(429, "Record ingest queue is full");
+        }
     }
 
     @GET("/ServiceStatus/:Service_id")
     @JsonBody
-    public List<RecordDto> getRecordHistory(@PathParam("Service_id") UUID service_id) {
+    public List<RecordDto> getRecordHistory(@PathParam("Service_id") UUID service_id,
+                                            @RequestParam("cursor") Optional<String> cursor,
+                                            @RequestParam("pageSize") Optional<Integer> pageSize,
+                                            @RequestParam("from") Optional<String> from,
+                                            @RequestParam("to") Optional<String> to,
+                                            @RequestParam("status") Optional<String> status,
+                                            @HttpHeader("X-Next-Cursor") Consumer<String> nextCursor) {
         return EntityDtoMappers.toRecordDto(
-                recordRepository.getRecordHistory(service_id,100));
+                recordControllerHelper.getRecordHistoryPage(service_id, cursor, pageSize, from, to, status, nextCursor));
+    }
+
+    @GET("/ServiceStatus/Range/:Service_id")
+    @JsonBody
+    public List<ChartPointDto> getRecordRange(@PathParam("Service_id") UUID service_id,
+                                              @RequestParam("from") Optional<String> from,
+                                              @RequestParam("to") Optional<String> to,
+                                              @RequestParam("maxPoints") Optional<Integer> maxPoints) {
+        return EntityDtoMappers.toChartPointDto(recordControllerHelper.getRecordRange(service_id, from, to, maxPoints));
+    }
+
+    @GET("/ResponseTime/:Service_id")
+    @JsonBody
+    public ResponseTimeDto getResponseTime(@PathParam("Service_id") UUID service_id,
+                                           @RequestParam("from") Optional<String> from,
+                                           @RequestParam("to") Optional<String> to) {
+        return recordControllerHelper.getResponseTime(service_id, from, to);
     }
 
     @POST("/Alert")
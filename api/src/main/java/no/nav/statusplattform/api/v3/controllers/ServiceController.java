@@ -6,7 +6,9 @@ import no.nav.statusplattform.api.Helpers.ServiceControllerHelper;
 import no.nav.statusplattform.api.Helpers.StatusUrlValidator;
 import no.nav.statusplattform.generated.api.AreaDto;
 import no.nav.statusplattform.generated.api.MaintenanceDto;
+import no.nav.statusplattform.generated.api.ServiceAvailabilityDto;
 import no.nav.statusplattform.generated.api.ServiceDto;
+import no.nav.statusplattform.generated.api.ServiceHistoryDto;
 import no.nav.statusplattform.generated.api.ServiceTypeDto;
 import no.nav.statusplattform.generated.api.StatusDto;
 import org.actioncontroller.DELETE;
@@ -15,6 +17,7 @@ import org.actioncontroller.HttpRequestException;
 import org.actioncontroller.POST;
 import org.actioncontroller.PUT;
 import org.actioncontroller.PathParam;
+import org.actioncontroller.RequestParam;
 import org.actioncontroller.json.JsonBody;
 import org.fluentjdbc.DbContext;
 import org.jsonbuddy.JsonObject;
@@ -32,6 +35,7 @@ import java.io.StringReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -121,6 +125,23 @@ public class ServiceController {
 
     }
 
+    @GET("/Service/Availability/:Service_id")
+    @JsonBody
+    public ServiceAvailabilityDto getServiceAvailability(@PathParam("Service_id") UUID service_id,
+                                                         @RequestParam("from") Optional<String> from,
+                                                         @RequestParam("to") Optional<String> to,
+                                                         @RequestParam("openingHoursOnly") Optional<Boolean> openingHoursOnly) {
+        return serviceControllerHelper.getServiceAvailability(service_id, from, to, openingHoursOnly);
+    }
+
+    @GET("/Services/Availability")
+    @JsonBody
+    public List<ServiceAvailabilityDto> getAllServiceAvailability(@RequestParam("from") Optional<String> from,
+                                                                  @RequestParam("to") Optional<String> to,
+                                                                  @RequestParam("openingHoursOnly") Optional<Boolean> openingHoursOnly) {
+        return serviceControllerHelper.getAllServiceAvailability(from, to, openingHoursOnly);
+    }
+
     @PUT("/Service/:Service_id/:DependentOnService_id")
     @JsonBody
     public void addDependencyToService(@PathParam("Service_id") UUID service_id
@@ -149,6 +170,12 @@ public class ServiceController {
         serviceRepository.saveMaintenance(EntityDtoMappers.toMaintenanceEntity(maintenanceDto));
     }
 
+    @GET("/Service/HistoryAggregated/:Service_id")
+    @JsonBody
+    public ServiceHistoryDto getServiceHistoryTwelveMonthsBack(@PathParam("Service_id") UUID service_id) {
+        return serviceControllerHelper.getServiceHistoryTwelveMonthsBack(service_id);
+    }
+
     @GET("/Service/Maintenance/:Service_id")
     @JsonBody
     public List<MaintenanceDto> addMaintenance(@PathParam("Service_id") UUID service_id) {
@@ -26,6 +26,7 @@ class AreaControllerTest {
     private final DashboardController dashboardController = new DashboardController(dbContext);
     private final AreaController areaController = new AreaController(dbContext);
     private final ServiceController serviceController = new ServiceController(dbContext);
+    private final RecordController recordController = new RecordController(dbContext);
 
 
     @BeforeEach
@@ -268,4 +269,29 @@ class AreaControllerTest {
     }
 
 
+
+    @Test
+    void getAreaSummaries() {
+        //Arrange
+        AreaDto areaDto = SampleDataDto.getRandomizedAreaDto();
+        areaDto.setId(areaController.newArea(areaDto).getId());
+        AreaDto emptyAreaDto = SampleDataDto.getRandomizedAreaDtoWithNameNotInList(List.of(areaDto));
+        emptyAreaDto.setId(areaController.newArea(emptyAreaDto).getId());
+
+        ServiceDto serviceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDto());
+        areaController.addServiceToArea(areaDto.getId(), serviceDto.getId());
+        recordController.addServiceStatus(new RecordDto()
+                .serviceId(serviceDto.getId())
+                .status(StatusDto.ISSUE), retryAfter -> {});
+        //Act
+        List<AreaSummaryDto> summaries = areaController.getAreaSummaries();
+        //Assert
+        AreaSummaryDto summary = summaries.stream().filter(a -> a.getId().equals(areaDto.getId())).findFirst().orElseThrow();
+        AreaSummaryDto emptySummary = summaries.stream().filter(a -> a.getId().equals(emptyAreaDto.getId())).findFirst().orElseThrow();
+        Assertions.assertThat(summary.getStatus()).isEqualTo(StatusDto.ISSUE);
+        Assertions.assertThat(summary.getNumberOfServices()).isEqualTo(1);
+        Assertions.assertThat(summary.getIssue()).isEqualTo(1);
+        Assertions.assertThat(emptySummary.getStatus()).isNull();
+        Assertions.assertThat(emptySummary.getNumberOfServices()).isZero();
+    }
 }
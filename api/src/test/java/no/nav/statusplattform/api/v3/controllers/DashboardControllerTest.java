@@ -1,5 +1,6 @@
 package no.nav.statusplattform.api.v3.controllers;
 
+import nav.statusplattform.core.cache.DashboardResponseCache;
 import nav.statusplattform.core.openingHours.OpeningHoursDailyMap;
 import nav.statusplattform.core.repositories.OpeningHoursRepository;
 import nav.statusplattform.core.repositories.ServiceRepository;
@@ -14,6 +15,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -29,6 +31,7 @@ class DashboardControllerTest {
     private final ServiceController serviceController = new ServiceController(dbContext);
     private final OpsController opsController = new OpsController(dbContext);
     private final OpeningHoursController openingHoursController = new OpeningHoursController(dbContext);
+    private final RecordController recordController = new RecordController(dbContext);
 
     private final OpeningHoursRepository openingHoursRepository = new OpeningHoursRepository(dbContext);
     private final ServiceRepository serviceRepository = new ServiceRepository(dbContext);
@@ -207,4 +210,28 @@ class DashboardControllerTest {
 
 
     }
+
+    @Test
+    void getDashboardIsCachedUntilStatusChanges() {
+        //Arrange
+        AreaDto areaDto = SampleDataDto.getRandomizedAreaDto();
+        areaDto.setId(areaController.newArea(areaDto).getId());
+
+        ServiceDto serviceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDto());
+        areaController.addServiceToArea(areaDto.getId(), serviceDto.getId());
+
+        DashboardDto dashboardDto = SampleDataDto.getRandomizedDashboardDto();
+        dashboardDto.setAreas(List.of(areaDto));
+        dashboardDto.setId(dashboardController.postDashboard(dashboardDto).getId());
+        //Act
+        dashboardController.getDashboard(dashboardDto.getId());
+        byte[] cached = DashboardResponseCache.get(dashboardDto.getId()).orElseThrow();
+        recordController.addServiceStatus(new RecordDto()
+                .serviceId(serviceDto.getId())
+                .status(StatusDto.DOWN), retryAfter -> {});
+        //Assert
+        Assertions.assertThat(new String(cached, StandardCharsets.UTF_8)).contains(dashboardDto.getName());
+        Assertions.assertThat(DashboardResponseCache.get(dashboardDto.getId())).isEmpty();
+        Assertions.assertThat(DashboardResponseCache.getRebuilds()).isEqualTo(1);
+    }
 }
@@ -1,23 +1,45 @@
 package no.nav.statusplattform.api.v3.controllers;
 
+import nav.statusplattform.core.entities.RecordDeltaEntity;
 import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.entities.ResponseTimeHistogramEntity;
 import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.records.LatestStatusCache;
+import nav.statusplattform.core.records.ResponseTimeHistogram;
+import nav.statusplattform.core.records.ResponseTimeHistogramBuffer;
+import nav.statusplattform.core.records.StatusDeltaCounterBuffer;
 import nav.statusplattform.core.repositories.*;
 import no.nav.statusplattform.api.EntityDtoMappers;
+import no.nav.statusplattform.api.Helpers.RecordIngestQueue;
 import no.nav.statusplattform.generated.api.*;
+import org.actioncontroller.HttpRequestException;
 import org.assertj.core.api.Assertions;
 import org.fluentjdbc.DbContext;
 import org.fluentjdbc.DbContextConnection;
+import org.fluentjdbc.DbTransaction;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 class RecordControllerTest {
@@ -63,17 +85,17 @@ class RecordControllerTest {
         recordDto.setId(recordDto.getId());
         recordDto.setServiceId(serviceDto.getId());
 
-        List<RecordDto> recordStatusOnServiceBefore = recordController.getRecordHistory(serviceDto.getId());
+        List<RecordDto> recordStatusOnServiceBefore = firstPage(serviceDto.getId());
 
         //Act
-        recordController.addServiceStatus(recordDto);
+        recordController.addServiceStatus(recordDto, retryAfter -> {});
         areaController.addServiceToArea(areaDto.getId(), serviceDto.getId());
         dashboardController.getDashboard(dashboardDto.getId());
 
         //Assert
         List<AreaDto> retrievedAreas = areaController.getAllAreas();
         List<ServiceDto>retrievedServices = retrievedAreas.get(0).getServices();
-        List<RecordDto> recordStatusOnServiceAfter = recordController.getRecordHistory(serviceDto.getId());
+        List<RecordDto> recordStatusOnServiceAfter = firstPage(serviceDto.getId());
 
         Assertions.assertThat(recordStatusOnServiceBefore.size()).isEqualTo(1);
         Assertions.assertThat(recordStatusOnServiceBefore.get(0).getStatus()).isEqualTo(StatusDto.UNKNOWN);
@@ -103,7 +125,7 @@ class RecordControllerTest {
             i++;
         }
         //Act
-        List<RecordDto> retrievedRecordDtos = recordController.getRecordHistory(serviceID);
+        List<RecordDto> retrievedRecordDtos = firstPage(serviceID);
         //Assert
         List<RecordEntity> retrievedRecords = retrievedRecordDtos
                 .stream().map(EntityDtoMappers::toRecordEntity).collect(Collectors.toList());
@@ -111,4 +133,385 @@ class RecordControllerTest {
         Assertions.assertThat(retrievedRecordDtos.size()).isEqualTo(records.size());
         Assertions.assertThat(retrievedRecords).containsAll(records);
     }
+
+    @Test
+    void getRecordHistoryInPages() {
+        //Arrange
+        ServiceEntity serviceEntity = SampleData.getRandomizedServiceEntity();
+        serviceEntity.setId(serviceRepository.save(serviceEntity));
+        ZonedDateTime now = ZonedDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        List<RecordEntity> records = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            //To og to records har samme tidspunkt
+            RecordEntity record = SampleData.getRandomizedRecordEntityForService(serviceEntity).setCreated_at(now.minusMinutes(i / 2));
+            record.setId(RecordRepository.saveRecordBackInTime(record, dbContext));
+            records.add(record);
+        }
+        //Act
+        List<UUID> retrievedIds = new ArrayList<>();
+        List<String> cursors = new ArrayList<>();
+        Optional<String> cursor = Optional.empty();
+        do {
+            List<String> nextCursor = new ArrayList<>();
+            recordController.getRecordHistory(serviceEntity.getId(), cursor, Optional.of(2), Optional.empty(), Optional.empty(), Optional.empty(), nextCursor::add)
+                    .forEach(record -> retrievedIds.add(record.getId()));
+            cursors.addAll(nextCursor);
+            cursor = nextCursor.stream().findFirst();
+        } while (cursor.isPresent());
+        //Assert
+        Assertions.assertThat(retrievedIds).doesNotHaveDuplicates()
+                .containsExactlyInAnyOrderElementsOf(records.stream().map(RecordEntity::getId).collect(Collectors.toList()));
+        Assertions.assertThat(cursors).hasSize(2);
+    }
+
+    @Test
+    void getRecordHistoryWithFilters() {
+        //Arrange
+        ServiceEntity serviceEntity = SampleData.getRandomizedServiceEntity();
+        serviceEntity.setId(serviceRepository.save(serviceEntity));
+        ZonedDateTime now = ZonedDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        RecordEntity oldDown = SampleData.getRandomizedRecordEntityForService(serviceEntity).setStatus(ServiceStatus.DOWN).setCreated_at(now.minusDays(2));
+        RecordEntity newDown = SampleData.getRandomizedRecordEntityForService(serviceEntity).setStatus(ServiceStatus.DOWN).setCreated_at(now.minusHours(1));
+        RecordEntity newOk = SampleData.getRandomizedRecordEntityForService(serviceEntity).setStatus(ServiceStatus.OK).setCreated_at(now.minusHours(2));
+        List.of(oldDown, newDown, newOk).forEach(record -> record.setId(RecordRepository.saveRecordBackInTime(record, dbContext)));
+        //Act
+        List<RecordDto> history = recordController.getRecordHistory(serviceEntity.getId(), Optional.empty(), Optional.empty(),
+                Optional.of(now.minusDays(1).toOffsetDateTime().toString()), Optional.empty(), Optional.of("down"), nextCursor -> {});
+        //Assert
+        Assertions.assertThat(history).extracting(RecordDto::getId).containsExactly(newDown.getId());
+        Assertions.assertThatThrownBy(() -> recordController.getRecordHistory(serviceEntity.getId(), Optional.of("not-a-cursor"),
+                        Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty(), nextCursor -> {}))
+                .isInstanceOf(HttpRequestException.class);
+    }
+
+    @Test
+    void updateRecords() {
+        //Arrange
+        ServiceDto serviceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDto());
+        ServiceDto otherServiceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDtoWithNameNotInList(List.of(serviceDto)).pollingUrl(null));
+        RecordRepository recordRepository = new RecordRepository(dbContext);
+
+        List<RecordDto> batch = List.of(
+                recordFor(serviceDto.getId(), StatusDto.OK),
+                recordFor(serviceDto.getId(), StatusDto.OK),
+                recordFor(serviceDto.getId(), StatusDto.DOWN),
+                recordFor(otherServiceDto.getId(), StatusDto.OK));
+        //Act
+        recordController.updateRecords(batch, retryAfter -> {});
+        recordController.updateRecords(List.of(recordFor(otherServiceDto.getId(), StatusDto.OK)), retryAfter -> {});
+        int counterBeforeFlush = recordRepository.getActiveRecordDelta(otherServiceDto.getId()).orElseThrow().getCounter();
+        StatusDeltaCounterBuffer.flush(dbContext);
+        //Assert
+        RecordDeltaEntity activeDelta = recordRepository.getActiveRecordDelta(serviceDto.getId()).orElseThrow();
+        RecordDeltaEntity otherActiveDelta = recordRepository.getActiveRecordDelta(otherServiceDto.getId()).orElseThrow();
+        Assertions.assertThat(activeDelta.getStatus()).isEqualTo(ServiceStatus.DOWN);
+        Assertions.assertThat(activeDelta.getCounter()).isEqualTo(1);
+        Assertions.assertThat(otherActiveDelta.getStatus()).isEqualTo(ServiceStatus.OK);
+        Assertions.assertThat(counterBeforeFlush).isEqualTo(1);
+        Assertions.assertThat(otherActiveDelta.getCounter()).isEqualTo(2);
+        Assertions.assertThat(firstPage(serviceDto.getId())).hasSize(4);
+        Assertions.assertThat(firstPage(otherServiceDto.getId())).hasSize(3);
+    }
+
+    @Test
+    void updateRecordsRolledBackLeavesBuffersUnchanged() {
+        //Arrange
+        ServiceDto serviceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDto());
+        RecordRepository recordRepository = new RecordRepository(dbContext);
+        List<RecordDto> historyBefore = firstPage(serviceDto.getId());
+        //Act
+        try (AfterCommit ignored = AfterCommit.begin();
+             DbTransaction transaction = dbContext.ensureTransaction()) {
+            recordController.updateRecords(List.of(recordFor(serviceDto.getId(), StatusDto.DOWN)), retryAfter -> {});
+            transaction.setRollback();
+        }
+        //Assert
+        Assertions.assertThat(firstPage(serviceDto.getId())).hasSameSizeAs(historyBefore);
+        Assertions.assertThat(LatestStatusCache.get(serviceDto.getId(), recordRepository).map(RecordEntity::getStatus))
+                .isNotEqualTo(Optional.of(ServiceStatus.DOWN));
+        Assertions.assertThat(ResponseTimeHistogramBuffer.getPending(serviceDto.getId(), Instant.EPOCH, Instant.now()).getCount()).isZero();
+    }
+
+    @Test
+    void getRecordHistoryContinuesFromBufferToDatabase() {
+        //Arrange
+        ServiceDto serviceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDto());
+        //Tidspunkt fra poller, timer før tidspunktet recordene lagres, og med nanosekunder
+        OffsetDateTime pollerTime = OffsetDateTime.now().minusHours(5).withNano(123_456_789);
+        List<RecordDto> records = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            records.add(recordFor(serviceDto.getId(), StatusDto.OK).timestamp(pollerTime.plusMinutes(i)));
+        }
+        recordController.updateRecords(records, retryAfter -> {});
+        //Act
+        List<OffsetDateTime> retrieved = new ArrayList<>();
+        Optional<String> cursor = Optional.empty();
+        do {
+            List<String> nextCursor = new ArrayList<>();
+            recordController.getRecordHistory(serviceDto.getId(), cursor, Optional.of(2), Optional.empty(), Optional.empty(), Optional.empty(), nextCursor::add)
+                    .forEach(record -> retrieved.add(record.getTimestamp()));
+            cursor = nextCursor.stream().findFirst();
+        } while (cursor.isPresent());
+        //Assert
+        //Den nyeste ble lagt inn da tjenesten ble opprettet
+        Assertions.assertThat(retrieved).hasSize(6);
+        Assertions.assertThat(retrieved.subList(1, retrieved.size())).extracting(OffsetDateTime::toInstant).containsExactly(
+                pollerTime.plusMinutes(4).withNano(123_456_000).toInstant(),
+                pollerTime.plusMinutes(3).withNano(123_456_000).toInstant(),
+                pollerTime.plusMinutes(2).withNano(123_456_000).toInstant(),
+                pollerTime.plusMinutes(1).withNano(123_456_000).toInstant(),
+                pollerTime.withNano(123_456_000).toInstant());
+    }
+
+    @Test
+    void updateRecordsWithoutTimestampOrStatus() {
+        //Arrange
+        ServiceDto serviceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDto());
+        OffsetDateTime before = OffsetDateTime.now().minusSeconds(1);
+        //Act
+        recordController.updateRecords(List.of(recordFor(serviceDto.getId(), StatusDto.DOWN).timestamp(null)), retryAfter -> {});
+        //Assert
+        RecordDeltaEntity activeDelta = new RecordRepository(dbContext).getActiveRecordDelta(serviceDto.getId()).orElseThrow();
+        Assertions.assertThat(activeDelta.getStatus()).isEqualTo(ServiceStatus.DOWN);
+        Assertions.assertThat(activeDelta.getLastAppliedAt().toOffsetDateTime()).isAfterOrEqualTo(before);
+        Assertions.assertThatThrownBy(() -> recordController.updateRecords(
+                        List.of(recordFor(serviceDto.getId(), StatusDto.OK).status(null)), retryAfter -> {}))
+                .isInstanceOf(HttpRequestException.class);
+    }
+
+    @Test
+    void updateRecordsOutOfOrder() {
+        //Arrange
+        ServiceDto serviceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDto());
+        RecordRepository recordRepository = new RecordRepository(dbContext);
+        OffsetDateTime now = OffsetDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        //Act
+        recordController.updateRecords(List.of(recordFor(serviceDto.getId(), StatusDto.DOWN).timestamp(now)), retryAfter -> {});
+        recordController.updateRecords(List.of(recordFor(serviceDto.getId(), StatusDto.OK).timestamp(now.minusMinutes(5))), retryAfter -> {});
+        RecordDeltaEntity afterLateRecord = recordRepository.getActiveRecordDelta(serviceDto.getId()).orElseThrow();
+        recordController.updateRecords(List.of(
+                recordFor(serviceDto.getId(), StatusDto.OK).timestamp(now.plusMinutes(1)),
+                recordFor(serviceDto.getId(), StatusDto.ISSUE).timestamp(now.minusMinutes(1))), retryAfter -> {});
+        //Assert
+        RecordDeltaEntity activeDelta = recordRepository.getActiveRecordDelta(serviceDto.getId()).orElseThrow();
+        Assertions.assertThat(afterLateRecord.getStatus()).isEqualTo(ServiceStatus.DOWN);
+        Assertions.assertThat(afterLateRecord.getCounter()).isEqualTo(1);
+        Assertions.assertThat(activeDelta.getStatus()).isEqualTo(ServiceStatus.OK);
+        Assertions.assertThat(activeDelta.getLastAppliedAt().toInstant()).isEqualTo(now.plusMinutes(1).toInstant());
+        Assertions.assertThat(firstPage(serviceDto.getId())).hasSize(5);
+        Assertions.assertThat(dbContext.table("service_status_delta").where("service_id", serviceDto.getId()).list(row -> row.getString("status")))
+                .containsExactlyInAnyOrder(ServiceStatus.UNKNOWN.getDbRepresentation(), ServiceStatus.DOWN.getDbRepresentation(), ServiceStatus.OK.getDbRepresentation());
+    }
+
+    @Test
+    void updateRecordsWithIngestQueue() throws InterruptedException {
+        //Arrange
+        ServiceDto serviceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDto());
+        RecordIngestQueue recordIngestQueue = new RecordIngestQueue(dbContext, 2, 1);
+        recordIngestQueue.setDataSource(dataSource);
+        recordIngestQueue.start();
+        recordController.setRecordIngestQueue(recordIngestQueue);
+        List<String> retryAfterHeaders = new ArrayList<>();
+        //Act
+        Assertions.assertThatThrownBy(() -> recordController.updateRecords(List.of(
+                        recordFor(serviceDto.getId(), StatusDto.OK),
+                        recordFor(serviceDto.getId(), StatusDto.OK),
+                        recordFor(serviceDto.getId(), StatusDto.OK)), retryAfterHeaders::add))
+                .isInstanceOf(HttpRequestException.class);
+        recordController.updateRecords(List.of(recordFor(serviceDto.getId(), StatusDto.DOWN)), retryAfterHeaders::add);
+        recordIngestQueue.shutdown(Duration.ofSeconds(10));
+        //Assert
+        Assertions.assertThat(retryAfterHeaders).containsExactly("5");
+        Assertions.assertThat(recordIngestQueue.size()).isZero();
+        List<RecordDto> history = firstPage(serviceDto.getId());
+        Assertions.assertThat(history).hasSize(2);
+        Assertions.assertThat(history.get(0).getStatus()).isEqualTo(StatusDto.DOWN);
+    }
+
+    @Test
+    void updateRecordsWithIngestQueueRetriesFailedBatch() throws InterruptedException {
+        //Arrange
+        ServiceDto serviceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDto());
+        //De to første forsøkene får ikke forbindelse til databasen
+        AtomicInteger failures = new AtomicInteger(2);
+        DataSource failingDataSource = (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getConnection") && failures.getAndDecrement() > 0) {
+                        throw new SQLException("Connection refused", "08001");
+                    }
+                    return method.invoke(dataSource, args);
+                });
+        RecordIngestQueue recordIngestQueue = new RecordIngestQueue(dbContext, 10, 1);
+        recordIngestQueue.setDataSource(failingDataSource);
+        recordIngestQueue.start();
+        recordController.setRecordIngestQueue(recordIngestQueue);
+        //Act
+        recordController.updateRecords(List.of(recordFor(serviceDto.getId(), StatusDto.DOWN)), retryAfter -> {});
+        recordIngestQueue.shutdown(Duration.ofSeconds(10));
+        //Assert
+        Assertions.assertThat(failures.get()).isNegative();
+        List<RecordDto> history = firstPage(serviceDto.getId());
+        Assertions.assertThat(history).hasSize(2);
+        Assertions.assertThat(history.get(0).getStatus()).isEqualTo(StatusDto.DOWN);
+    }
+
+    @Test
+    void updateRecordsWithIngestQueueSavesOtherServicesWhenOneCanNotBeSaved() throws InterruptedException {
+        //Arrange
+        ServiceDto serviceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDto());
+        RecordIngestQueue recordIngestQueue = new RecordIngestQueue(dbContext, 10, 1);
+        recordIngestQueue.setDataSource(dataSource);
+        recordController.setRecordIngestQueue(recordIngestQueue);
+        recordIngestQueue.start();
+        //Act
+        recordController.updateRecords(List.of(
+                recordFor(UUID.randomUUID(), StatusDto.DOWN),
+                recordFor(serviceDto.getId(), StatusDto.DOWN)), retryAfter -> {});
+        recordIngestQueue.shutdown(Duration.ofSeconds(10));
+        //Assert
+        Assertions.assertThat(recordIngestQueue.size()).isZero();
+        Assertions.assertThat(firstPage(serviceDto.getId()).get(0).getStatus()).isEqualTo(StatusDto.DOWN);
+    }
+
+    @Test
+    void updateRecordsStream() throws IOException {
+        //Arrange
+        ServiceDto serviceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDto());
+        String ndjson = ndjsonRecord(serviceDto.getId(), "OK") + "\n"
+                + "\n"
+                + ndjsonRecord(serviceDto.getId(), "OK") + "\n"
+                + ndjsonRecord(serviceDto.getId(), "ISSUE");
+        //Act
+        List<String> acceptedRecords = new ArrayList<>();
+        recordController.updateRecordsStream(new BufferedReader(new StringReader(ndjson)), retryAfter -> {}, acceptedRecords::add);
+        //Assert
+        Assertions.assertThat(acceptedRecords).containsExactly("3");
+        List<RecordDto> history = firstPage(serviceDto.getId());
+        RecordDeltaEntity activeDelta = new RecordRepository(dbContext).getActiveRecordDelta(serviceDto.getId()).orElseThrow();
+        Assertions.assertThat(history).hasSize(4);
+        Assertions.assertThat(activeDelta.getStatus()).isEqualTo(ServiceStatus.ISSUE);
+    }
+
+    @Test
+    void updateRecordsStreamWithInvalidLine() {
+        //Arrange
+        ServiceDto serviceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDto());
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            ndjson.append(ndjsonRecord(serviceDto.getId(), "OK")).append("\n");
+        }
+        ndjson.append("{not json");
+        List<String> acceptedRecords = new ArrayList<>();
+        //Act
+        //Assert
+        Assertions.assertThatThrownBy(() -> recordController.updateRecordsStream(new BufferedReader(new StringReader(ndjson.toString())),
+                        retryAfter -> {}, acceptedRecords::add))
+                .isInstanceOf(HttpRequestException.class)
+                .hasMessageContaining("line 501");
+        //Den første batchen er lagret før linjen som feilet
+        Assertions.assertThat(acceptedRecords).containsExactly("500");
+        Assertions.assertThat(dbContext.table("service_status").where("service_id", serviceDto.getId()).getCount()).isEqualTo(501);
+    }
+
+    @Test
+    void getRecordRange() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        ZonedDateTime now = ZonedDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        for (int minute = 60; minute > 0; minute--) {
+            RecordRepository.saveRecordBackInTime(SampleData.getRandomizedRecordEntityForService(service)
+                    .setStatus(minute == 30 ? ServiceStatus.DOWN : ServiceStatus.OK)
+                    .setResponsetime(minute == 30 ? 9000 : 100)
+                    .setCreated_at(now.minusMinutes(minute)), dbContext);
+        }
+        //Act
+        List<ChartPointDto> points = recordController.getRecordRange(service.getId(),
+                Optional.of(now.minusHours(1).toOffsetDateTime().toString()), Optional.of(now.toOffsetDateTime().toString()), Optional.of(6));
+        //Assert
+        Assertions.assertThat(points).hasSize(6);
+        Assertions.assertThat(points).extracting(ChartPointDto::getCount).containsOnly(10);
+        Assertions.assertThat(points).filteredOn(point -> point.getStatus() == StatusDto.DOWN)
+                .extracting(ChartPointDto::getResponseTime).containsExactly(9000);
+        Assertions.assertThatThrownBy(() -> recordController.getRecordRange(service.getId(),
+                Optional.empty(), Optional.empty(), Optional.of(1))).isInstanceOf(HttpRequestException.class);
+    }
+
+    @Test
+    void getResponseTime() {
+        //Arrange
+        ServiceDto serviceDto = serviceController.newService(SampleDataDto.getRandomizedServiceDto());
+        OffsetDateTime now = OffsetDateTime.now();
+        OffsetDateTime twoHoursAgo = now.minusHours(2);
+        List<RecordDto> closedHour = new ArrayList<>();
+        for (int responseTime = 1; responseTime <= 100; responseTime++) {
+            closedHour.add(recordFor(serviceDto.getId(), StatusDto.OK).timestamp(twoHoursAgo).responseTime(responseTime));
+        }
+        recordController.updateRecords(closedHour, retryAfter -> {});
+        ResponseTimeHistogramBuffer.flush(new ResponseTimeHistogramRepository(dbContext), now.toInstant());
+        recordController.updateRecords(List.of(recordFor(serviceDto.getId(), StatusDto.OK).timestamp(now).responseTime(5000)), retryAfter -> {});
+        //Act
+        ResponseTimeDto responseTime = recordController.getResponseTime(serviceDto.getId(), Optional.empty(), Optional.empty());
+        ResponseTimeDto closedHourOnly = recordController.getResponseTime(serviceDto.getId(),
+                Optional.of(twoHoursAgo.minusMinutes(1).toString()), Optional.of(twoHoursAgo.plusMinutes(1).toString()));
+        //Assert
+        Assertions.assertThat(dbContext.table("response_time_histogram").where("service_id", serviceDto.getId()).list(row -> row.getLong("count")))
+                .containsExactly(100L);
+        Assertions.assertThat(responseTime.getCount()).isEqualTo(101);
+        Assertions.assertThat(responseTime.getMax()).isEqualTo(5000);
+        Assertions.assertThat(responseTime.getP50()).isBetween(50, 56);
+        Assertions.assertThat(closedHourOnly.getCount()).isEqualTo(100);
+        Assertions.assertThat(closedHourOnly.getP99()).isBetween(99, 100);
+        Assertions.assertThat(closedHourOnly.getMax()).isEqualTo(100);
+    }
+
+    @Test
+    void getResponseTimeFromDailyAggregation() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        ZoneId zone = ServiceRepository.AGGREGATION_ZONE;
+        LocalDate threeDaysAgo = LocalDate.now(zone).minusDays(3);
+        ZonedDateTime noon = threeDaysAgo.atTime(12, 0).atZone(zone);
+        ResponseTimeHistogram expiredHour = new ResponseTimeHistogram();
+        for (int responseTime = 1; responseTime <= 100; responseTime++) {
+            expiredHour.record(responseTime);
+        }
+        ResponseTimeHistogram recentHour = new ResponseTimeHistogram();
+        recentHour.record(5000);
+        ResponseTimeHistogramRepository histogramRepository = new ResponseTimeHistogramRepository(dbContext);
+        histogramRepository.saveAll(List.of(
+                new ResponseTimeHistogramEntity().setService_id(service.getId()).setHour(noon).setHistogram(expiredHour),
+                new ResponseTimeHistogramEntity().setService_id(service.getId())
+                        .setHour(ZonedDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(2)).setHistogram(recentHour)));
+        RecordRepository.saveRecordBackInTime(SampleData.getRandomizedRecordEntityForService(service).setCreated_at(noon), dbContext);
+        serviceRepository.aggregateHourlyStatus(noon);
+        serviceRepository.aggregateDailyStatus(threeDaysAgo);
+        histogramRepository.deleteOlderThan(noon.plusHours(1), service.getType());
+        //Act
+        ResponseTimeDto responseTime = recordController.getResponseTime(service.getId(),
+                Optional.of(noon.minusDays(1).toOffsetDateTime().toString()), Optional.empty());
+        //Assert
+        Assertions.assertThat(dbContext.table("response_time_histogram").where("service_id", service.getId())
+                .list(row -> row.getLong("count"))).containsExactly(1L);
+        Assertions.assertThat(responseTime.getCount()).isEqualTo(101);
+        Assertions.assertThat(responseTime.getMax()).isEqualTo(5000);
+        Assertions.assertThat(responseTime.getP50()).isBetween(50, 56);
+    }
+
+    private List<RecordDto> firstPage(UUID serviceId) {
+        return recordController.getRecordHistory(serviceId, Optional.empty(), Optional.empty(), Optional.empty(),
+                Optional.empty(), Optional.empty(), nextCursor -> {});
+    }
+
+    private static String ndjsonRecord(UUID serviceId, String status) {
+        return "{\"serviceId\":\"" + serviceId + "\",\"status\":\"" + status + "\",\"timestamp\":\"" + OffsetDateTime.now() + "\",\"responseTime\":120}";
+    }
+
+    private static RecordDto recordFor(UUID serviceId, StatusDto status) {
+        return SampleDataDto.getRandomizedRecordDto()
+                .serviceId(serviceId)
+                .status(status)
+                .timestamp(OffsetDateTime.now());
+    }
 }
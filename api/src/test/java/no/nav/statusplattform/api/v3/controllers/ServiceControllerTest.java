@@ -5,13 +5,19 @@ import com.nimbusds.oauth2.sdk.ParseException;
 import nav.statusplattform.core.entities.AreaEntity;
 import nav.statusplattform.core.entities.RecordEntity;
 import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
 import nav.statusplattform.core.enums.ServiceType;
 import nav.statusplattform.core.repositories.*;
 import no.nav.statusplattform.api.EntityDtoMappers;
 import no.nav.statusplattform.api.Helpers.AccessTokenHelper;
 import no.nav.statusplattform.generated.api.AreaDto;
 import no.nav.statusplattform.generated.api.MaintenanceDto;
+import no.nav.statusplattform.generated.api.ServiceAvailabilityDto;
 import no.nav.statusplattform.generated.api.ServiceDto;
+import no.nav.statusplattform.generated.api.ServiceHistoryDto;
+import no.nav.statusplattform.generated.api.ServiceHistoryMonthEntryDto;
+import no.nav.statusplattform.generated.api.StatusDto;
+import org.actioncontroller.HttpRequestException;
 import org.assertj.core.api.Assertions;
 import org.fluentjdbc.DbContext;
 import org.fluentjdbc.DbContextConnection;
@@ -26,7 +32,10 @@ import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.time.LocalDate;
 import java.time.Month;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -275,6 +284,76 @@ class ServiceControllerTest {
         Assertions.assertThat(serviceRepository.retrieve(UUIDComponentWithDependecies)).isNotEmpty();
     }
 
+    @Test
+    void getServiceHistoryAggregated() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        RecordRepository.saveRecordBackInTime(SampleData.getRandomizedRecordEntityForService(service)
+                .setStatus(ServiceStatus.ISSUE).setCreated_at(yesterday.atTime(12, 0).atZone(ServiceRepository.AGGREGATION_ZONE)), dbContext);
+        serviceRepository.aggregateHourlyStatus(yesterday.atTime(12, 0).atZone(ServiceRepository.AGGREGATION_ZONE));
+        serviceRepository.aggregateDailyStatus(yesterday);
+        //Act
+        ServiceHistoryDto result = serviceController.getServiceHistoryTwelveMonthsBack(service.getId());
+        //Assert
+        Assertions.assertThat(result.getHistory()).hasSize(12);
+        ServiceHistoryMonthEntryDto monthOfYesterday = result.getHistory().stream()
+                .filter(month -> month.getYear() == yesterday.getYear() && !month.getEntries().isEmpty())
+                .findFirst().orElseThrow();
+        Assertions.assertThat(monthOfYesterday.getEntries()).hasSize(1);
+        Assertions.assertThat(monthOfYesterday.getEntries().get(0).getDate()).isEqualTo(yesterday);
+        Assertions.assertThat(monthOfYesterday.getEntries().get(0).getStatus()).isEqualTo(StatusDto.ISSUE);
+        Assertions.assertThat(result.getHistory().get(0).getMonth()).isNotBlank();
+    }
+
+    @Test
+    void getServiceAvailability() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        ServiceEntity serviceWithoutStatus = SampleData.getRandomizedServiceEntityWithNameNotInList(List.of(service));
+        serviceWithoutStatus.setId(serviceRepository.save(serviceWithoutStatus));
+        LocalDate day = LocalDate.of(2023, 3, 1);
+        ZonedDateTime dayStart = day.atStartOfDay(ZoneId.systemDefault());
+        saveStatusDelta(service.getId(), ServiceStatus.OK, dayStart, dayStart.plusHours(18), false);
+        saveStatusDelta(service.getId(), ServiceStatus.DOWN, dayStart.plusHours(18), dayStart.plusHours(24), false);
+        saveStatusDelta(service.getId(), ServiceStatus.OK, dayStart.plusHours(24), dayStart.plusHours(24), true);
+        //Act
+        ServiceAvailabilityDto availability = serviceController.getServiceAvailability(service.getId(),
+                Optional.of(day.toString()), Optional.of(day.toString()), Optional.empty());
+        List<ServiceAvailabilityDto> catalog = serviceController.getAllServiceAvailability(
+                Optional.of(day.toString()), Optional.of(day.toString()), Optional.of(true));
+        //Assert
+        Assertions.assertThat(availability.getUptimePercentage()).isEqualTo(75.0);
+        Assertions.assertThat(availability.getOkMinutes()).isEqualTo(18 * 60);
+        Assertions.assertThat(availability.getDownMinutes()).isEqualTo(6 * 60);
+        Assertions.assertThat(availability.getIncidents()).isEqualTo(1);
+        Assertions.assertThat(availability.getMttrMinutes()).isEqualTo(6 * 60);
+        Assertions.assertThat(catalog).extracting(ServiceAvailabilityDto::getServiceId)
+                .containsExactlyInAnyOrder(service.getId(), serviceWithoutStatus.getId());
+        ServiceAvailabilityDto withoutStatus = catalog.stream()
+                .filter(a -> a.getServiceId().equals(serviceWithoutStatus.getId())).findFirst().orElseThrow();
+        Assertions.assertThat(withoutStatus.getUptimePercentage()).isNull();
+        Assertions.assertThat(withoutStatus.getMttrMinutes()).isNull();
+        Assertions.assertThatThrownBy(() -> serviceController.getServiceAvailability(service.getId(),
+                Optional.of("2023-03-02"), Optional.of("2023-03-01"), Optional.empty())).isInstanceOf(HttpRequestException.class);
+        Assertions.assertThatThrownBy(() -> serviceController.getServiceAvailability(service.getId(),
+                Optional.of("1. mars"), Optional.empty(), Optional.empty())).isInstanceOf(HttpRequestException.class);
+    }
+
+    private void saveStatusDelta(UUID serviceId, ServiceStatus status, ZonedDateTime createdAt, ZonedDateTime updatedAt, boolean active) {
+        dbContext.table("service_status_delta").insert()
+                .setField("id", UUID.randomUUID())
+                .setField("service_id", serviceId)
+                .setField("status", status.getDbRepresentation())
+                .setField("active", active)
+                .setField("counter", 1)
+                .setField("created_at", createdAt)
+                .setField("updated_at", updatedAt)
+                .execute();
+    }
+
 //    @Test
 //    //TODO SE på denne
 //    void getServiceHistoryTwelveMonthsBack() {
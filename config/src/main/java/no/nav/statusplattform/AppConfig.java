@@ -35,4 +35,11 @@ public class AppConfig {
     public final String swaggerApiKey = System.getenv("swagger-api-key");
     public final String host = Optional.ofNullable(System.getenv("HOST")).orElse("localhost");
     public final int port = Optional.ofNullable(System.getenv("HTTP_PLATFORM_PORT")).map(Integer::parseInt).orElse(3005);
+    public final boolean asyncRecordIngest = getEnvVar("ASYNC_RECORD_INGEST").map(Boolean::parseBoolean).orElse(false);
+    public final int recordIngestQueueCapacity = getEnvVar("RECORD_INGEST_QUEUE_CAPACITY").map(Integer::parseInt).orElse(20000);
+    public final int recordIngestWriters = getEnvVar("RECORD_INGEST_WRITERS").map(Integer::parseInt).orElse(2);
+    public final int retentionRawHoursTjeneste = getEnvVar("RETENTION_RAW_HOURS_TJENESTE").map(Integer::parseInt).orElse(48);
+    public final int retentionRawHoursKomponent = getEnvVar("RETENTION_RAW_HOURS_KOMPONENT").map(Integer::parseInt).orElse(48);
+    public final int retentionHourlyDaysTjeneste = getEnvVar("RETENTION_HOURLY_DAYS_TJENESTE").map(Integer::parseInt).orElse(35);
+    public final int retentionHourlyDaysKomponent = getEnvVar("RETENTION_HOURLY_DAYS_KOMPONENT").map(Integer::parseInt).orElse(35);
 }
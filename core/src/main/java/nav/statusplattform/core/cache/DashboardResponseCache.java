@@ -0,0 +1,110 @@
+package nav.statusplattform.core.cache;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+//Ferdig serialisert dashboard (JSON) per dashboard id, slik at et treff kan besvares uten databaseforbindelse.
+//Fjernes ved statusendring på en tjeneste i dashboardet, og helt ved endringer i katalog, driftsmeldinger og åpningstider.
+//Cachen er per instans: endringer gjort på en annen instans blir synlige etter MAX_AGE.
+public class DashboardResponseCache {
+    private static final Duration MAX_AGE = Duration.ofSeconds(30);
+
+    //Dashboard id - serialisert dashboard
+    private static final Map<UUID, CachedResponse> map = new ConcurrentHashMap<>();
+    //Økes ved hver invalidering. Et dashboard bygget mens noe ble invalidert legges ikke i cachen.
+    private static final AtomicLong generation = new AtomicLong();
+
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+    private static final LongAdder rebuilds = new LongAdder();
+    private static final LongAdder rebuildNanos = new LongAdder();
+
+    private static class CachedResponse {
+        private final byte[] body;
+        private final Set<UUID> serviceIds;
+        private final Instant cachedAt;
+
+        private CachedResponse(byte[] body, Set<UUID> serviceIds) {
+            this.body = body;
+            this.serviceIds = serviceIds;
+            this.cachedAt = Instant.now();
+        }
+
+        private boolean isExpired() {
+            return cachedAt.plus(MAX_AGE).isBefore(Instant.now());
+        }
+    }
+
+    public static Optional<byte[]> get(UUID dashboardId) {
+        CachedResponse cached = map.get(dashboardId);
+        if (cached == null || cached.isExpired()) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(cached.body);
+    }
+
+    //Hentes før dashboardet bygges, og gis til put
+    public static long getGeneration() {
+        return generation.get();
+    }
+
+    public static void put(UUID dashboardId, byte[] body, Set<UUID> serviceIds, long generationAtStart, Duration rebuildTime) {
+        rebuilds.increment();
+        rebuildNanos.add(rebuildTime.toNanos());
+        CachedResponse response = new CachedResponse(body, Set.copyOf(serviceIds));
+        map.compute(dashboardId, (id, current) -> generation.get() == generationAtStart ? response : current);
+    }
+
+    //Fjerner dashboardene som viser en av tjenestene
+    public static void invalidateServices(Collection<UUID> serviceIds) {
+        if (serviceIds.isEmpty()) {
+            return;
+        }
+        generation.incrementAndGet();
+        map.values().removeIf(cached -> serviceIds.stream().anyMatch(cached.serviceIds::contains));
+    }
+
+    public static void invalidateAll() {
+        generation.incrementAndGet();
+        map.clear();
+    }
+
+    public static long getHits() {
+        return hits.sum();
+    }
+
+    public static long getMisses() {
+        return misses.sum();
+    }
+
+    public static long getRebuilds() {
+        return rebuilds.sum();
+    }
+
+    public static Duration getAverageRebuildTime() {
+        long numberOfRebuilds = rebuilds.sum();
+        return numberOfRebuilds == 0 ? Duration.ZERO : Duration.ofNanos(rebuildNanos.sum() / numberOfRebuilds);
+    }
+
+    public static int size() {
+        return map.size();
+    }
+
+    public static void clear() {
+        invalidateAll();
+        hits.reset();
+        misses.reset();
+        rebuilds.reset();
+        rebuildNanos.reset();
+    }
+}
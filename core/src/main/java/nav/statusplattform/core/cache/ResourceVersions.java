@@ -0,0 +1,80 @@
+package nav.statusplattform.core.cache;
+
+import nav.statusplattform.core.records.StatusTree;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Versjonstellere for lesetjenestene, brukt som ETag. Tellerne økes av skriveoperasjonene, så en klient som
+//sender samme ETag tilbake kan få 304 uten at noe leses fra databasen.
+//Tellerne er per instans: ETag inneholder id for instansen, og et tidsvindu på MAX_AGE slik at endringer gjort
+//på en annen instans, og driftsmeldinger som blir aktive, blir synlige etter MAX_AGE som i de andre cachene.
+public class ResourceVersions {
+    private static final Duration MAX_AGE = Duration.ofSeconds(30);
+    private static final String INSTANCE = UUID.randomUUID().toString().substring(0, 8);
+
+    //Tjenester, områder, underområder og dashboards
+    private static final AtomicLong catalog = new AtomicLong();
+    private static final AtomicLong opsMessages = new AtomicLong();
+    //Status på en hvilken som helst tjeneste
+    private static final AtomicLong statuses = new AtomicLong();
+    //Alle dashboards, når det ikke er kjent hvilke dashboards en statusendring gjelder
+    private static final AtomicLong allDashboards = new AtomicLong();
+    //Dashboard id - statusendringer på tjenester i dashboardet. Opprettes ved første endring.
+    private static final Map<UUID, AtomicLong> dashboards = new ConcurrentHashMap<>();
+
+    public static String getDashboardTag(UUID dashboardId) {
+        AtomicLong dashboard = dashboards.get(dashboardId);
+        return tag(catalog.get(), opsMessages.get(), allDashboards.get(), dashboard != null ? dashboard.get() : 0);
+    }
+
+    public static String getServicesTag() {
+        return tag(catalog.get(), statuses.get());
+    }
+
+    public static String getAreasTag() {
+        return tag(catalog.get());
+    }
+
+    public static String getOpsMessagesTag() {
+        return tag(catalog.get(), opsMessages.get());
+    }
+
+    private static String tag(long... versions) {
+        StringBuilder result = new StringBuilder("\"").append(INSTANCE)
+                .append('-').append(Instant.now().getEpochSecond() / MAX_AGE.getSeconds());
+        for (long version : versions) {
+            result.append('-').append(version);
+        }
+        return result.append('"').toString();
+    }
+
+    public static void catalogChanged() {
+        catalog.incrementAndGet();
+    }
+
+    public static void opsMessagesChanged() {
+        opsMessages.incrementAndGet();
+    }
+
+    //Endrer alle dashboards, f.eks. åpningstider
+    public static void dashboardsChanged() {
+        allDashboards.incrementAndGet();
+    }
+
+    //Statusen til tjenestene er endret. Dashboardene de vises på slås opp i StatusTree.
+    public static void servicesChanged(Collection<UUID> serviceIds) {
+        if (serviceIds.isEmpty()) {
+            return;
+        }
+        statuses.incrementAndGet();
+        StatusTree.getDashboardIds(serviceIds).ifPresentOrElse(
+                dashboardIds -> dashboardIds.forEach(id -> dashboards.computeIfAbsent(id, i -> new AtomicLong()).incrementAndGet()),
+                allDashboards::incrementAndGet);
+    }
+}
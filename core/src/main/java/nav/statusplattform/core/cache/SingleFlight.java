@@ -0,0 +1,54 @@
+package nav.statusplattform.core.cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+//Samtidige like oppslag deler én beregning: den første tråden beregner, de andre venter og får samme resultat
+//(eller samme exception). Når beregningen er ferdig fjernes den, så neste oppslag beregnes på nytt.
+//Nøkkelen bør inneholde versjonen fra ResourceVersions, så et oppslag etter en endring ikke får et eldre resultat.
+public class SingleFlight<K, V> {
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+
+    public V execute(K key, Supplier<V> computation) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+        try {
+            V result = computation.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    //Antall oppslag som fikk resultatet fra en annen tråds beregning
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+}
@@ -1,5 +1,7 @@
 package nav.statusplattform.core.entities;
 
+import nav.statusplattform.core.records.ResponseTimeHistogram;
+
 import java.time.LocalDate;
 import java.util.Objects;
 import java.util.UUID;
@@ -12,6 +14,8 @@ public class DailyStatusAggregationForServiceEntity {
     private int number_of_status_ok;
     private int number_of_status_issue;
     private int number_of_status_down;
+    //Null for døgn uten responstider
+    private ResponseTimeHistogram responseTimeHistogram;
 
     public DailyStatusAggregationForServiceEntity() {
     }
@@ -74,6 +78,15 @@ public class DailyStatusAggregationForServiceEntity {
         return this;
     }
 
+    public ResponseTimeHistogram getResponseTimeHistogram() {
+        return responseTimeHistogram;
+    }
+
+    public DailyStatusAggregationForServiceEntity setResponseTimeHistogram(ResponseTimeHistogram responseTimeHistogram) {
+        this.responseTimeHistogram = responseTimeHistogram;
+        return this;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
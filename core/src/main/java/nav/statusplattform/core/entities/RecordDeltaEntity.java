@@ -14,6 +14,7 @@ public class RecordDeltaEntity {
     private Integer counter;
     private Boolean active;
     private ZonedDateTime updated_at;
+    private ZonedDateTime lastAppliedAt;
 
 
 
@@ -29,6 +30,15 @@ public class RecordDeltaEntity {
         return this;
     }
 
+    public ZonedDateTime getLastAppliedAt() {
+        return lastAppliedAt;
+    }
+
+    public RecordDeltaEntity setLastAppliedAt(ZonedDateTime lastAppliedAt) {
+        this.lastAppliedAt = lastAppliedAt;
+        return this;
+    }
+
     public Boolean getActive() {
         return active;
     }
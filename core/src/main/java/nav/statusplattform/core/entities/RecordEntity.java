@@ -15,6 +15,9 @@ public class RecordEntity {
     private ServiceStatus status;
     private String description;
     private String logglink;
+    //Id i record_text, satt når recorden er lagret eller lest fra databasen
+    private Long descriptionId;
+    private Long logglinkId;
     private ZonedDateTime created_at;
     private Integer responsetime;
     private Integer counter;
@@ -56,6 +59,24 @@ public class RecordEntity {
         return this;
     }
 
+    public Long getDescriptionId() {
+        return descriptionId;
+    }
+
+    public RecordEntity setDescriptionId(Long descriptionId) {
+        this.descriptionId = descriptionId;
+        return this;
+    }
+
+    public Long getLogglinkId() {
+        return logglinkId;
+    }
+
+    public RecordEntity setLogglinkId(Long logglinkId) {
+        this.logglinkId = logglinkId;
+        return this;
+    }
+
     public RecordEntity setId(UUID id) {
         this.id = id;
         return this;
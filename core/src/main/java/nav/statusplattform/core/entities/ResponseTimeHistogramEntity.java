@@ -0,0 +1,42 @@
+package nav.statusplattform.core.entities;
+
+import nav.statusplattform.core.records.ResponseTimeHistogram;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+public class ResponseTimeHistogramEntity {
+    private UUID service_id;
+    private ZonedDateTime hour;
+    private ResponseTimeHistogram histogram;
+
+    public ResponseTimeHistogramEntity() {
+    }
+
+    public UUID getService_id() {
+        return service_id;
+    }
+
+    public ResponseTimeHistogramEntity setService_id(UUID service_id) {
+        this.service_id = service_id;
+        return this;
+    }
+
+    public ZonedDateTime getHour() {
+        return hour;
+    }
+
+    public ResponseTimeHistogramEntity setHour(ZonedDateTime hour) {
+        this.hour = hour;
+        return this;
+    }
+
+    public ResponseTimeHistogram getHistogram() {
+        return histogram;
+    }
+
+    public ResponseTimeHistogramEntity setHistogram(ResponseTimeHistogram histogram) {
+        this.histogram = histogram;
+        return this;
+    }
+}
@@ -1,5 +1,7 @@
 package nav.statusplattform.core.openingHours;
 
+import nav.statusplattform.core.cache.DashboardResponseCache;
+import nav.statusplattform.core.cache.ResourceVersions;
 import nav.statusplattform.core.entities.OpeningHoursGroup;
 import nav.statusplattform.core.repositories.OpeningHoursRepository;
 
@@ -19,6 +21,9 @@ public class OpeningHoursDailyMap {
 
         //k = id, v = valid rule for date
         idGroupMap.forEach((k, v) -> map.put(k, OpeningHoursParser.getDisplayData(LocalDate.now(),v)));
+        //Dashboardene viser dagens åpningstider
+        DashboardResponseCache.invalidateAll();
+        ResourceVersions.dashboardsChanged();
     }
 
     public static Map<UUID,OpeningHoursDisplayData> getMap(){
@@ -0,0 +1,166 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.OpeningHoursGroup;
+import nav.statusplattform.core.entities.RecordDeltaEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.openingHours.OpeningHoursParser;
+import nav.statusplattform.core.repositories.OpeningHoursRepository;
+import nav.statusplattform.core.repositories.RecordRepository;
+import org.fluentjdbc.DbContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Oppetid per tjeneste og døgn, beregnet ved å gå gjennom deltaene i service_status_delta (ikke service_status).
+//En delta gjelder fra created_at til neste delta, eller til nå om den er aktiv.
+//Ferdige døgn endres ikke, og caches per tjeneste, døgn og dagens åpningstid. Nøkkelen inneholder åpningstiden,
+//så en endret åpningstid gir et nytt oppslag i stedet for et gammelt svar.
+public class AvailabilityCalculator {
+    private static final int MAX_CACHED_DAYS = 500_000;
+    //Deltaer lagret rett før midnatt kan bli committet litt etter
+    private static final Duration COMPLETION_MARGIN = Duration.ofMinutes(5);
+    private static final String CLOSED = "00:00-00:00";
+    private static final String ALWAYS_OPEN = "00:00-23:59";
+
+    //Tjeneste|døgn|åpningstid - oppetid for døgnet
+    private static final Map<String, ServiceAvailability> completedDays = new ConcurrentHashMap<>();
+
+    private final RecordRepository recordRepository;
+    private final OpeningHoursRepository openingHoursRepository;
+    private final ZoneId zone;
+
+    public AvailabilityCalculator(DbContext dbContext) {
+        this(dbContext, ZoneId.systemDefault());
+    }
+
+    public AvailabilityCalculator(DbContext dbContext, ZoneId zone) {
+        this.recordRepository = new RecordRepository(dbContext);
+        this.openingHoursRepository = new OpeningHoursRepository(dbContext);
+        this.zone = zone;
+    }
+
+    //Døgnene from til og med to. Dagens døgn telles frem til nå, senere døgn telles ikke.
+    //Med openingHoursOnly telles bare tid innenfor åpningstiden til tjenester som har åpningstider.
+    public Map<UUID, ServiceAvailability> calculate(Collection<UUID> serviceIds, LocalDate from, LocalDate to, boolean openingHoursOnly) {
+        Instant now = Instant.now();
+        LocalDate today = LocalDate.now(zone);
+        LocalDate lastDay = to.isAfter(today) ? today : to;
+        Map<UUID, OpeningHoursGroup> openingHours = openingHoursOnly
+                ? openingHoursRepository.getAllOpeningtimeForAllServicesWithOpeningTime()
+                : Map.of();
+
+        Map<UUID, ServiceAvailability> result = new HashMap<>();
+        Map<UUID, List<LocalDate>> missingDays = new HashMap<>();
+        for (UUID serviceId : serviceIds) {
+            ServiceAvailability availability = ServiceAvailability.EMPTY;
+            for (LocalDate day = from; !day.isAfter(lastDay); day = day.plusDays(1)) {
+                ServiceAvailability cached = completedDays.get(getKey(serviceId, day, openingHours.get(serviceId)));
+                if (cached != null) {
+                    availability = availability.plus(cached);
+                } else {
+                    missingDays.computeIfAbsent(serviceId, id -> new ArrayList<>()).add(day);
+                }
+            }
+            result.put(serviceId, availability);
+        }
+
+        if (!missingDays.isEmpty()) {
+            LocalDate firstMissing = missingDays.values().stream().map(days -> days.get(0)).min(LocalDate::compareTo).orElseThrow();
+            LocalDate lastMissing = missingDays.values().stream().map(days -> days.get(days.size() - 1)).max(LocalDate::compareTo).orElseThrow();
+            Map<UUID, List<RecordDeltaEntity>> deltas = recordRepository.getRecordDeltasInPeriod(missingDays.keySet(),
+                    firstMissing.atStartOfDay(zone), lastMissing.plusDays(1).atStartOfDay(zone));
+            if (completedDays.size() > MAX_CACHED_DAYS) {
+                completedDays.clear();
+            }
+            missingDays.forEach((serviceId, days) -> days.forEach(day -> {
+                OpeningHoursGroup group = openingHours.get(serviceId);
+                ServiceAvailability availability = calculateDay(deltas.getOrDefault(serviceId, List.of()), day, group, now);
+                if (day.plusDays(1).atStartOfDay(zone).toInstant().plus(COMPLETION_MARGIN).isBefore(now)) {
+                    completedDays.put(getKey(serviceId, day, group), availability);
+                }
+                result.merge(serviceId, availability, ServiceAvailability::plus);
+            }));
+        }
+        //Et utfall som pågikk da perioden startet er også et utfall
+        result.replaceAll((serviceId, availability) -> availability.getIncidents() == 0 && !availability.getDown().isZero()
+                ? new ServiceAvailability(availability.getOk(), availability.getIssue(), availability.getDown(), 1)
+                : availability);
+        return result;
+    }
+
+    private ServiceAvailability calculateDay(List<RecordDeltaEntity> deltas, LocalDate day, OpeningHoursGroup group, Instant now) {
+        ZonedDateTime dayStart = day.atStartOfDay(zone);
+        ZonedDateTime start = dayStart;
+        ZonedDateTime end = day.plusDays(1).atStartOfDay(zone);
+        String openingHours = getOpeningHours(day, group);
+        if (openingHours != null && !openingHours.equals(ALWAYS_OPEN)) {
+            if (openingHours.equals(CLOSED)) {
+                return ServiceAvailability.EMPTY;
+            }
+            String[] times = openingHours.split("-");
+            start = day.atTime(LocalTime.parse(times[0])).atZone(zone);
+            end = day.atTime(LocalTime.parse(times[1])).atZone(zone);
+        }
+        Instant periodEnd = end.toInstant().isAfter(now) ? now : end.toInstant();
+        return calculatePeriod(deltas, start.toInstant(), periodEnd, start.equals(dayStart));
+    }
+
+    //Tid per status mellom start og end. Et utfall telles når en DOWN-delta starter i perioden, og når perioden
+    //starter med DOWN etter stengt tid. Starter perioden ved midnatt, fortsetter den forrige døgns utfall.
+    static ServiceAvailability calculatePeriod(List<RecordDeltaEntity> deltas, Instant start, Instant end, boolean continuesPreviousDay) {
+        Duration ok = Duration.ZERO;
+        Duration issue = Duration.ZERO;
+        Duration down = Duration.ZERO;
+        int incidents = 0;
+        for (int i = 0; i < deltas.size(); i++) {
+            RecordDeltaEntity delta = deltas.get(i);
+            Instant deltaStart = delta.getCreated_at().toInstant();
+            Instant deltaEnd = i + 1 < deltas.size() ? deltas.get(i + 1).getCreated_at().toInstant()
+                    : delta.getActive() ? Instant.now() : delta.getUpdated_at().toInstant();
+            Instant from = deltaStart.isAfter(start) ? deltaStart : start;
+            Instant to = deltaEnd.isBefore(end) ? deltaEnd : end;
+            if (!from.isBefore(to)) {
+                continue;
+            }
+            Duration duration = Duration.between(from, to);
+            switch (delta.getStatus()) {
+                case OK -> ok = ok.plus(duration);
+                case ISSUE -> issue = issue.plus(duration);
+                case DOWN -> {
+                    down = down.plus(duration);
+                    boolean previousWasDown = i > 0 && deltas.get(i - 1).getStatus() == ServiceStatus.DOWN;
+                    if (deltaStart.isAfter(start) ? !previousWasDown : !continuesPreviousDay) {
+                        incidents++;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return new ServiceAvailability(ok, issue, down, incidents);
+    }
+
+    //Null betyr hele døgnet
+    private static String getOpeningHours(LocalDate day, OpeningHoursGroup group) {
+        return group == null ? null : OpeningHoursParser.getOpeninghours(day, group);
+    }
+
+    private static String getKey(UUID serviceId, LocalDate day, OpeningHoursGroup group) {
+        return serviceId + "|" + day + "|" + getOpeningHours(day, group);
+    }
+
+    public static void clear() {
+        completedDays.clear();
+    }
+}
@@ -0,0 +1,141 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+//Nedsampler records (eldste først) til maks maxPoints punkter mens de leses. Perioden deles i like lange bøtter,
+//og bare to bøtter holdes i minnet om gangen.
+//Responstid velges med largest-triangle-three-buckets: i hver bøtte velges recorden som danner størst trekant med
+//forrige valgte punkt og gjennomsnittet i neste bøtte. Første og siste bøtte gir første og siste record.
+//Status er verste status i bøtta, som på dashboardene: DOWN, ISSUE, OK, og UNKNOWN bare når ingen annen status finnes.
+public class ChartDownsampler implements Consumer<RecordEntity> {
+    private final ZonedDateTime from;
+    private final long bucketMillis;
+    private final int maxPoints;
+    private final List<ChartPoint> result = new ArrayList<>();
+
+    //Ferdig bøtte som venter på gjennomsnittet i neste bøtte
+    private Bucket pending;
+    private Bucket current;
+    private RecordEntity lastSelected;
+
+    private class Bucket {
+        private final long index;
+        private final List<RecordEntity> withResponseTime = new ArrayList<>();
+        private RecordEntity first;
+        private int count;
+        private boolean down;
+        private boolean issue;
+        private boolean ok;
+        private double timeSum;
+        private double responseTimeSum;
+
+        private Bucket(long index) {
+            this.index = index;
+        }
+
+        private void add(RecordEntity record) {
+            if (first == null) {
+                first = record;
+            }
+            count++;
+            down |= record.getStatus() == ServiceStatus.DOWN;
+            issue |= record.getStatus() == ServiceStatus.ISSUE;
+            ok |= record.getStatus() == ServiceStatus.OK;
+            timeSum += x(record);
+            if (record.getResponsetime() != null) {
+                withResponseTime.add(record);
+                responseTimeSum += record.getResponsetime();
+            }
+        }
+
+        private ServiceStatus getWorstStatus() {
+            if (down) return ServiceStatus.DOWN;
+            if (issue) return ServiceStatus.ISSUE;
+            if (ok) return ServiceStatus.OK;
+            return ServiceStatus.UNKNOWN;
+        }
+    }
+
+    public ChartDownsampler(ZonedDateTime from, ZonedDateTime to, int maxPoints) {
+        this.from = from;
+        this.maxPoints = maxPoints;
+        long periodMillis = Duration.between(from, to).toMillis();
+        this.bucketMillis = Math.max(1, (periodMillis + maxPoints - 1) / maxPoints);
+    }
+
+    @Override
+    public void accept(RecordEntity record) {
+        long index = Math.min(Math.max(Duration.between(from, record.getCreated_at()).toMillis() / bucketMillis, 0), maxPoints - 1);
+        if (current != null && current.index != index) {
+            closeCurrent();
+        }
+        if (current == null) {
+            current = new Bucket(index);
+        }
+        current.add(record);
+    }
+
+    public List<ChartPoint> finish() {
+        if (current != null) {
+            closeCurrent();
+        }
+        if (pending != null) {
+            List<RecordEntity> candidates = pending.withResponseTime;
+            emit(pending, candidates.isEmpty() ? null : candidates.get(candidates.size() - 1));
+            pending = null;
+        }
+        return result;
+    }
+
+    private void closeCurrent() {
+        if (pending != null) {
+            emit(pending, select(pending, current));
+        }
+        pending = current;
+        current = null;
+    }
+
+    private RecordEntity select(Bucket bucket, Bucket next) {
+        if (bucket.withResponseTime.isEmpty()) {
+            return null;
+        }
+        if (lastSelected == null) {
+            return bucket.withResponseTime.get(0);
+        }
+        double ax = x(lastSelected);
+        double ay = lastSelected.getResponsetime();
+        double cx = next.timeSum / next.count;
+        //Uten responstid i neste bøtte velges punktet lengst fra forrige valgte
+        double cy = next.withResponseTime.isEmpty() ? ay : next.responseTimeSum / next.withResponseTime.size();
+        RecordEntity selected = null;
+        double largestArea = -1;
+        for (RecordEntity candidate : bucket.withResponseTime) {
+            double area = Math.abs((ax - cx) * (candidate.getResponsetime() - ay) - (ax - x(candidate)) * (cy - ay));
+            if (area > largestArea) {
+                largestArea = area;
+                selected = candidate;
+            }
+        }
+        return selected;
+    }
+
+    private void emit(Bucket bucket, RecordEntity selected) {
+        if (selected == null) {
+            result.add(new ChartPoint(bucket.first.getCreated_at(), null, bucket.getWorstStatus(), bucket.count));
+            return;
+        }
+        result.add(new ChartPoint(selected.getCreated_at(), selected.getResponsetime(), bucket.getWorstStatus(), bucket.count));
+        lastSelected = selected;
+    }
+
+    private double x(RecordEntity record) {
+        return Duration.between(from, record.getCreated_at()).toMillis();
+    }
+}
@@ -0,0 +1,37 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.enums.ServiceStatus;
+
+import java.time.ZonedDateTime;
+
+//Ett punkt i en nedsamplet serie: valgt record for responstid, og verste status blant recordene i bøtta
+public class ChartPoint {
+    private final ZonedDateTime timestamp;
+    private final Integer responseTime;
+    private final ServiceStatus status;
+    private final int count;
+
+    public ChartPoint(ZonedDateTime timestamp, Integer responseTime, ServiceStatus status, int count) {
+        this.timestamp = timestamp;
+        this.responseTime = responseTime;
+        this.status = status;
+        this.count = count;
+    }
+
+    public ZonedDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public Integer getResponseTime() {
+        return responseTime;
+    }
+
+    public ServiceStatus getStatus() {
+        return status;
+    }
+
+    //Antall records i bøtta
+    public int getCount() {
+        return count;
+    }
+}
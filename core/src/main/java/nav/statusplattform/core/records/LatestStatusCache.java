@@ -0,0 +1,123 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.RecordDeltaEntity;
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.repositories.RecordRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+//Siste status per tjeneste i minnet, slik at dashboard og tjenestelister ikke spør databasen per tjeneste.
+//Oppdateres når records lagres, og lastes fra databasen ved første oppslag.
+//Endringer i status gis videre til StatusTree.
+//Cachen er per instans: en status som ikke er oppdatert her (f.eks. lagret på en annen instans) lastes på nytt etter MAX_AGE.
+public class LatestStatusCache {
+    private static final Duration MAX_AGE = Duration.ofSeconds(60);
+
+    //Service id - siste record, eller tom dersom tjenesten ikke har status
+    private static final Map<UUID, CachedStatus> map = new ConcurrentHashMap<>();
+
+    private static class CachedStatus {
+        private final Optional<RecordEntity> record;
+        //Tidspunkt fra poller for recorden. Null når statusen er lastet fra databasen.
+        private final ZonedDateTime appliedAt;
+        private final Instant cachedAt;
+
+        private CachedStatus(Optional<RecordEntity> record, ZonedDateTime appliedAt) {
+            this.record = record;
+            this.appliedAt = appliedAt;
+            this.cachedAt = Instant.now();
+        }
+
+        private boolean isExpired() {
+            return cachedAt.plus(MAX_AGE).isBefore(Instant.now());
+        }
+
+        private ServiceStatus getStatus() {
+            return record.map(RecordEntity::getStatus).orElse(null);
+        }
+    }
+
+    public static Optional<RecordEntity> get(UUID serviceId, RecordRepository recordRepository) {
+        return getAll(List.of(serviceId), recordRepository).get(serviceId);
+    }
+
+    //Tjenester som mangler i cachen lastes samlet, med én spørring for records og én for aktive deltaer
+    public static Map<UUID, Optional<RecordEntity>> getAll(Collection<UUID> serviceIds, RecordRepository recordRepository) {
+        Map<UUID, Optional<RecordEntity>> result = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID serviceId : new HashSet<>(serviceIds)) {
+            CachedStatus cached = map.get(serviceId);
+            if (cached != null && !cached.isExpired()) {
+                result.put(serviceId, cached.record);
+            } else {
+                missing.add(serviceId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        Instant loadStarted = Instant.now();
+        Map<UUID, RecordEntity> latestRecords = recordRepository.getLatestRecords(missing);
+        Map<UUID, RecordDeltaEntity> activeDeltas = recordRepository.getActiveRecordDeltas(missing.stream()
+                .filter(serviceId -> !latestRecords.containsKey(serviceId))
+                .collect(Collectors.toList()));
+        for (UUID serviceId : missing) {
+            //Records slettes etter en periode, men aktiv delta har fortsatt statusen
+            CachedStatus loaded = new CachedStatus(Optional.ofNullable(latestRecords.get(serviceId))
+                    .or(() -> Optional.ofNullable(activeDeltas.get(serviceId)).map(LatestStatusCache::toRecord)), null);
+            //Er statusen oppdatert av en lagring mens vi leste fra databasen, beholdes den
+            result.put(serviceId, map.compute(serviceId, (id, current) -> {
+                if (current != null && current.cachedAt.isAfter(loadStarted)) {
+                    return current;
+                }
+                StatusTree.setServiceStatus(id, loaded.getStatus());
+                return loaded;
+            }).record);
+        }
+        return result;
+    }
+
+    //Oppdaterer med nyeste record per tjeneste. Records eldre enn den som allerede er i cachen endrer ikke status.
+    public static void update(Collection<RecordEntity> records) {
+        Map<UUID, RecordEntity> newestByService = new HashMap<>();
+        records.forEach(record -> newestByService.merge(record.getServiceId(), record,
+                (a, b) -> b.getCreated_at().isBefore(a.getCreated_at()) ? a : b));
+        newestByService.forEach((serviceId, record) -> map.compute(serviceId, (id, current) -> {
+            if (current != null && current.appliedAt != null && record.getCreated_at().isBefore(current.appliedAt)) {
+                return current;
+            }
+            StatusTree.setServiceStatus(id, record.getStatus());
+            return new CachedStatus(Optional.of(record), record.getCreated_at());
+        }));
+    }
+
+    public static void remove(UUID serviceId) {
+        map.remove(serviceId);
+    }
+
+    public static void clear() {
+        map.clear();
+    }
+
+    private static RecordEntity toRecord(RecordDeltaEntity delta) {
+        return new RecordEntity()
+                .setId(delta.getId())
+                .setServiceId(delta.getServiceId())
+                .setStatus(delta.getStatus())
+                .setCreated_at(delta.getUpdated_at().truncatedTo(ChronoUnit.SECONDS));
+    }
+}
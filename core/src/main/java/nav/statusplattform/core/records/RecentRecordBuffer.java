@@ -0,0 +1,218 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.enums.RecordSource;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.repositories.RecordRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+//De siste CAPACITY records per tjeneste i minnet, slik at historikken for en tjeneste ikke leses fra databasen ved hvert kall.
+//Lagres i parallelle primitive arrays (tidspunkt i mikrosekunder, status, responstid, id, tekst-id i record_text), ikke som
+//RecordEntity, så minnebruken per tjeneste er fast. Tekstene slås opp når historikken leses.
+//Fylles når records lagres, og lastes fra databasen ved oppstart og første oppslag.
+//Bufferen er per instans: records lagret på en annen instans blir synlige når bufferen lastes på nytt, etter MAX_AGE
+//uten nye records på denne instansen.
+public class RecentRecordBuffer {
+    public static final int CAPACITY = 100;
+    private static final Duration MAX_AGE = Duration.ofSeconds(60);
+    private static final int NO_RESPONSE_TIME = Integer.MIN_VALUE;
+    //Id-er i record_text starter på 1
+    private static final long NO_TEXT = 0;
+    private static final ServiceStatus[] STATUSES = ServiceStatus.values();
+    private static final RecordSource[] SOURCES = RecordSource.values();
+
+    //Service id - siste records
+    private static final Map<UUID, ServiceRecords> map = new ConcurrentHashMap<>();
+
+    //Ringbuffer sortert på (tidspunkt, id) som i databasen. start peker på eldste record.
+    private static class ServiceRecords {
+        private final long[] createdAtMicros = new long[CAPACITY];
+        private final long[] idMostSignificantBits = new long[CAPACITY];
+        private final long[] idLeastSignificantBits = new long[CAPACITY];
+        private final int[] responseTimes = new int[CAPACITY];
+        private final byte[] statuses = new byte[CAPACITY];
+        private final byte[] sources = new byte[CAPACITY];
+        private final long[] descriptionIds = new long[CAPACITY];
+        private final long[] logglinkIds = new long[CAPACITY];
+        private int start;
+        private int size;
+        //Settes når bufferen lastes og når records legges til
+        private volatile Instant updatedAt = Instant.now();
+
+        private boolean isExpired() {
+            return updatedAt.plus(MAX_AGE).isBefore(Instant.now());
+        }
+
+        private int slot(int index) {
+            return (start + index) % CAPACITY;
+        }
+
+        private synchronized void add(RecordEntity record) {
+            updatedAt = Instant.now();
+            long micros = ChronoUnit.MICROS.between(Instant.EPOCH, record.getCreated_at().toInstant());
+            //Records kommer nesten alltid i rekkefølge, og legges da sist
+            int index = size;
+            while (index > 0 && isAfter(slot(index - 1), micros, record.getId())) {
+                index--;
+            }
+            if (size == CAPACITY) {
+                if (index == 0) {
+                    return;
+                }
+                start = slot(1);
+                size--;
+                index--;
+            }
+            for (int i = size; i > index; i--) {
+                copy(slot(i - 1), slot(i));
+            }
+            set(index, record, micros);
+            size++;
+        }
+
+        //UUID sammenlignes usignert, som i databasen
+        private boolean isAfter(int slot, long micros, UUID id) {
+            if (createdAtMicros[slot] != micros) {
+                return createdAtMicros[slot] > micros;
+            }
+            int most = Long.compareUnsigned(idMostSignificantBits[slot], id.getMostSignificantBits());
+            return most != 0 ? most > 0 : Long.compareUnsigned(idLeastSignificantBits[slot], id.getLeastSignificantBits()) > 0;
+        }
+
+        private void copy(int from, int to) {
+            createdAtMicros[to] = createdAtMicros[from];
+            idMostSignificantBits[to] = idMostSignificantBits[from];
+            idLeastSignificantBits[to] = idLeastSignificantBits[from];
+            responseTimes[to] = responseTimes[from];
+            statuses[to] = statuses[from];
+            sources[to] = sources[from];
+            descriptionIds[to] = descriptionIds[from];
+            logglinkIds[to] = logglinkIds[from];
+        }
+
+        private void set(int index, RecordEntity record, long micros) {
+            int slot = slot(index);
+            createdAtMicros[slot] = micros;
+            idMostSignificantBits[slot] = record.getId().getMostSignificantBits();
+            idLeastSignificantBits[slot] = record.getId().getLeastSignificantBits();
+            responseTimes[slot] = record.getResponsetime() != null ? record.getResponsetime() : NO_RESPONSE_TIME;
+            statuses[slot] = (byte) record.getStatus().ordinal();
+            sources[slot] = (byte) (record.getRecordSource() != null ? record.getRecordSource() : RecordSource.UNKNOWN).ordinal();
+            descriptionIds[slot] = record.getDescriptionId() != null ? record.getDescriptionId() : NO_TEXT;
+            logglinkIds[slot] = record.getLogglinkId() != null ? record.getLogglinkId() : NO_TEXT;
+        }
+
+        //Nyeste først
+        private synchronized List<RecordEntity> newest(UUID serviceId, int maxNumberOfRecords) {
+            List<RecordEntity> result = new ArrayList<>(Math.min(size, maxNumberOfRecords));
+            for (int index = size - 1; index >= 0 && result.size() < maxNumberOfRecords; index--) {
+                result.add(toRecord(serviceId, slot(index)));
+            }
+            return result;
+        }
+
+        private RecordEntity toRecord(UUID serviceId, int slot) {
+            return new RecordEntity()
+                    .setId(new UUID(idMostSignificantBits[slot], idLeastSignificantBits[slot]))
+                    .setServiceId(serviceId)
+                    .setStatus(STATUSES[statuses[slot]])
+                    .setRecordSource(SOURCES[sources[slot]])
+                    .setDescriptionId(descriptionIds[slot] != NO_TEXT ? descriptionIds[slot] : null)
+                    .setLogglinkId(logglinkIds[slot] != NO_TEXT ? logglinkIds[slot] : null)
+                    .setResponsetime(responseTimes[slot] != NO_RESPONSE_TIME ? responseTimes[slot] : null)
+                    .setCreated_at(ZonedDateTime.ofInstant(Instant.EPOCH.plus(createdAtMicros[slot], ChronoUnit.MICROS), ZoneId.systemDefault()));
+        }
+    }
+
+    //Nyeste records for tjenesten. Flere enn CAPACITY hentes fra databasen.
+    public static List<RecordEntity> getRecordHistory(UUID serviceId, int maxNumberOfRecords, RecordRepository recordRepository) {
+        if (maxNumberOfRecords > CAPACITY) {
+            return recordRepository.getRecordHistory(serviceId, maxNumberOfRecords);
+        }
+        ServiceRecords cached = map.get(serviceId);
+        if (cached == null || cached.isExpired()) {
+            List<RecordEntity> history = recordRepository.getRecordHistory(serviceId, CAPACITY);
+            cached = load(serviceId, history);
+            if (cached == null) {
+                return history.subList(0, Math.min(maxNumberOfRecords, history.size()));
+            }
+        }
+        List<RecordEntity> result = cached.newest(serviceId, maxNumberOfRecords);
+        Set<Long> textIds = new HashSet<>();
+        result.forEach(record -> {
+            Optional.ofNullable(record.getDescriptionId()).ifPresent(textIds::add);
+            Optional.ofNullable(record.getLogglinkId()).ifPresent(textIds::add);
+        });
+        if (!textIds.isEmpty()) {
+            Map<Long, String> texts = recordRepository.getRecordTexts(textIds);
+            result.forEach(record -> record
+                    .setDescription(record.getDescriptionId() != null ? texts.get(record.getDescriptionId()) : null)
+                    .setLogglink(record.getLogglinkId() != null ? texts.get(record.getLogglinkId()) : null));
+        }
+        return result;
+    }
+
+    //Tekst som ikke har id i record_text (records lagret før record_text fantes) kan ikke lagres i bufferen
+    private static boolean hasTextWithoutId(RecordEntity record) {
+        return (record.getDescription() != null && record.getDescriptionId() == null)
+                || (record.getLogglink() != null && record.getLogglinkId() == null);
+    }
+
+    //Laster bufferne for mange tjenester samlet, f.eks. ved oppstart
+    public static void loadAll(Collection<UUID> serviceIds, RecordRepository recordRepository) {
+        Map<UUID, List<RecordEntity>> histories = recordRepository.getRecordHistories(serviceIds, CAPACITY);
+        serviceIds.forEach(serviceId -> load(serviceId, histories.getOrDefault(serviceId, List.of())));
+    }
+
+    //Returnerer null, og fjerner bufferen, dersom historikken ikke kan lagres i bufferen
+    private static ServiceRecords load(UUID serviceId, List<RecordEntity> history) {
+        if (history.stream().anyMatch(RecentRecordBuffer::hasTextWithoutId)) {
+            map.remove(serviceId);
+            return null;
+        }
+        ServiceRecords loaded = new ServiceRecords();
+        history.stream()
+                .sorted(Comparator.comparing(RecordEntity::getCreated_at))
+                .forEach(loaded::add);
+        map.put(serviceId, loaded);
+        return loaded;
+    }
+
+    //Legger til lagrede records for tjenester som allerede har buffer. Andre lastes ved første oppslag.
+    public static void add(Collection<RecordEntity> records) {
+        Map<UUID, List<RecordEntity>> recordsByService = new HashMap<>();
+        records.forEach(record -> recordsByService.computeIfAbsent(record.getServiceId(), id -> new ArrayList<>()).add(record));
+        recordsByService.forEach((serviceId, serviceRecords) -> {
+            ServiceRecords cached = map.get(serviceId);
+            if (cached != null && serviceRecords.stream().anyMatch(RecentRecordBuffer::hasTextWithoutId)) {
+                map.remove(serviceId);
+            } else if (cached != null) {
+                serviceRecords.forEach(cached::add);
+            }
+        });
+    }
+
+    public static void remove(UUID serviceId) {
+        map.remove(serviceId);
+    }
+
+    public static void clear() {
+        map.clear();
+    }
+}
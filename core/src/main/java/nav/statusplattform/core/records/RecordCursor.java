@@ -0,0 +1,54 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.RecordEntity;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+//Posisjon i historikken til en tjeneste: siste record på forrige side, (created_at, id).
+//Sendes til klienten som en ugjennomsiktig streng, slik at formatet kan endres uten å endre API-et.
+public class RecordCursor {
+    private static final String SEPARATOR = "|";
+
+    private final Instant createdAt;
+    private final UUID id;
+
+    public RecordCursor(Instant createdAt, UUID id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    public static RecordCursor after(RecordEntity record) {
+        return new RecordCursor(record.getCreated_at().toInstant(), record.getId());
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    //Kaster IllegalArgumentException dersom cursoren ikke er laget av encode
+    public static RecordCursor decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            return new RecordCursor(Instant.parse(decoded.substring(0, separator)), UUID.fromString(decoded.substring(separator + 1)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
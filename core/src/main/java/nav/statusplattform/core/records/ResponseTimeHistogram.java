@@ -0,0 +1,111 @@
+package nav.statusplattform.core.records;
+
+import java.util.Arrays;
+import java.util.OptionalInt;
+
+//Histogram over responstid (ms) med fast inndeling, så histogrammer for ulike timer og instanser kan slås sammen
+//ved å legge sammen tellerne. Under 16 ms har hver verdi sin bøtte, deretter deles hver toerpotens i 8 bøtter,
+//så en persentil er maks 12,5 % for høy.
+public class ResponseTimeHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    public static final int BUCKET_COUNT = SUB_BUCKETS + (Integer.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long count;
+    private int max;
+
+    public synchronized void record(int responseTime) {
+        int value = Math.max(responseTime, 0);
+        counts[bucketOf(value)]++;
+        count++;
+        max = Math.max(max, value);
+    }
+
+    public synchronized void merge(ResponseTimeHistogram other) {
+        long[] otherCounts;
+        long otherCount;
+        int otherMax;
+        synchronized (other) {
+            otherCounts = other.counts.clone();
+            otherCount = other.count;
+            otherMax = other.max;
+        }
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += otherCounts[i];
+        }
+        count += otherCount;
+        max = Math.max(max, otherMax);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized int getMax() {
+        return max;
+    }
+
+    //Øvre grense for bøtta der persentilen havner, men aldri over største verdi
+    public synchronized OptionalInt getPercentile(double percentile) {
+        if (count == 0) {
+            return OptionalInt.empty();
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return OptionalInt.of((int) Math.min(upperBoundOf(i) - 1, max));
+            }
+        }
+        return OptionalInt.of(max);
+    }
+
+    static int bucketOf(int value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return value;
+        }
+        int exponent = Integer.SIZE - 1 - Integer.numberOfLeadingZeros(value);
+        int subBucket = (value >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    //Første verdi som ikke er med i bøtta
+    static long upperBoundOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    //Bare bøtter med verdier, på formen bøtte:antall,bøtte:antall
+    public synchronized String encodeBuckets() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts[i] > 0) {
+                if (result.length() > 0) {
+                    result.append(',');
+                }
+                result.append(i).append(':').append(counts[i]);
+            }
+        }
+        return result.toString();
+    }
+
+    public static ResponseTimeHistogram decode(String buckets, int max) {
+        ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+        if (!buckets.isEmpty()) {
+            Arrays.stream(buckets.split(",")).forEach(bucket -> {
+                int separator = bucket.indexOf(':');
+                long bucketCount = Long.parseLong(bucket.substring(separator + 1));
+                histogram.counts[Integer.parseInt(bucket.substring(0, separator))] += bucketCount;
+                histogram.count += bucketCount;
+            });
+        }
+        histogram.max = max;
+        return histogram;
+    }
+}
@@ -0,0 +1,79 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.entities.ResponseTimeHistogramEntity;
+import nav.statusplattform.core.repositories.ResponseTimeHistogramRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+//Histogram over responstid per tjeneste og time for records mottatt av denne instansen, som ikke er skrevet ennå.
+//Avsluttede timer skrives til response_time_histogram (flush). Records for en time som allerede er skrevet,
+//gir et nytt histogram som skrives ved neste flush.
+public class ResponseTimeHistogramBuffer {
+    private static final Duration HOUR = Duration.ofHours(1);
+
+    //Service id - starten på timen - histogram
+    private static final Map<UUID, Map<Instant, ResponseTimeHistogram>> map = new HashMap<>();
+
+    public static synchronized void add(List<RecordEntity> records) {
+        for (RecordEntity record : records) {
+            if (record.getResponsetime() == null || record.getCreated_at() == null) {
+                continue;
+            }
+            map.computeIfAbsent(record.getServiceId(), id -> new HashMap<>())
+                    .computeIfAbsent(record.getCreated_at().toInstant().truncatedTo(ChronoUnit.HOURS), hour -> new ResponseTimeHistogram())
+                    .record(record.getResponsetime());
+        }
+    }
+
+    //Timene som starter fra og med from og før to, slått sammen
+    public static synchronized ResponseTimeHistogram getPending(UUID serviceId, Instant from, Instant to) {
+        ResponseTimeHistogram result = new ResponseTimeHistogram();
+        map.getOrDefault(serviceId, Map.of()).forEach((hour, histogram) -> {
+            if (!hour.isBefore(from) && hour.isBefore(to)) {
+                result.merge(histogram);
+            }
+        });
+        return result;
+    }
+
+    //Skriver timene som er avsluttet. Feiler skrivingen, legges histogrammene tilbake til neste forsøk.
+    public static void flush(ResponseTimeHistogramRepository repository, Instant now) {
+        List<ResponseTimeHistogramEntity> closedHours = new ArrayList<>();
+        synchronized (ResponseTimeHistogramBuffer.class) {
+            map.forEach((serviceId, hours) -> hours.entrySet().removeIf(hour -> {
+                if (hour.getKey().plus(HOUR).isAfter(now)) {
+                    return false;
+                }
+                closedHours.add(new ResponseTimeHistogramEntity()
+                        .setService_id(serviceId)
+                        .setHour(hour.getKey().atZone(ZoneOffset.UTC))
+                        .setHistogram(hour.getValue()));
+                return true;
+            }));
+            map.values().removeIf(Map::isEmpty);
+        }
+        try {
+            repository.saveAll(closedHours);
+        } catch (RuntimeException e) {
+            synchronized (ResponseTimeHistogramBuffer.class) {
+                closedHours.forEach(hour -> map.computeIfAbsent(hour.getService_id(), id -> new HashMap<>())
+                        .computeIfAbsent(hour.getHour().toInstant(), start -> new ResponseTimeHistogram())
+                        .merge(hour.getHistogram()));
+            }
+            throw e;
+        }
+    }
+
+    public static synchronized void clear() {
+        map.clear();
+    }
+}
@@ -0,0 +1,70 @@
+package nav.statusplattform.core.records;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+//Hva RecordRetentionJob har slettet siden oppstart. Telles etter at slettingen er committet.
+public class RetentionMetrics {
+    private static final LongAdder runs = new LongAdder();
+    private static final LongAdder recordsDeleted = new LongAdder();
+    private static final LongAdder recordTextsDeleted = new LongAdder();
+    private static final LongAdder hourlyRowsDeleted = new LongAdder();
+    private static final LongAdder partitionsDropped = new LongAdder();
+    private static volatile Instant lastRun;
+
+    public static void runCompleted() {
+        runs.increment();
+        lastRun = Instant.now();
+    }
+
+    public static void recordsDeleted(long count) {
+        recordsDeleted.add(count);
+    }
+
+    public static void recordTextsDeleted(long count) {
+        recordTextsDeleted.add(count);
+    }
+
+    //Timer i hourly_status_aggregation_service og response_time_histogram
+    public static void hourlyRowsDeleted(long count) {
+        hourlyRowsDeleted.add(count);
+    }
+
+    public static void partitionsDropped(long count) {
+        partitionsDropped.add(count);
+    }
+
+    public static long getRuns() {
+        return runs.sum();
+    }
+
+    public static Optional<Instant> getLastRun() {
+        return Optional.ofNullable(lastRun);
+    }
+
+    public static long getRecordsDeleted() {
+        return recordsDeleted.sum();
+    }
+
+    public static long getRecordTextsDeleted() {
+        return recordTextsDeleted.sum();
+    }
+
+    public static long getHourlyRowsDeleted() {
+        return hourlyRowsDeleted.sum();
+    }
+
+    public static long getPartitionsDropped() {
+        return partitionsDropped.sum();
+    }
+
+    public static void clear() {
+        runs.reset();
+        recordsDeleted.reset();
+        recordTextsDeleted.reset();
+        hourlyRowsDeleted.reset();
+        partitionsDropped.reset();
+        lastRun = null;
+    }
+}
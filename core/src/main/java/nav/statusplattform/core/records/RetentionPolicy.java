@@ -0,0 +1,71 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.enums.ServiceType;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+//Hvor lenge hvert nivå beholdes per tjenestetype: records rulles opp til timer (hourly_status_aggregation_service og
+//response_time_histogram), timer rulles opp til døgn (daily_status_aggregation_service), og døgn slettes aldri.
+//Et nivå må leve lenge nok til at nivået over er rullet opp før det slettes, ellers mister opprullingen data.
+public class RetentionPolicy {
+    //Timen rulles opp når den er ferdig, og regnes ut på nytt ved neste kjøring
+    public static final Duration MIN_RAW = Duration.ofHours(3);
+    //Døgnet rulles opp når det er ferdig, og regnes ut på nytt dagen etter
+    public static final Duration MIN_HOURLY = Duration.ofDays(3);
+    public static final Duration DEFAULT_RAW = Duration.ofHours(48);
+    public static final Duration DEFAULT_HOURLY = Duration.ofDays(35);
+
+    private final Map<ServiceType, Duration> raw = new EnumMap<>(ServiceType.class);
+    private final Map<ServiceType, Duration> hourly = new EnumMap<>(ServiceType.class);
+
+    public RetentionPolicy() {
+        for (ServiceType type : ServiceType.values()) {
+            raw.put(type, DEFAULT_RAW);
+            hourly.put(type, DEFAULT_HOURLY);
+        }
+    }
+
+    public RetentionPolicy setRaw(ServiceType type, Duration retention) {
+        if (retention.compareTo(MIN_RAW) < 0) {
+            throw new IllegalArgumentException("Raw retention for " + type + " must be at least " + MIN_RAW + ", was " + retention);
+        }
+        raw.put(type, retention);
+        return this;
+    }
+
+    public RetentionPolicy setHourly(ServiceType type, Duration retention) {
+        if (retention.compareTo(MIN_HOURLY) < 0) {
+            throw new IllegalArgumentException("Hourly retention for " + type + " must be at least " + MIN_HOURLY + ", was " + retention);
+        }
+        hourly.put(type, retention);
+        return this;
+    }
+
+    public Duration getRaw(ServiceType type) {
+        return raw.get(type);
+    }
+
+    public Duration getHourly(ServiceType type) {
+        return hourly.get(type);
+    }
+
+    //Opprulling må skje innenfor korteste levetid, så ingen tjenestetype mister data
+    public Duration getShortestRaw() {
+        return raw.values().stream().min(Duration::compareTo).orElseThrow();
+    }
+
+    public Duration getLongestRaw() {
+        return raw.values().stream().max(Duration::compareTo).orElseThrow();
+    }
+
+    public Duration getShortestHourly() {
+        return hourly.values().stream().min(Duration::compareTo).orElseThrow();
+    }
+
+    @Override
+    public String toString() {
+        return "RetentionPolicy{raw=" + raw + ", hourly=" + hourly + "}";
+    }
+}
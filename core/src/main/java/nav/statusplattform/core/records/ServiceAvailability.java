@@ -0,0 +1,68 @@
+package nav.statusplattform.core.records;
+
+import java.time.Duration;
+import java.util.Optional;
+
+//Tid per status og antall utfall for en tjeneste i en periode. Tid med UNKNOWN eller uten deltaer er ikke målt,
+//og teller verken for eller mot oppetiden.
+public class ServiceAvailability {
+    public static final ServiceAvailability EMPTY = new ServiceAvailability(Duration.ZERO, Duration.ZERO, Duration.ZERO, 0);
+
+    private final Duration ok;
+    private final Duration issue;
+    private final Duration down;
+    private final int incidents;
+
+    public ServiceAvailability(Duration ok, Duration issue, Duration down, int incidents) {
+        this.ok = ok;
+        this.issue = issue;
+        this.down = down;
+        this.incidents = incidents;
+    }
+
+    public ServiceAvailability plus(ServiceAvailability other) {
+        return new ServiceAvailability(ok.plus(other.ok), issue.plus(other.issue), down.plus(other.down), incidents + other.incidents);
+    }
+
+    public Duration getOk() {
+        return ok;
+    }
+
+    public Duration getIssue() {
+        return issue;
+    }
+
+    public Duration getDown() {
+        return down;
+    }
+
+    public int getIncidents() {
+        return incidents;
+    }
+
+    //ISSUE regnes som oppe, bare DOWN trekker fra
+    public Duration getUp() {
+        return ok.plus(issue);
+    }
+
+    public Duration getMeasured() {
+        return getUp().plus(down);
+    }
+
+    public Optional<Double> getUptimePercentage() {
+        if (getMeasured().isZero()) {
+            return Optional.empty();
+        }
+        return Optional.of(100.0 * getUp().toMillis() / getMeasured().toMillis());
+    }
+
+    //Gjennomsnittlig tid nede per utfall
+    public Optional<Duration> getMttr() {
+        return incidents == 0 ? Optional.empty() : Optional.of(down.dividedBy(incidents));
+    }
+
+    //Gjennomsnittlig tid oppe mellom utfall
+    public Optional<Duration> getMtbf() {
+        return incidents == 0 ? Optional.empty() : Optional.of(getUp().dividedBy(incidents));
+    }
+}
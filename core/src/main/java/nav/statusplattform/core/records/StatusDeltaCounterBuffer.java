@@ -0,0 +1,112 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.cache.DashboardResponseCache;
+import nav.statusplattform.core.cache.ResourceVersions;
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.repositories.RecordRepository;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbTransaction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+//Teller records som har samme status som aktiv delta i minnet, i stedet for å oppdatere delta-raden ved hver polling.
+//Recordene skrives til service_status_delta periodisk (flush), og for en tjeneste før den bytter status.
+//Har en annen instans endret status i mellomtiden, blir de ventende recordene en ny delta ved flush.
+public class StatusDeltaCounterBuffer {
+    //Service id - aktiv status og records som ikke er telt i databasen ennå
+    private static final Map<UUID, PendingRecords> map = new HashMap<>();
+
+    private static class PendingRecords {
+        private final ServiceStatus status;
+        private final List<RecordEntity> records;
+
+        private PendingRecords(ServiceStatus status, List<RecordEntity> records) {
+            this.status = status;
+            this.records = records;
+        }
+    }
+
+    //Returnerer true dersom aktiv delta er kjent og har samme status som alle recordene, så de kan telles i minnet
+    public static synchronized boolean isTracked(UUID serviceId, List<RecordEntity> records) {
+        PendingRecords pending = map.get(serviceId);
+        return pending != null && records.stream().allMatch(record -> record.getStatus() == pending.status);
+    }
+
+    //Teller recordene i minnet etter at de er lagret. Er tjenesten fjernet i mellomtiden, skrives de ved neste flush.
+    public static synchronized void add(UUID serviceId, List<RecordEntity> records) {
+        PendingRecords pending = map.computeIfAbsent(serviceId,
+                id -> new PendingRecords(records.get(records.size() - 1).getStatus(), new ArrayList<>()));
+        records.forEach(record -> pending.records.add(new RecordEntity()
+                .setId(record.getId())
+                .setServiceId(record.getServiceId())
+                .setStatus(record.getStatus())
+                .setCreated_at(record.getCreated_at())));
+    }
+
+    //Husker aktiv status for en tjeneste etter at den er skrevet til databasen
+    public static synchronized void track(UUID serviceId, ServiceStatus status) {
+        PendingRecords existing = map.get(serviceId);
+        map.put(serviceId, new PendingRecords(status, existing != null ? existing.records : new ArrayList<>()));
+    }
+
+    //Fjerner tjenesten, og returnerer recordene som ikke er telt ennå
+    public static synchronized List<RecordEntity> remove(UUID serviceId) {
+        PendingRecords pending = map.remove(serviceId);
+        return pending != null ? pending.records : List.of();
+    }
+
+    //Legger tilbake records som ble tatt ut, men ikke skrevet fordi transaksjonen feilet
+    public static synchronized void restore(UUID serviceId, List<RecordEntity> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        PendingRecords pending = map.computeIfAbsent(serviceId,
+                id -> new PendingRecords(records.get(records.size() - 1).getStatus(), new ArrayList<>()));
+        pending.records.addAll(0, records);
+    }
+
+    //Skriver ventende records i egen transaksjon. Feiler skrivingen eller commit, legges recordene tilbake.
+    public static void flush(DbContext dbContext) {
+        Map<UUID, List<RecordEntity>> pendingRecords = new TreeMap<>();
+        synchronized (StatusDeltaCounterBuffer.class) {
+            map.forEach((serviceId, pending) -> {
+                if (!pending.records.isEmpty()) {
+                    pendingRecords.put(serviceId, new ArrayList<>(pending.records));
+                    pending.records.clear();
+                }
+            });
+        }
+        if (pendingRecords.isEmpty()) {
+            return;
+        }
+        pendingRecords.values().forEach(records -> records.sort(Comparator.comparing(RecordEntity::getCreated_at)));
+        StatusDeltaWriter writer = new StatusDeltaWriter(new RecordRepository(dbContext));
+        try (DbTransaction transaction = dbContext.ensureTransaction()) {
+            writer.write(new TreeMap<>(pendingRecords));
+            transaction.setComplete();
+        } catch (Exception e) {
+            pendingRecords.forEach(StatusDeltaCounterBuffer::restore);
+            throw e;
+        }
+        //Er alle recordene eldre enn aktiv delta, har en annen instans endret status, og neste record må gå via databasen
+        synchronized (StatusDeltaCounterBuffer.class) {
+            pendingRecords.keySet().stream()
+                    .filter(serviceId -> !writer.getActiveStatuses().containsKey(serviceId))
+                    .filter(serviceId -> map.containsKey(serviceId) && map.get(serviceId).records.isEmpty())
+                    .forEach(map::remove);
+        }
+        DashboardResponseCache.invalidateServices(writer.getChangedServices());
+        ResourceVersions.servicesChanged(writer.getChangedServices());
+    }
+
+    public static synchronized void clear() {
+        map.clear();
+    }
+}
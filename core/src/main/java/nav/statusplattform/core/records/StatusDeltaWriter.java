@@ -0,0 +1,161 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.RecordDeltaEntity;
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.repositories.RecordRepository;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+//Oppdaterer service_status_delta for records som allerede er lagret eller lagres i samme transaksjon.
+//Statusendringer gjøres atomisk i databasen: teller økes med counter + n i SQL,
+//og en ny aktiv delta legges bare inn dersom ingen annen transaksjon har lagt inn en samtidig.
+//Records kan komme i vilkårlig rekkefølge: aktiv delta har et vannmerke (siste record-tidspunkt som er telt),
+//og records eldre enn vannmerket lagres bare som historikk uten å endre status.
+public class StatusDeltaWriter {
+
+    private static final int MAX_TRANSITION_ATTEMPTS = 3;
+
+    private final RecordRepository recordRepository;
+    private final Set<RecordEntity> lateRecords = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<UUID> changedServices = new HashSet<>();
+    private final Map<UUID, ServiceStatus> activeStatuses = new HashMap<>();
+
+    public StatusDeltaWriter(RecordRepository recordRepository) {
+        this.recordRepository = recordRepository;
+    }
+
+    //Recordene til hver tjeneste må være sortert på tidspunkt
+    public StatusDeltaWriter write(Map<UUID, List<RecordEntity>> recordsByService) {
+        for (int attempt = 1; !recordsByService.isEmpty(); attempt++) {
+            if (attempt > MAX_TRANSITION_ATTEMPTS) {
+                throw new IllegalStateException("Could not update status on services " + recordsByService.keySet());
+            }
+            recordsByService = applyStatusChanges(recordsByService);
+        }
+        return this;
+    }
+
+    //Records eldre enn vannmerket til aktiv delta, som ikke har endret status
+    public Set<RecordEntity> getLateRecords() {
+        return lateRecords;
+    }
+
+    //Tjenester som har fått ny aktiv delta
+    public Set<UUID> getChangedServices() {
+        return changedServices;
+    }
+
+    //Status på aktiv delta etter skrivingen, for tjenestene der recordene er telt på aktiv delta
+    public Map<UUID, ServiceStatus> getActiveStatuses() {
+        return activeStatuses;
+    }
+
+    //Returnerer records som må prøves på nytt fordi en annen transaksjon endret aktiv delta samtidig
+    private Map<UUID, List<RecordEntity>> applyStatusChanges(Map<UUID, List<RecordEntity>> recordsByService) {
+        Map<UUID, RecordDeltaEntity> activeDeltas = recordRepository.getActiveRecordDeltas(recordsByService.keySet());
+        Map<UUID, List<RecordEntity>> inOrderRecords = new TreeMap<>();
+        recordsByService.forEach((serviceId, serviceRecords) -> {
+            ZonedDateTime watermark = Optional.ofNullable(activeDeltas.get(serviceId)).map(RecordDeltaEntity::getLastAppliedAt).orElse(null);
+            List<RecordEntity> notLate = new ArrayList<>();
+            for (RecordEntity record : serviceRecords) {
+                if (watermark == null || !record.getCreated_at().isBefore(watermark)) {
+                    notLate.add(record);
+                } else {
+                    lateRecords.add(record);
+                }
+            }
+            if (!notLate.isEmpty()) {
+                inOrderRecords.put(serviceId, notLate);
+            }
+        });
+        Map<UUID, List<RecordDeltaEntity>> statusRunsByService = new TreeMap<>();
+        inOrderRecords.forEach((serviceId, serviceRecords) -> statusRunsByService.put(serviceId, toStatusRuns(serviceRecords)));
+
+        List<RecordDeltaEntity> firstRuns = statusRunsByService.values().stream()
+                .map(statusRuns -> statusRuns.get(0))
+                .collect(Collectors.toList());
+        Set<UUID> increasedServices = recordRepository.increaseCountOnActiveStatusDiffs(firstRuns).stream()
+                .map(RecordDeltaEntity::getServiceId)
+                .collect(Collectors.toSet());
+
+        Map<UUID, List<RecordDeltaEntity>> newStatusRunsByService = new TreeMap<>();
+        Map<UUID, ZonedDateTime> newStatusTimestamps = new HashMap<>();
+        statusRunsByService.forEach((serviceId, statusRuns) -> {
+            List<RecordDeltaEntity> newStatusRuns = increasedServices.contains(serviceId) ? statusRuns.subList(1, statusRuns.size()) : statusRuns;
+            if (newStatusRuns.isEmpty()) {
+                activeStatuses.put(serviceId, statusRuns.get(0).getStatus());
+                return;
+            }
+            newStatusRunsByService.put(serviceId, newStatusRuns);
+            if (activeDeltas.containsKey(serviceId)) {
+                newStatusTimestamps.put(serviceId, newStatusRuns.get(0).getCreated_at());
+            }
+        });
+        //Setter de gamle til inaktive før nye legges til. Er aktiv delta ikke satt inaktiv,
+        //har en annen transaksjon endret den, og recordene prøves på nytt mot ny aktiv delta.
+        Set<UUID> closedServices = recordRepository.setOldStatusDiffsInactive(newStatusTimestamps);
+        Map<UUID, List<RecordEntity>> retries = new TreeMap<>();
+        List<RecordDeltaEntity> newDeltas = new ArrayList<>();
+        newStatusRunsByService.forEach((serviceId, newStatusRuns) -> {
+            if (newStatusTimestamps.containsKey(serviceId) && !closedServices.contains(serviceId)) {
+                retries.put(serviceId, lastRecords(inOrderRecords.get(serviceId), newStatusRuns));
+            } else {
+                newDeltas.addAll(newStatusRuns);
+            }
+        });
+
+        //Ingen av de nye periodene er lagret for avviste tjenester, så alle recordene i dem prøves på nytt
+        recordRepository.saveNewStatusDiffs(newDeltas).forEach(rejected -> {
+            UUID serviceId = rejected.getServiceId();
+            retries.put(serviceId, lastRecords(inOrderRecords.get(serviceId), newStatusRunsByService.get(serviceId)));
+        });
+        newStatusRunsByService.forEach((serviceId, newStatusRuns) -> {
+            if (!retries.containsKey(serviceId)) {
+                changedServices.add(serviceId);
+                activeStatuses.put(serviceId, newStatusRuns.get(newStatusRuns.size() - 1).getStatus());
+            }
+        });
+        return retries;
+    }
+
+    //Slår sammen records (sortert på tidspunkt) til sammenhengende perioder med lik status. Siste periode er aktiv.
+    private static List<RecordDeltaEntity> toStatusRuns(List<RecordEntity> serviceRecords) {
+        List<RecordDeltaEntity> statusRuns = new ArrayList<>();
+        for (RecordEntity record : serviceRecords) {
+            RecordDeltaEntity lastRun = statusRuns.isEmpty() ? null : statusRuns.get(statusRuns.size() - 1);
+            if (lastRun != null && lastRun.getStatus().equals(record.getStatus())) {
+                lastRun.setCounter(lastRun.getCounter() + 1)
+                        .setLastAppliedAt(record.getCreated_at());
+            } else {
+                statusRuns.add(new RecordDeltaEntity()
+                        .setId(record.getId())
+                        .setServiceId(record.getServiceId())
+                        .setStatus(record.getStatus())
+                        .setActive(false)
+                        .setCounter(1)
+                        .setCreated_at(record.getCreated_at())
+                        .setLastAppliedAt(record.getCreated_at()));
+            }
+        }
+        statusRuns.get(statusRuns.size() - 1).setActive(true);
+        return statusRuns;
+    }
+
+    private static List<RecordEntity> lastRecords(List<RecordEntity> serviceRecords, List<RecordDeltaEntity> statusRuns) {
+        int count = statusRuns.stream().mapToInt(RecordDeltaEntity::getCounter).sum();
+        return serviceRecords.subList(serviceRecords.size() - count, serviceRecords.size());
+    }
+}
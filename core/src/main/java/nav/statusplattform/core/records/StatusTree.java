@@ -0,0 +1,249 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.repositories.AreaRepository;
+import nav.statusplattform.core.repositories.DashboardRepository;
+import nav.statusplattform.core.repositories.RecordRepository;
+import nav.statusplattform.core.repositories.SubAreaRepository;
+import org.fluentjdbc.DbContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+//Antall tjenester per status for hvert underområde, område og dashboard (tjeneste → underområde → område → dashboard).
+//Når en tjeneste endrer status oppdateres bare nodene over tjenesten, og status for en node leses uten å gå gjennom tjenestene.
+//Statusene kommer fra LatestStatusCache. Strukturen bygges fra katalogen, og bygges på nytt etter endringer eller MAX_AGE.
+public class StatusTree {
+    private static final Duration MAX_AGE = Duration.ofSeconds(60);
+
+    //Service id - status, eller null dersom tjenesten ikke har status. Beholdes når strukturen bygges på nytt,
+    //men bare for tjenester som fortsatt er med i katalogen.
+    private static final Map<UUID, ServiceStatus> serviceStatuses = new HashMap<>();
+    private static Structure structure;
+
+    private static class Structure {
+        private final Map<UUID, Node> subAreas = new HashMap<>();
+        private final Map<UUID, Node> areas = new HashMap<>();
+        private final Map<UUID, Node> dashboards = new HashMap<>();
+        //Service id - alle noder tjenesten telles i, hver node én gang
+        private final Map<UUID, Set<Node>> nodesByService = new HashMap<>();
+        //Service id - dashboardene tjenesten vises på
+        private final Map<UUID, Set<UUID>> dashboardsByService = new HashMap<>();
+        private final Instant builtAt = Instant.now();
+
+        private boolean isExpired() {
+            return builtAt.plus(MAX_AGE).isBefore(Instant.now());
+        }
+
+        private void addService(UUID serviceId, Node node) {
+            nodesByService.computeIfAbsent(serviceId, id -> Collections.newSetFromMap(new IdentityHashMap<>())).add(node);
+        }
+
+        private void addServiceToDashboard(UUID serviceId, UUID dashboardId) {
+            addService(serviceId, dashboards.get(dashboardId));
+            dashboardsByService.computeIfAbsent(serviceId, id -> new HashSet<>()).add(dashboardId);
+        }
+    }
+
+    private static class Node {
+        private int ok;
+        private int issue;
+        private int down;
+        private int unknown;
+        private int withoutStatus;
+
+        private void add(ServiceStatus status, int count) {
+            if (status == null) {
+                withoutStatus += count;
+                return;
+            }
+            switch (status) {
+                case OK -> ok += count;
+                case ISSUE -> issue += count;
+                case DOWN -> down += count;
+                case UNKNOWN -> unknown += count;
+            }
+        }
+
+        private StatusCounts toStatusCounts() {
+            return new StatusCounts(ok, issue, down, unknown, withoutStatus);
+        }
+    }
+
+    public static class StatusCounts {
+        private final int ok;
+        private final int issue;
+        private final int down;
+        private final int unknown;
+        private final int withoutStatus;
+
+        StatusCounts(int ok, int issue, int down, int unknown, int withoutStatus) {
+            this.ok = ok;
+            this.issue = issue;
+            this.down = down;
+            this.unknown = unknown;
+            this.withoutStatus = withoutStatus;
+        }
+
+        public int getOk() {
+            return ok;
+        }
+
+        public int getIssue() {
+            return issue;
+        }
+
+        public int getDown() {
+            return down;
+        }
+
+        public int getUnknown() {
+            return unknown;
+        }
+
+        public int getNumberOfServices() {
+            return ok + issue + down + unknown + withoutStatus;
+        }
+
+        //Verste status blant tjenestene. UNKNOWN og tjenester uten status gir ingen status.
+        public Optional<ServiceStatus> getWorstStatus() {
+            if (down > 0) return Optional.of(ServiceStatus.DOWN);
+            if (issue > 0) return Optional.of(ServiceStatus.ISSUE);
+            if (ok > 0) return Optional.of(ServiceStatus.OK);
+            return Optional.empty();
+        }
+    }
+
+    //Bygger strukturen dersom den mangler eller er for gammel. Katalogen leses utenfor låsen.
+    public static void ensureBuilt(DbContext dbContext) {
+        synchronized (StatusTree.class) {
+            if (structure != null && !structure.isExpired()) {
+                return;
+            }
+        }
+        Map<UUID, List<UUID>> servicesOnSubAreas = new SubAreaRepository(dbContext).getServiceIdsOnSubAreas();
+        AreaRepository areaRepository = new AreaRepository(dbContext);
+        Map<UUID, List<UUID>> servicesOnAreas = areaRepository.getServiceIdsOnAreas();
+        Map<UUID, List<UUID>> subAreasOnAreas = areaRepository.getSubAreaIdsOnAreas();
+        Map<UUID, List<UUID>> areasOnDashboards = new DashboardRepository(dbContext).getAreaIdsOnDashboards();
+
+        Set<UUID> serviceIds = new HashSet<>();
+        servicesOnSubAreas.values().forEach(serviceIds::addAll);
+        servicesOnAreas.values().forEach(serviceIds::addAll);
+        Map<UUID, Optional<RecordEntity>> latestRecords = LatestStatusCache.getAll(serviceIds, new RecordRepository(dbContext));
+
+        synchronized (StatusTree.class) {
+            //Statuser satt via LatestStatusCache mens katalogen ble lest er nyere enn de som ble lest her
+            latestRecords.forEach((serviceId, record) -> {
+                if (!serviceStatuses.containsKey(serviceId)) {
+                    serviceStatuses.put(serviceId, record.map(RecordEntity::getStatus).orElse(null));
+                }
+            });
+            serviceStatuses.keySet().retainAll(serviceIds);
+            structure = build(servicesOnSubAreas, servicesOnAreas, subAreasOnAreas, areasOnDashboards);
+        }
+    }
+
+    private static Structure build(Map<UUID, List<UUID>> servicesOnSubAreas,
+                                   Map<UUID, List<UUID>> servicesOnAreas,
+                                   Map<UUID, List<UUID>> subAreasOnAreas,
+                                   Map<UUID, List<UUID>> areasOnDashboards) {
+        Structure result = new Structure();
+        servicesOnSubAreas.keySet().forEach(subAreaId -> result.subAreas.put(subAreaId, new Node()));
+        servicesOnAreas.keySet().forEach(areaId -> result.areas.put(areaId, new Node()));
+        subAreasOnAreas.forEach((areaId, subAreaIds) -> {
+            result.areas.putIfAbsent(areaId, new Node());
+            subAreaIds.forEach(subAreaId -> result.subAreas.putIfAbsent(subAreaId, new Node()));
+        });
+        areasOnDashboards.forEach((dashboardId, areaIds) -> {
+            result.dashboards.put(dashboardId, new Node());
+            areaIds.forEach(areaId -> result.areas.putIfAbsent(areaId, new Node()));
+        });
+
+        Map<UUID, List<UUID>> dashboardsByArea = new HashMap<>();
+        areasOnDashboards.forEach((dashboardId, areaIds) -> areaIds.forEach(areaId ->
+                dashboardsByArea.computeIfAbsent(areaId, id -> new ArrayList<>()).add(dashboardId)));
+        Map<UUID, List<UUID>> areasBySubArea = new HashMap<>();
+        subAreasOnAreas.forEach((areaId, subAreaIds) -> subAreaIds.forEach(subAreaId ->
+                areasBySubArea.computeIfAbsent(subAreaId, id -> new ArrayList<>()).add(areaId)));
+
+        servicesOnAreas.forEach((areaId, serviceIds) -> serviceIds.forEach(serviceId -> {
+            result.addService(serviceId, result.areas.get(areaId));
+            dashboardsByArea.getOrDefault(areaId, List.of()).forEach(dashboardId -> result.addServiceToDashboard(serviceId, dashboardId));
+        }));
+        servicesOnSubAreas.forEach((subAreaId, serviceIds) -> serviceIds.forEach(serviceId -> {
+            result.addService(serviceId, result.subAreas.get(subAreaId));
+            areasBySubArea.getOrDefault(subAreaId, List.of()).forEach(areaId -> {
+                result.addService(serviceId, result.areas.get(areaId));
+                dashboardsByArea.getOrDefault(areaId, List.of()).forEach(dashboardId -> result.addServiceToDashboard(serviceId, dashboardId));
+            });
+        }));
+
+        result.nodesByService.forEach((serviceId, nodes) -> {
+            ServiceStatus status = serviceStatuses.get(serviceId);
+            nodes.forEach(node -> node.add(status, 1));
+        });
+        return result;
+    }
+
+    //Kalles av LatestStatusCache når statusen til en tjeneste er endret
+    static synchronized void setServiceStatus(UUID serviceId, ServiceStatus status) {
+        boolean known = serviceStatuses.containsKey(serviceId);
+        ServiceStatus previous = serviceStatuses.put(serviceId, status);
+        if (structure == null || (known && previous == status)) {
+            return;
+        }
+        for (Node node : structure.nodesByService.getOrDefault(serviceId, Set.of())) {
+            node.add(previous, -1);
+            node.add(status, 1);
+        }
+    }
+
+    public static synchronized Optional<StatusCounts> getSubArea(UUID subAreaId) {
+        return getNode(subAreaId, structure == null ? null : structure.subAreas);
+    }
+
+    public static synchronized Optional<StatusCounts> getArea(UUID areaId) {
+        return getNode(areaId, structure == null ? null : structure.areas);
+    }
+
+    public static synchronized Optional<StatusCounts> getDashboard(UUID dashboardId) {
+        return getNode(dashboardId, structure == null ? null : structure.dashboards);
+    }
+
+    private static Optional<StatusCounts> getNode(UUID id, Map<UUID, Node> nodes) {
+        return Optional.ofNullable(nodes).map(n -> n.get(id)).map(Node::toStatusCounts);
+    }
+
+    //Dashboardene tjenestene vises på, eller tom dersom strukturen ikke er bygget
+    public static synchronized Optional<Set<UUID>> getDashboardIds(Collection<UUID> serviceIds) {
+        if (structure == null) {
+            return Optional.empty();
+        }
+        Set<UUID> result = new HashSet<>();
+        serviceIds.forEach(serviceId -> result.addAll(structure.dashboardsByService.getOrDefault(serviceId, Set.of())));
+        return Optional.of(result);
+    }
+
+    //Katalogen er endret, strukturen bygges på nytt ved neste oppslag
+    public static synchronized void invalidate() {
+        structure = null;
+    }
+
+    public static synchronized void clear() {
+        structure = null;
+        serviceStatuses.clear();
+    }
+}
@@ -0,0 +1,60 @@
+package nav.statusplattform.core.repositories;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Oppdateringer av cacher og buffere i minnet som bare skal gjøres dersom transaksjonen blir committet.
+//Den som starter transaksjonen åpner en AfterCommit rundt den, og kaller committed() etter commit.
+//Lukkes den uten commit, kjøres det som er registrert med onRollback i stedet.
+//Uten åpen AfterCommit på tråden kjøres onCommit med en gang, og onRollback kjøres aldri.
+public class AfterCommit implements AutoCloseable {
+    private static final ThreadLocal<AfterCommit> current = new ThreadLocal<>();
+
+    private final List<Runnable> commitActions = new ArrayList<>();
+    private final List<Runnable> rollbackActions = new ArrayList<>();
+    private final boolean nested;
+    private boolean committed = false;
+
+    private AfterCommit(boolean nested) {
+        this.nested = nested;
+    }
+
+    //Er en AfterCommit allerede åpen på tråden, kjøres alt når den ytre er ferdig
+    public static AfterCommit begin() {
+        if (current.get() != null) {
+            return new AfterCommit(true);
+        }
+        AfterCommit afterCommit = new AfterCommit(false);
+        current.set(afterCommit);
+        return afterCommit;
+    }
+
+    public static void onCommit(Runnable action) {
+        AfterCommit afterCommit = current.get();
+        if (afterCommit == null) {
+            action.run();
+        } else {
+            afterCommit.commitActions.add(action);
+        }
+    }
+
+    public static void onRollback(Runnable action) {
+        AfterCommit afterCommit = current.get();
+        if (afterCommit != null) {
+            afterCommit.rollbackActions.add(action);
+        }
+    }
+
+    public void committed() {
+        committed = true;
+    }
+
+    @Override
+    public void close() {
+        if (nested) {
+            return;
+        }
+        current.remove();
+        (committed ? commitActions : rollbackActions).forEach(Runnable::run);
+    }
+}
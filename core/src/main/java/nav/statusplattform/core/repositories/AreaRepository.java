@@ -235,6 +235,42 @@ public class AreaRepository {
     }
 
 
+    //Områdene for alle tjenestene i en spørring. Service id - områder
+    public Map<UUID, List<AreaEntity>> getAreasContainingServices(Collection<UUID> service_ids) {
+        Map<UUID, List<AreaEntity>> result = new HashMap<>();
+        if (service_ids.isEmpty()) {
+            return result;
+        }
+        DbContextTableAlias areaAlias = areaTable.alias("area");
+        DbContextTableAlias a2s = areaServiceTable.alias("a2s");
+        areaAlias
+                .leftJoin(areaAlias.column("id"), a2s.column("area_id"))
+                .orderBy(areaAlias.column("name"))
+                .whereIn("a2s.service_id", service_ids)
+                .forEach(row -> result
+                        .computeIfAbsent(row.table(a2s).getUUID("service_id"), ignored -> new ArrayList<>())
+                        .add(toArea(row.table(areaAlias))));
+        return result;
+    }
+
+    //Område id - tjenester direkte i området, uten slettede tjenester
+    public Map<UUID, List<UUID>> getServiceIdsOnAreas() {
+        DbContextTableAlias a2s = areaServiceTable.alias("a2s");
+        DbContextTableAlias service = serviceTable.alias("service");
+        return a2s.join(a2s.column("service_id"), service.column("id"))
+                .where("service.deleted", Boolean.FALSE)
+                .list(row -> Map.entry(row.table(a2s).getUUID("area_id"), row.table(a2s).getUUID("service_id")))
+                .stream()
+                .collect(Collectors.groupingBy(Map.Entry::getKey, Collectors.mapping(Map.Entry::getValue, Collectors.toList())));
+    }
+
+    //Område id - underområder i området
+    public Map<UUID, List<UUID>> getSubAreaIdsOnAreas() {
+        return areaSubAreaTable.unordered()
+                .list(row -> Map.entry(row.getUUID("area_id"), row.getUUID("sub_area_id")))
+                .stream()
+                .collect(Collectors.groupingBy(Map.Entry::getKey, Collectors.mapping(Map.Entry::getValue, Collectors.toList())));
+    }
 
     public static class Query {
 
@@ -66,78 +66,95 @@ public class DashboardRepository {
     }
 
     public Map.Entry<DashboardEntity, List<AreaWithServices>> retrieveOne(UUID id) {
-        DbContextTableAlias d = dashboardTable.alias("d");
-        DbContextTableAlias d2a = dashboardAreaTable.alias("d2a");
-
-        Map<AreaEntity, List<ServiceEntity>> areaEntityListMap = new AreaRepository(dbContext).retrieveAll();
-        Map<UUID, AreaEntity> areaById = areaEntityListMap.keySet().stream()
-                .collect(Collectors.toMap(AreaEntity::getId, areaEntity -> areaEntity));
-
-        Map<DashboardEntity, List<AreaWithServices>> result = new HashMap<>();
-
-        d.where("id",id)
-                .leftJoin(d.column("id"), d2a.column("dashboard_id"))
-                .orderBy(d2a.column("order_in_dashboard"))
-                .list(row -> {
-                    List<AreaWithServices> areasInDashboard = result.computeIfAbsent(toDashboard(row.table(d)), ignored -> new ArrayList<>());
-                    Optional.ofNullable(row.getUUID("area_id"))
-                            .map(areaById::get)
-                            .ifPresent(area -> areasInDashboard.add(new AreaWithServices(area, areaEntityListMap.get(area),Collections.emptyList())));
-                    return null;
-                });
-        result.entrySet().stream().findFirst().get().getValue().forEach(this::settSubAreasOnArea);
-        return result.entrySet().stream().findFirst()
+        return retrieveOneWhere("d.id", id)
                 .orElseThrow(() -> new IllegalArgumentException("Not found: Dashboard with UUID " + id));
     }
 
-    private void settSubAreasOnArea(AreaWithServices areaWithServices) {
-        UUID areaID = areaWithServices.getArea().getId();
-        List<SubAreaWithServices> subAreasOnArea = new ArrayList<>();
-
-        DbContextTableAlias sa = dbContext.table("sub_area").alias("sa");
-        DbContextTableAlias a2sa = dbContext.table("area_sub_area").alias("a2sa");
-
-
-        a2sa.where("area_id", areaID)
-                .leftJoin(a2sa.column("sub_area_id"),sa.column("id"))
-                .list(row -> subAreasOnArea.add( new SubAreaWithServices(SubAreaRepository.toSubArea(row.table(sa)),null )));
-
-        SubAreaRepository subAreaRepository = new SubAreaRepository(dbContext);
-
-
-
-        subAreasOnArea.forEach(subAreaWithServices ->
-                subAreaWithServices.setServices(
-                        subAreaRepository.getServicesOnSubArea(subAreaWithServices.getSubArea().getId()))
-        );
-        areaWithServices.setSubAreas(subAreasOnArea);
+    public Map.Entry<DashboardEntity, List<AreaWithServices>> retrieveOneFromName(String name) {
+        return retrieveOneWhere("d.name", name)
+                .orElseThrow(() -> new IllegalArgumentException("Not found: Dashboard with name " + name));
     }
 
-    public Map.Entry<DashboardEntity, List<AreaWithServices>> retrieveOneFromName(String name) {
+    //Henter dashboardet med områder, tjenester og underområder i to spørringer, uavhengig av antall områder totalt
+    private Optional<Map.Entry<DashboardEntity, List<AreaWithServices>>> retrieveOneWhere(String column, Object value) {
         DbContextTableAlias d = dashboardTable.alias("d");
         DbContextTableAlias d2a = dashboardAreaTable.alias("d2a");
+        DbContextTableAlias area = dbContext.table("area").alias("area");
+        DbContextTableAlias a2s = dbContext.table("area_service").alias("a2s");
+        DbContextTableAlias service = dbContext.table("service").alias("service");
 
-        Map<AreaEntity, List<ServiceEntity>> areaEntityListMap = new AreaRepository(dbContext).retrieveAll();
-        Map<UUID, AreaEntity> areaById = areaEntityListMap.keySet().stream()
-                .collect(Collectors.toMap(AreaEntity::getId, areaEntity -> areaEntity));
-
-        Map<DashboardEntity, List<AreaWithServices>> result = new HashMap<>();
-
-        d.where("name",name)
-                .leftJoin(d.column("id"), d2a.column("dashboard_id"))
+        Map<DashboardEntity, Map<UUID, AreaWithServices>> result = new HashMap<>();
+        d.leftJoin(d.column("id"), d2a.column("dashboard_id"))
+                .leftJoin(d2a.column("area_id"), area.column("id"))
+                .leftJoin(area.column("id"), a2s.column("area_id"))
+                .leftJoin(a2s.column("service_id"), service.column("id"))
+                .where(column, value)
                 .orderBy(d2a.column("order_in_dashboard"))
-                .list(row -> {
-                    List<AreaWithServices> areasInDashboard = result.computeIfAbsent(toDashboard(row.table(d)), ignored -> new ArrayList<>());
-                    Optional.ofNullable(row.getUUID("area_id"))
-                            .map(areaById::get)
-                            .ifPresent(area -> areasInDashboard.add(new AreaWithServices(area, areaEntityListMap.get(area),Collections.EMPTY_LIST)));
-                    return null;
+                .forEach(row -> {
+                    Map<UUID, AreaWithServices> areasInDashboard = result.computeIfAbsent(toDashboard(row.table(d)), ignored -> new LinkedHashMap<>());
+                    //Tabeller uten treff i left join gir null
+                    if (row.table(d2a) == null || row.table(area) == null) {
+                        return;
+                    }
+                    UUID areaId = row.table(d2a).getUUID("area_id");
+                    if (!areasInDashboard.containsKey(areaId)) {
+                        areasInDashboard.put(areaId, new AreaWithServices(AreaRepository.toArea(row.table(area)), new ArrayList<>(), new ArrayList<>()));
+                    }
+                    AreaWithServices areaWithServices = areasInDashboard.get(areaId);
+                    if (row.table(a2s) != null && row.table(service) != null) {
+                        ServiceEntity serviceEntity = ServiceRepository.toService(row.table(service));
+                        if (serviceEntity.getDeleted().equals(false)) {
+                            areaWithServices.addService(serviceEntity);
+                        }
+                    }
                 });
-        return result.entrySet().stream().findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Not found: Dashboard with name " + name));
+        return result.entrySet().stream().findFirst().map(entry -> {
+            List<AreaWithServices> areas = new ArrayList<>(entry.getValue().values());
+            areas.forEach(areaWithServices -> areaWithServices.getServices()
+                    .sort(Comparator.comparing(s -> s.getName().toLowerCase(Locale.ROOT))));
+            setSubAreasOnAreas(entry.getValue());
+            return new AbstractMap.SimpleEntry<>(entry.getKey(), areas);
+        });
+    }
+
+    private void setSubAreasOnAreas(Map<UUID, AreaWithServices> areasById) {
+        if (areasById.isEmpty()) {
+            return;
+        }
+        DbContextTableAlias a2sa = dbContext.table("area_sub_area").alias("a2sa");
+        DbContextTableAlias sa = dbContext.table("sub_area").alias("sa");
+        DbContextTableAlias sa2s = dbContext.table("sub_area_service").alias("sa2s");
+        DbContextTableAlias service = dbContext.table("service").alias("service");
+
+        Map<UUID, Map<UUID, SubAreaWithServices>> subAreasByArea = new HashMap<>();
+        a2sa.leftJoin(a2sa.column("sub_area_id"), sa.column("id"))
+                .leftJoin(sa.column("id"), sa2s.column("sub_area_id"))
+                .leftJoin(sa2s.column("service_id"), service.column("id"))
+                .whereIn("a2sa.area_id", areasById.keySet())
+                .forEach(row -> {
+                    Map<UUID, SubAreaWithServices> subAreas = subAreasByArea
+                            .computeIfAbsent(row.table(a2sa).getUUID("area_id"), ignored -> new LinkedHashMap<>());
+                    UUID subAreaId = row.table(a2sa).getUUID("sub_area_id");
+                    if (!subAreas.containsKey(subAreaId)) {
+                        subAreas.put(subAreaId, new SubAreaWithServices(SubAreaRepository.toSubArea(row.table(sa)), new ArrayList<>()));
+                    }
+                    SubAreaWithServices subArea = subAreas.get(subAreaId);
+                    if (row.table(sa2s) != null && row.table(service) != null) {
+                        subArea.getServices().add(ServiceRepository.toService(row.table(service)));
+                    }
+                });
+        subAreasByArea.forEach((areaId, subAreas) -> areasById.get(areaId).setSubAreas(new ArrayList<>(subAreas.values())));
     }
 
 
+    //Dashboard id - områder på dashboardet
+    public Map<UUID, List<UUID>> getAreaIdsOnDashboards() {
+        return dashboardAreaTable.unordered()
+                .list(row -> Map.entry(row.getUUID("dashboard_id"), row.getUUID("area_id")))
+                .stream()
+                .collect(Collectors.groupingBy(Map.Entry::getKey, Collectors.mapping(Map.Entry::getValue, Collectors.toList())));
+    }
+
     public Map<DashboardEntity, List<AreaWithServices>> retrieveAll() {
         DbContextTableAlias d = dashboardTable.alias("d");
         DbContextTableAlias d2a = dashboardAreaTable.alias("d2a");
@@ -0,0 +1,125 @@
+package nav.statusplattform.core.repositories;
+
+import nav.statusplattform.core.exceptionHandling.ExceptionUtil;
+import org.fluentjdbc.DbContext;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+//Vedlikehold av døgnpartisjonene på service_status (db/postgresql/V030). Partisjonene er i UTC.
+//Mot databaser uten partisjonering (H2 i testene) er tabellen ikke partisjonert, og alt her er no-op.
+public class RecordPartitionRepository {
+    private static final String PARENT_TABLE = "service_status";
+    private static final String PARTITION_PREFIX = PARENT_TABLE + "_p";
+    private static final String DEFAULT_PARTITION = PARENT_TABLE + "_default";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    //Grensene skrives som timestamptz-literal i UTC, uavhengig av ZonedDateTime.toString() og sesjonens tidssone
+    private static final DateTimeFormatter PARTITION_BOUND = DateTimeFormatter.ofPattern("''yyyy-MM-dd HH:mm:ssx''");
+
+    private final DbContext dbContext;
+
+    public RecordPartitionRepository(DbContext dbContext) {
+        this.dbContext = dbContext;
+    }
+
+    public boolean isPartitioned() {
+        if (!isPostgres()) {
+            return false;
+        }
+        return dbContext.statement(
+                        "select count(*) as partitioned from pg_partitioned_table pt join pg_class c on c.oid = pt.partrelid where c.relname = ?",
+                        List.of(PARENT_TABLE))
+                .singleObject(row -> row.getLong("partitioned") > 0)
+                .orElse(false);
+    }
+
+    public List<LocalDate> getPartitionDays() {
+        if (!isPartitioned()) {
+            return List.of();
+        }
+        return dbContext.statement(
+                        "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid join pg_class p on p.oid = i.inhparent where p.relname = ?",
+                        List.of(PARENT_TABLE))
+                .list(row -> toPartitionDay(row.getString("relname")))
+                .stream()
+                .flatMap(Optional::stream)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    //Records for døgnet som havnet i default før partisjonen fantes, flyttes over. Ellers feiler create
+    //når default har rader i døgnet.
+    public void createPartition(LocalDate day) {
+        String partition = partitionName(day);
+        if (exists(partition)) {
+            return;
+        }
+        String from = partitionBound(day);
+        String to = partitionBound(day.plusDays(1));
+        String range = "created_at >= " + from + " and created_at < " + to;
+        String moved = partition + "_moved";
+        execute("create temporary table " + moved + " as select * from " + DEFAULT_PARTITION + " where " + range);
+        execute("delete from " + DEFAULT_PARTITION + " where " + range);
+        execute("create table " + partition + " partition of " + PARENT_TABLE + " for values from (" + from + ") to (" + to + ")");
+        execute("insert into " + PARENT_TABLE + " select * from " + moved);
+        execute("drop table " + moved);
+    }
+
+    //Records i default er utenfor alle døgnpartisjonene, og blir ikke borte når partisjoner droppes
+    public int deleteFromDefaultPartition(ZonedDateTime cutoff, int chunkSize) {
+        return dbContext.statement(
+                        "delete from " + DEFAULT_PARTITION + " where ctid in (select ctid from " + DEFAULT_PARTITION + " where created_at <= ? limit ?)",
+                        List.of(cutoff, chunkSize))
+                .executeUpdate(dbContext.getThreadConnection());
+    }
+
+    public void dropPartition(LocalDate day) {
+        execute("drop table if exists " + partitionName(day));
+    }
+
+    static String partitionBound(LocalDate day) {
+        return PARTITION_BOUND.format(day.atStartOfDay(ZoneOffset.UTC));
+    }
+
+    private static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + PARTITION_SUFFIX.format(day);
+    }
+
+    private static Optional<LocalDate> toPartitionDay(String tableName) {
+        if (!tableName.startsWith(PARTITION_PREFIX)) {
+            return Optional.empty();
+        }
+        return Optional.of(LocalDate.parse(tableName.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX));
+    }
+
+    private boolean exists(String tableName) {
+        return dbContext.statement("select count(*) as existing from pg_class where relname = ?", List.of(tableName))
+                .singleObject(row -> row.getLong("existing") > 0)
+                .orElse(false);
+    }
+
+    private boolean isPostgres() {
+        try {
+            return dbContext.getThreadConnection().getMetaData().getDatabaseProductName().equals("PostgreSQL");
+        } catch (SQLException e) {
+            throw ExceptionUtil.soften(e);
+        }
+    }
+
+    private void execute(String ddl) {
+        Connection connection = dbContext.getThreadConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(ddl);
+        } catch (SQLException e) {
+            throw ExceptionUtil.soften(e);
+        }
+    }
+}
@@ -5,38 +5,71 @@ import nav.statusplattform.core.entities.RecordEntity;
 import nav.statusplattform.core.entities.ServiceEntity;
 import nav.statusplattform.core.enums.RecordSource;
 import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.enums.ServiceType;
+import nav.statusplattform.core.exceptionHandling.ExceptionUtil;
+import nav.statusplattform.core.records.RecordCursor;
 import org.fluentjdbc.*;
 
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class RecordRepository {
     private final DbContextTable recordTable;
+    //Uten automatiske tidsstempler, så created_at blir tidspunktet i recorden og ikke tidspunktet den lagres
+    private final DbContextTable recordInsertTable;
     private final DbContextTable recordDeltaTable;
     private final DbContextTable serviceTable;
+    private final DbContext dbContext;
+    private final RecordTextRepository recordTextRepository;
 
 
     public RecordRepository(DbContext dbContext) {
+        this.dbContext = dbContext;
+        this.recordTextRepository = new RecordTextRepository(dbContext);
         serviceTable = dbContext.table(new DatabaseTableWithTimestamps("service"));
         recordTable = dbContext.table(new DatabaseTableWithTimestamps("service_status"));
+        recordInsertTable = dbContext.table(new DatabaseTableImpl("service_status"));
         recordDeltaTable = dbContext.table(new DatabaseTableWithTimestamps("service_status_delta"));
 
     }
 
     public UUID save(RecordEntity entity) {
         RecordSource source = entity.getRecordSource() != null? entity.getRecordSource(): RecordSource.UNKNOWN;
+        Map<String, Long> textIds = recordTextRepository.getOrCreateIds(Arrays.asList(entity.getDescription(), entity.getLogglink()));
+        entity.setDescriptionId(textIds.get(entity.getDescription())).setLogglinkId(textIds.get(entity.getLogglink()));
+        //Nye records får tidsordnet id
+        if (entity.getId() == null) {
+            UUID id = TimeOrderedUuid.generate();
+            Instant now = Instant.now();
+            recordInsertTable.insert()
+                    .setField("id", id)
+                    .setField("created_at", entity.getCreated_at() != null ? entity.getCreated_at() : now)
+                    .setField("updated_at", now)
+                    .setField("service_id", entity.getServiceId())
+                    .setField("status", entity.getStatus())
+                    .setField("description_id", textIds.get(entity.getDescription()))
+                    .setField("logglink_id", textIds.get(entity.getLogglink()))
+                    .setField("response_time", entity.getResponsetime())
+                    .setField("source", source)
+                    .execute();
+            return id;
+        }
         DatabaseSaveResult<UUID> result = recordTable.newSaveBuilderWithUUID("id", entity.getId())
                 .setField("service_id", entity.getServiceId())
                 .setField("status", entity.getStatus())
-                .setField("description", entity.getDescription())
-                .setField("logglink", entity.getLogglink())
+                .setField("description_id", textIds.get(entity.getDescription()))
+                .setField("logglink_id", textIds.get(entity.getLogglink()))
                 .setField("response_time", entity.getResponsetime())
                 .setField("source", source)
                 .execute();
@@ -44,6 +77,28 @@ public class RecordRepository {
         return result.getId();
     }
 
+    public void saveAll(List<RecordEntity> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        Map<String, Long> textIds = recordTextRepository.getOrCreateIds(entities.stream()
+                .flatMap(entity -> Stream.of(entity.getDescription(), entity.getLogglink()))
+                .collect(Collectors.toSet()));
+        entities.forEach(entity -> entity.setDescriptionId(textIds.get(entity.getDescription())).setLogglinkId(textIds.get(entity.getLogglink())));
+        ZonedDateTime now = ZonedDateTime.now();
+        recordInsertTable.bulkInsert(entities)
+                .setField("id", RecordEntity::getId)
+                .setField("created_at", entity -> entity.getCreated_at() != null ? entity.getCreated_at() : now)
+                .setField("updated_at", entity -> now)
+                .setField("service_id", RecordEntity::getServiceId)
+                .setField("status", RecordEntity::getStatus)
+                .setField("description_id", RecordEntity::getDescriptionId)
+                .setField("logglink_id", RecordEntity::getLogglinkId)
+                .setField("response_time", RecordEntity::getResponsetime)
+                .setField("source", entity -> entity.getRecordSource() != null ? entity.getRecordSource() : RecordSource.UNKNOWN)
+                .execute();
+    }
+
     //UUIDen som settes her skal IKKE generes, men settes fra uid fra orginal record.
     public UUID saveNewStatusDiff(RecordEntity entity) {
         DatabaseSaveResult<UUID> result = recordDeltaTable.newSaveBuilderWithUUID("id", entity.getId())
@@ -64,11 +119,104 @@ public class RecordRepository {
 
     }
 
-    public void increaseCountOnStatusDiff(RecordDeltaEntity entity) {
-        recordDeltaTable.newSaveBuilderWithUUID("id", entity.getId())
-                .setField("counter", entity.getCounter() + 1)
-                .execute();
+    //Øker teller på aktiv delta med samme status direkte i databasen. Counter på hver delta er antall nye records,
+    //og vannmerket (last_applied_at) flyttes frem til nyeste record. Returnerer deltaene som traff en aktiv delta.
+    public List<RecordDeltaEntity> increaseCountOnActiveStatusDiffs(List<RecordDeltaEntity> deltas) {
+        if (deltas.isEmpty()) {
+            return List.of();
+        }
+        Instant now = Instant.now();
+        int[] updated = executeBatch(
+                "update service_status_delta set counter = counter + ?, updated_at = ?, " +
+                        "last_applied_at = case when last_applied_at is null or last_applied_at < ? then ? else last_applied_at end " +
+                        "where service_id = ? and active = true and status = ?",
+                deltas,
+                List.of(RecordDeltaEntity::getCounter, delta -> now, RecordDeltaEntity::getLastAppliedAt, RecordDeltaEntity::getLastAppliedAt,
+                        RecordDeltaEntity::getServiceId, delta -> delta.getStatus().getDbRepresentation()));
+        List<RecordDeltaEntity> result = new ArrayList<>();
+        for (int i = 0; i < deltas.size(); i++) {
+            if (updated[i] > 0) {
+                result.add(deltas.get(i));
+            }
+        }
+        return result;
+    }
+
+    //Setter aktiv delta inaktiv for tjenestene, med tidspunktet for første record med ny status.
+    //Aktive deltaer med vannmerke etter dette tidspunktet er nyere enn den nye statusen, og blir ikke endret.
+    //Returnerer tjenestene der aktiv delta ble satt inaktiv.
+    public Set<UUID> setOldStatusDiffsInactive(Map<UUID, ZonedDateTime> newStatusTimestamps) {
+        if (newStatusTimestamps.isEmpty()) {
+            return Set.of();
+        }
+        Instant now = Instant.now();
+        List<Map.Entry<UUID, ZonedDateTime>> entries = new ArrayList<>(newStatusTimestamps.entrySet());
+        int[] updated = executeBatch(
+                "update service_status_delta set active = false, updated_at = ? where service_id = ? and active = true " +
+                        "and (last_applied_at is null or last_applied_at <= ?)",
+                entries,
+                List.of(entry -> now, Map.Entry::getKey, Map.Entry::getValue));
+        Set<UUID> result = new HashSet<>();
+        for (int i = 0; i < entries.size(); i++) {
+            if (updated[i] > 0) {
+                result.add(entries.get(i).getKey());
+            }
+        }
+        return result;
+    }
+
+    //Id på delta skal være lik id på recorden som startet den, og created_at lik tidspunktet i recorden,
+    //samme klokke som last_applied_at.
+    //Aktive deltaer som kolliderer med en aktiv delta lagret av en annen transaksjon blir ikke lagret, og returneres.
+    //Inaktive perioder fra samme batch lagres bare for tjenestene der ny aktiv delta ble lagret, så historikken
+    //ikke får perioder som ikke henger sammen med deltakjeden. Avviste tjenester må prøves på nytt som en helhet.
+    public List<RecordDeltaEntity> saveNewStatusDiffs(List<RecordDeltaEntity> deltas) {
+        if (deltas.isEmpty()) {
+            return List.of();
+        }
+        Instant now = Instant.now();
+        List<RecordDeltaEntity> activeDeltas = deltas.stream().filter(RecordDeltaEntity::getActive).collect(Collectors.toList());
+        insertStatusDiffs(activeDeltas, now);
+        List<RecordDeltaEntity> rejected = List.of();
+        if (!activeDeltas.isEmpty()) {
+            Set<UUID> savedIds = new HashSet<>(recordDeltaTable
+                    .whereIn("id", activeDeltas.stream().map(RecordDeltaEntity::getId).collect(Collectors.toList()))
+                    .where("active", true)
+                    .list(row -> row.getUUID("id")));
+            rejected = activeDeltas.stream().filter(delta -> !savedIds.contains(delta.getId())).collect(Collectors.toList());
+        }
+        Set<UUID> rejectedServices = rejected.stream().map(RecordDeltaEntity::getServiceId).collect(Collectors.toSet());
+        insertStatusDiffs(deltas.stream()
+                .filter(delta -> !delta.getActive() && !rejectedServices.contains(delta.getServiceId()))
+                .collect(Collectors.toList()), now);
+        return rejected;
+    }
+
+    private void insertStatusDiffs(List<RecordDeltaEntity> deltas, Instant now) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        executeBatch(
+                "insert into service_status_delta (id, service_id, status, active, counter, created_at, updated_at, last_applied_at) values (?, ?, ?, ?, ?, ?, ?, ?) on conflict do nothing",
+                deltas,
+                List.of(RecordDeltaEntity::getId, RecordDeltaEntity::getServiceId, delta -> delta.getStatus().getDbRepresentation(),
+                        RecordDeltaEntity::getActive, RecordDeltaEntity::getCounter,
+                        delta -> delta.getCreated_at() != null ? delta.getCreated_at() : now, delta -> now, RecordDeltaEntity::getLastAppliedAt));
+    }
 
+    private <T> int[] executeBatch(String query, List<T> items, List<Function<T, ?>> parameters) {
+        try (PreparedStatement statement = dbContext.getThreadConnection().prepareStatement(query)) {
+            DatabaseStatement.addBatch(statement, items, parameters);
+            return statement.executeBatch();
+        } catch (SQLException e) {
+            throw ExceptionUtil.soften(e);
+        }
+    }
+
+    public void increaseCountOnStatusDiff(RecordDeltaEntity entity) {
+        dbContext.statement("update service_status_delta set counter = counter + 1, updated_at = ? where id = ?",
+                        List.of(Instant.now(), entity.getId()))
+                .executeUpdate(dbContext.getThreadConnection());
     }
 
     public Optional<RecordDeltaEntity> getLatestRecordDiff(UUID serviceId) {
@@ -84,29 +232,106 @@ public class RecordRepository {
                 .singleObject(RecordRepository::toRecordDelta);
     }
 
+    //Henter aktiv delta for alle tjenestene i en spørring. Ved flere aktive vinner den nyeste.
+    public Map<UUID, RecordDeltaEntity> getActiveRecordDeltas(Collection<UUID> serviceIds) {
+        Map<UUID, RecordDeltaEntity> result = new HashMap<>();
+        if (serviceIds.isEmpty()) {
+            return result;
+        }
+        recordDeltaTable.whereIn("service_id", serviceIds)
+                .where("active", true)
+                .orderBy("created_at")
+                .list(RecordRepository::toRecordDelta)
+                .forEach(delta -> result.put(delta.getServiceId(), delta));
+        return result;
+    }
+
     public Optional<RecordEntity> getLatestRecord(UUID serviceId) {
-        return recordTable.where("service_id", serviceId)
-                .orderBy("created_at DESC")
-                .limit(1)
-                .singleObject(RecordRepository::toRecord);
+        return listRecords("where s.service_id = ? order by s.created_at desc limit 1", List.of(serviceId))
+                .stream().findFirst();
+    }
+
+    //Henter siste record for alle tjenestene i en spørring
+    public Map<UUID, RecordEntity> getLatestRecords(Collection<UUID> serviceIds) {
+        Map<UUID, RecordEntity> result = new HashMap<>();
+        if (serviceIds.isEmpty()) {
+            return result;
+        }
+        String parameterList = serviceIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+        listRecords("where s.id in (select latest.id from (select distinct on (service_id) id, service_id, created_at from service_status " +
+                        "where service_id in (" + parameterList + ") order by service_id, created_at desc) latest)",
+                new ArrayList<>(serviceIds))
+                .forEach(record -> result.put(record.getServiceId(), record));
+        return result;
     }
 
-    //TODO denne skal bli paginert
     public List<RecordEntity> getRecordHistory(UUID serviceId, int maxNumberOfRecords) {
-        return recordTable.where("service_id", serviceId)
-                .orderBy("created_at DESC")
-                .limit(maxNumberOfRecords)
-                .list(RecordRepository::toRecord);
+        return listRecords("where s.service_id = ? order by s.created_at desc limit ?", List.of(serviceId, maxNumberOfRecords));
+    }
+
+    //Én side av historikken til tjenesten, nyeste først, etter cursor dersom den er satt.
+    //Sortert på (created_at, id), så records med samme tidspunkt verken hoppes over eller gjentas mellom sidene.
+    public List<RecordEntity> getRecordHistoryPage(UUID serviceId, Optional<RecordCursor> cursor,
+                                                   Optional<ZonedDateTime> from, Optional<ZonedDateTime> to,
+                                                   Optional<ServiceStatus> status, int pageSize) {
+        StringBuilder where = new StringBuilder("where s.service_id = ?");
+        List<Object> parameters = new ArrayList<>(List.of(serviceId));
+        cursor.ifPresent(c -> {
+            where.append(" and (s.created_at < ? or (s.created_at = ? and s.id < ?))");
+            parameters.addAll(List.of(c.getCreatedAt(), c.getCreatedAt(), c.getId()));
+        });
+        from.ifPresent(f -> {
+            where.append(" and s.created_at >= ?");
+            parameters.add(f);
+        });
+        to.ifPresent(t -> {
+            where.append(" and s.created_at < ?");
+            parameters.add(t);
+        });
+        status.ifPresent(st -> {
+            where.append(" and s.status = ?");
+            parameters.add(st.getDbRepresentation());
+        });
+        parameters.add(pageSize);
+        return listRecords(where + " order by s.created_at desc, s.id desc limit ?", parameters);
+    }
+
+    //Records i perioden, eldste først, gitt til consumer etter hvert som radene leses, uten å samle dem i en liste.
+    //Bare tidspunkt, status og responstid er satt.
+    public void forEachRecordInPeriod(UUID serviceId, ZonedDateTime from, ZonedDateTime to, Consumer<RecordEntity> consumer) {
+        recordTable.where("service_id", serviceId)
+                .whereExpression("created_at >= ?", from)
+                .whereExpression("created_at < ?", to)
+                .orderBy("created_at")
+                .forEach(row -> consumer.accept(new RecordEntity()
+                        .setServiceId(serviceId)
+                        .setCreated_at(row.getZonedDateTime("created_at"))
+                        .setStatus(ServiceStatus.fromDb(row.getString("status")).orElse(ServiceStatus.UNKNOWN))
+                        .setResponsetime(row.getInt("response_time"))));
+    }
+
+    //De siste maxNumberOfRecords records per tjeneste, nyeste først
+    public Map<UUID, List<RecordEntity>> getRecordHistories(Collection<UUID> serviceIds, int maxNumberOfRecords) {
+        Map<UUID, List<RecordEntity>> result = new HashMap<>();
+        if (serviceIds.isEmpty()) {
+            return result;
+        }
+        String parameterList = serviceIds.stream().map(id -> "?").collect(Collectors.joining(", "));
+        List<Object> parameters = new ArrayList<>(serviceIds);
+        parameters.add(maxNumberOfRecords);
+        listRecords("where s.id in (select ranked.id from (select id, row_number() over (partition by service_id order by created_at desc) as position " +
+                        "from service_status where service_id in (" + parameterList + ")) ranked where ranked.position <= ?) " +
+                        "order by s.service_id, s.created_at desc",
+                parameters)
+                .forEach(record -> result.computeIfAbsent(record.getServiceId(), id -> new ArrayList<>()).add(record));
+        return result;
     }
 
     public List<RecordEntity> getAllRecordsFromYesterday(){
         ZonedDateTime yesterdayMidnight = ZonedDateTime.now().minusDays(1).truncatedTo(ChronoUnit.DAYS);
         ZonedDateTime todayMidnight = ZonedDateTime.now().truncatedTo(ChronoUnit.DAYS);
 
-        return recordTable
-                .whereExpression("created_at <= ?", todayMidnight )
-                .whereExpression("created_at >= ?", yesterdayMidnight)
-                .list(RecordRepository::toRecord);
+        return listRecords("where s.created_at <= ? and s.created_at >= ?", List.of(todayMidnight, yesterdayMidnight));
     }
     public ZonedDateTime getLatestGcpPollTime(){
         Optional<ServiceEntity> optionalServiceEntity = serviceTable.where("polling_on_prem", false)
@@ -129,8 +354,24 @@ public class RecordRepository {
     }
 
     public List<RecordEntity> getRecordsOlderThan(int daysOld){
-        return recordTable
-                .whereExpression("created_at <= ?", ZonedDateTime.now().minusDays(daysOld))
+        return listRecords("where s.created_at <= ?", List.of(ZonedDateTime.now().minusDays(daysOld)));
+    }
+
+    //Tekstene med id-ene, fra record_text
+    public Map<Long, String> getRecordTexts(Collection<Long> textIds) {
+        return recordTextRepository.getTexts(textIds);
+    }
+
+    //Tekster slås opp i record_text. Eldre records har teksten direkte i description/logglink.
+    private List<RecordEntity> listRecords(String whereAndOrder, List<Object> parameters) {
+        return dbContext.statement(
+                        "select s.id, s.service_id, s.status, s.response_time, s.created_at, s.source, s.description_id, s.logglink_id, " +
+                                "coalesce(d.content, s.description) as description, coalesce(l.content, s.logglink) as logglink " +
+                                "from service_status s " +
+                                "left join record_text d on d.id = s.description_id " +
+                                "left join record_text l on l.id = s.logglink_id " +
+                                whereAndOrder,
+                        parameters)
                 .list(RecordRepository::toRecord);
     }
     public void deleteRecordsOlderThen(int daysOld) {
@@ -159,6 +400,8 @@ public class RecordRepository {
                     .setServiceId(row.getUUID("service_id"))
                     .setDescription(row.getString("description"))
                     .setLogglink(row.getString("logglink"))
+                    .setDescriptionId(row.getLong("description_id"))
+                    .setLogglinkId(row.getLong("logglink_id"))
                     .setStatus(ServiceStatus.fromDb(row.getString("status")).orElse(ServiceStatus.ISSUE))
                     .setCreated_at(row.getZonedDateTime("created_at"))
                     .setResponsetime(row.getInt("response_time"))
@@ -166,6 +409,22 @@ public class RecordRepository {
     }
 
 
+    //Deltaer som overlapper perioden, eldste først per tjeneste. En delta som ikke er aktiv ble satt inaktiv (updated_at)
+    //da neste delta ble lagret, så deltaen som gjaldt ved periodens start har updated_at etter start.
+    public Map<UUID, List<RecordDeltaEntity>> getRecordDeltasInPeriod(Collection<UUID> serviceIds, ZonedDateTime from, ZonedDateTime to) {
+        Map<UUID, List<RecordDeltaEntity>> result = new HashMap<>();
+        if (serviceIds.isEmpty()) {
+            return result;
+        }
+        recordDeltaTable.whereIn("service_id", serviceIds)
+                .whereExpression("created_at < ?", to)
+                .whereExpression("(active = true or updated_at >= ?)", from)
+                .orderBy("created_at")
+                .list(RecordRepository::toRecordDelta)
+                .forEach(delta -> result.computeIfAbsent(delta.getServiceId(), id -> new ArrayList<>()).add(delta));
+        return result;
+    }
+
     private static RecordDeltaEntity toRecordDelta(DatabaseRow row) throws SQLException {
         return new RecordDeltaEntity()
                 .setId(row.getUUID("id"))
@@ -174,6 +433,7 @@ public class RecordRepository {
                 .setActive(row.getBoolean("active"))
                 .setStatus(ServiceStatus.fromDb(row.getString("status")).orElse(ServiceStatus.ISSUE))
                 .setUpdated_at(row.getZonedDateTime("updated_at"))
+                .setLastAppliedAt(row.getZonedDateTime("last_applied_at"))
                 .setCreated_at(row.getZonedDateTime("created_at"));
     }
 
@@ -183,6 +443,23 @@ public class RecordRepository {
 
     }
 
+    //Sletter maks chunkSize records eldre enn cutoff, og returnerer antall slettede
+    public int deleteRecordsOlderThan(ZonedDateTime cutoff, int chunkSize) {
+        return dbContext.statement(
+                        "delete from service_status where id in (select id from service_status where created_at <= ? limit ?)",
+                        List.of(cutoff, chunkSize))
+                .executeUpdate(dbContext.getThreadConnection());
+    }
+
+    //Som over, men bare records for tjenester av typen
+    public int deleteRecordsOlderThan(ZonedDateTime cutoff, ServiceType type, int chunkSize) {
+        return dbContext.statement(
+                        "delete from service_status where id in (select id from service_status where created_at <= ? " +
+                                "and service_id in (select id from service where type = ?) limit ?)",
+                        List.of(cutoff, type.getDbRepresentation(), chunkSize))
+                .executeUpdate(dbContext.getThreadConnection());
+    }
+
     public void deleteRecordsOlderThan48hours() {
         recordTable.whereExpression("created_at <= ?", ZonedDateTime.now().minusHours(48))
                 .executeDelete();
@@ -0,0 +1,147 @@
+package nav.statusplattform.core.repositories;
+
+import nav.statusplattform.core.exceptionHandling.ExceptionUtil;
+import org.fluentjdbc.DatabaseStatement;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextTable;
+import org.fluentjdbc.DatabaseTableImpl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+//Ordbok for tekster på records (description, logglink). Tekstene slås opp på SHA-256 av innholdet.
+//Tekster som ingen records bruker lenger slettes av RecordRetentionJob.
+public class RecordTextRepository {
+    private static final int MAX_CACHED_TEXTS = 10_000;
+    //Kortere enn korteste retention for records (RetentionPolicy.MIN_RAW): en id i cachen er brukt av en record
+    //som ble lagret etter at cachen sist ble tømt, og teksten er derfor ikke slettet.
+    private static final Duration MAX_CACHE_AGE = Duration.ofHours(1);
+    //Hash - id, bare for tekster i transaksjoner som er committet
+    private static final Map<String, Long> idsByHash = new ConcurrentHashMap<>();
+    private static volatile Instant cacheClearedAt = Instant.now();
+    //Id - tekst. Id-er gjenbrukes ikke, så en tekst kan caches så lenge records bruker den.
+    private static final Map<Long, String> textsById = new ConcurrentHashMap<>();
+
+    private final DbContext dbContext;
+    private final DbContextTable recordTextTable;
+
+    public RecordTextRepository(DbContext dbContext) {
+        this.dbContext = dbContext;
+        this.recordTextTable = dbContext.table(new DatabaseTableImpl("record_text"));
+    }
+
+    //Returnerer id for hver tekst, og lagrer tekster som ikke finnes fra før
+    public Map<String, Long> getOrCreateIds(Collection<String> texts) {
+        if (cacheClearedAt.plus(MAX_CACHE_AGE).isBefore(Instant.now())) {
+            clearCache();
+        }
+        Map<String, Long> result = new HashMap<>();
+        Map<String, String> missingByHash = new HashMap<>();
+        for (String text : texts) {
+            if (text == null || result.containsKey(text)) {
+                continue;
+            }
+            String hash = hash(text);
+            Long id = idsByHash.get(hash);
+            if (id != null) {
+                result.put(text, id);
+            } else {
+                missingByHash.put(hash, text);
+            }
+        }
+        if (missingByHash.isEmpty()) {
+            return result;
+        }
+
+        List<Map.Entry<String, String>> missing = new ArrayList<>(missingByHash.entrySet());
+        try (PreparedStatement statement = dbContext.getThreadConnection()
+                .prepareStatement("insert into record_text (hash, content) values (?, ?) on conflict do nothing")) {
+            DatabaseStatement.addBatch(statement, missing, List.<Function<Map.Entry<String, String>, ?>>of(Map.Entry::getKey, Map.Entry::getValue));
+            statement.executeBatch();
+        } catch (SQLException e) {
+            throw ExceptionUtil.soften(e);
+        }
+        Map<String, Long> newIds = new HashMap<>();
+        Map<Long, String> newTexts = new HashMap<>();
+        recordTextTable.whereIn("hash", missingByHash.keySet())
+                .forEach(row -> {
+                    String hash = row.getString("hash");
+                    long id = row.getLong("id");
+                    newIds.put(hash, id);
+                    newTexts.put(id, missingByHash.get(hash));
+                    result.put(missingByHash.get(hash), id);
+                });
+        //Ruller transaksjonen tilbake, finnes kanskje ikke radene
+        AfterCommit.onCommit(() -> {
+            if (idsByHash.size() + newIds.size() > MAX_CACHED_TEXTS) {
+                clearCache();
+            }
+            idsByHash.putAll(newIds);
+            cacheTexts(newTexts);
+        });
+        return result;
+    }
+
+    //Returnerer teksten for hver id som finnes
+    public Map<Long, String> getTexts(Collection<Long> ids) {
+        Map<Long, String> result = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        for (Long id : ids) {
+            String text = textsById.get(id);
+            if (text != null) {
+                result.put(id, text);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        Map<Long, String> loaded = new HashMap<>();
+        recordTextTable.whereIn("id", missing)
+                .forEach(row -> loaded.put(row.getLong("id"), row.getString("content")));
+        cacheTexts(loaded);
+        result.putAll(loaded);
+        return result;
+    }
+
+    private static void cacheTexts(Map<Long, String> texts) {
+        if (textsById.size() + texts.size() > MAX_CACHED_TEXTS) {
+            textsById.clear();
+        }
+        textsById.putAll(texts);
+    }
+
+    //Sletter opptil chunkSize tekster som ingen records bruker, og returnerer antall slettede
+    public int deleteUnreferenced(int chunkSize) {
+        return dbContext.statement(
+                        "delete from record_text where id in (select t.id from record_text t " +
+                                "where not exists (select 1 from service_status s where s.description_id = t.id) " +
+                                "and not exists (select 1 from service_status s where s.logglink_id = t.id) limit ?)",
+                        List.of(chunkSize))
+                .executeUpdate(dbContext.getThreadConnection());
+    }
+
+    public static void clearCache() {
+        idsByHash.clear();
+        textsById.clear();
+        cacheClearedAt = Instant.now();
+    }
+
+    static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package nav.statusplattform.core.repositories;
+
+import nav.statusplattform.core.entities.ResponseTimeHistogramEntity;
+import nav.statusplattform.core.enums.ServiceType;
+import nav.statusplattform.core.exceptionHandling.ExceptionUtil;
+import nav.statusplattform.core.records.ResponseTimeHistogram;
+import org.fluentjdbc.DatabaseRow;
+import org.fluentjdbc.DatabaseTableImpl;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextTable;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+public class ResponseTimeHistogramRepository {
+
+    private final DbContext dbContext;
+    private final DbContextTable histogramTable;
+    private final DbContextTable dailyTable;
+
+    public ResponseTimeHistogramRepository(DbContext dbContext) {
+        this.dbContext = dbContext;
+        this.histogramTable = dbContext.table(new DatabaseTableImpl("response_time_histogram"));
+        this.dailyTable = dbContext.table(new DatabaseTableImpl("daily_status_aggregation_service"));
+    }
+
+    //Nye rader for samme tjeneste og time legges til, og slås sammen ved oppslag
+    public void saveAll(List<ResponseTimeHistogramEntity> histograms) {
+        if (histograms.isEmpty()) {
+            return;
+        }
+        histogramTable.bulkInsert(histograms)
+                .setField("id", histogram -> UUID.randomUUID())
+                .setField("service_id", ResponseTimeHistogramEntity::getService_id)
+                .setField("hour_start", ResponseTimeHistogramEntity::getHour)
+                .setField("count", histogram -> histogram.getHistogram().getCount())
+                .setField("max_response_time", histogram -> histogram.getHistogram().getMax())
+                .setField("buckets", histogram -> histogram.getHistogram().encodeBuckets())
+                .execute();
+    }
+
+    //Timene som starter fra og med from og før to, eldste først. Rader for samme time er slått sammen.
+    public List<ResponseTimeHistogramEntity> getHourlyHistograms(UUID serviceId, ZonedDateTime from, ZonedDateTime to) {
+        Map<Instant, ResponseTimeHistogramEntity> result = new LinkedHashMap<>();
+        histogramTable.where("service_id", serviceId)
+                .whereExpression("hour_start >= ?", from)
+                .whereExpression("hour_start < ?", to)
+                .orderBy("hour_start")
+                .list(ResponseTimeHistogramRepository::toHistogram)
+                .forEach(hour -> result.merge(hour.getHour().toInstant(), hour, (existing, other) -> {
+                    existing.getHistogram().merge(other.getHistogram());
+                    return existing;
+                }));
+        return new ArrayList<>(result.values());
+    }
+
+    //Alle timene i perioden slått sammen til ett histogram
+    public ResponseTimeHistogram getHistogram(UUID serviceId, ZonedDateTime from, ZonedDateTime to) {
+        ResponseTimeHistogram result = new ResponseTimeHistogram();
+        getHourlyHistograms(serviceId, from, to).forEach(hour -> result.merge(hour.getHistogram()));
+        return result;
+    }
+
+    //Timene fra og med from og før to slått sammen per tjeneste
+    public Map<UUID, ResponseTimeHistogram> getHistogramsByService(ZonedDateTime from, ZonedDateTime to) {
+        Map<UUID, ResponseTimeHistogram> result = new HashMap<>();
+        histogramTable.whereExpression("hour_start >= ?", from)
+                .whereExpression("hour_start < ?", to)
+                .list(ResponseTimeHistogramRepository::toHistogram)
+                .forEach(hour -> result.merge(hour.getService_id(), hour.getHistogram(), (existing, other) -> {
+                    existing.merge(other);
+                    return existing;
+                }));
+        return result;
+    }
+
+    //Eldste time som fortsatt finnes for tjenesten. Timer før denne er slettet, og finnes bare per døgn.
+    public Optional<ZonedDateTime> getOldestHour(UUID serviceId) {
+        return dbContext.statement("select hour_start from response_time_histogram where service_id = ? order by hour_start limit 1",
+                        List.of(serviceId))
+                .singleObject(row -> row.getZonedDateTime("hour_start"));
+    }
+
+    //Døgnene from til og med to som har responstider, eldste først
+    public Map<LocalDate, ResponseTimeHistogram> getDailyHistograms(UUID serviceId, LocalDate from, LocalDate to) {
+        Map<LocalDate, ResponseTimeHistogram> result = new LinkedHashMap<>();
+        dailyTable.where("service_id", serviceId)
+                .whereExpression("aggregation_date >= ?", from)
+                .whereExpression("aggregation_date <= ?", to)
+                .whereExpression("response_time_buckets is not null")
+                .orderBy("aggregation_date")
+                .forEach(row -> result.put(row.getLocalDate("aggregation_date"),
+                        ResponseTimeHistogram.decode(row.getString("response_time_buckets"), row.getInt("max_response_time"))));
+        return result;
+    }
+
+    //Sletter timene som startet før cutoff for tjenester av typen, og returnerer antall slettede
+    public int deleteOlderThan(ZonedDateTime cutoff, ServiceType type) {
+        return dbContext.statement("delete from response_time_histogram where hour_start < ? " +
+                                "and service_id in (select id from service where type = ?)",
+                        List.of(cutoff, type.getDbRepresentation()))
+                .executeUpdate(dbContext.getThreadConnection());
+    }
+
+    static ResponseTimeHistogramEntity toHistogram(DatabaseRow row) {
+        try {
+            return new ResponseTimeHistogramEntity()
+                    .setService_id(row.getUUID("service_id"))
+                    .setHour(row.getZonedDateTime("hour_start"))
+                    .setHistogram(ResponseTimeHistogram.decode(row.getString("buckets"), row.getInt("max_response_time")));
+        } catch (SQLException e) {
+            throw ExceptionUtil.soften(e);
+        }
+    }
+}
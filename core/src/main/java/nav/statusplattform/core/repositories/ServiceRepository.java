@@ -1,9 +1,12 @@
 package nav.statusplattform.core.repositories;
 
+import nav.statusplattform.core.entities.DailyStatusAggregationForServiceEntity;
 import nav.statusplattform.core.entities.MaintenanceEntity;
 import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
 import nav.statusplattform.core.enums.ServiceType;
 import nav.statusplattform.core.exceptionHandling.ExceptionUtil;
+import nav.statusplattform.core.records.ResponseTimeHistogram;
 import org.actioncontroller.HttpRequestException;
 import org.fluentjdbc.DatabaseRow;
 import org.fluentjdbc.DbContext;
@@ -11,7 +14,12 @@ import org.fluentjdbc.DbContextTable;
 import org.fluentjdbc.DbContextTableAlias;
 
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,16 +29,23 @@ import java.util.stream.Collectors;
 
 public class ServiceRepository {
 
+    //Timer og døgn i opprullingen regnes i samme sone, så et døgn alltid består av hele timer
+    public static final ZoneId AGGREGATION_ZONE = ZoneOffset.UTC;
+
     private final DbContextTable serviceTable;
     private final DbContextTable service_serviceTable;
     private final DbContextTable service_maintenanceTable;
     private final DbContextTable serviceHistoryTable;
+    private final DbContextTable hourlyStatusTable;
     private final DbContextTable service_openingHoursTable;
     private final DbContextTable serviceOHgroupTable;
+    private final DbContext dbContext;
 
 
     public ServiceRepository(DbContext dbContext) {
+        this.dbContext = dbContext;
         serviceHistoryTable = dbContext.table("daily_status_aggregation_service");
+        hourlyStatusTable = dbContext.table("hourly_status_aggregation_service");
         serviceTable = dbContext.table("service");
         service_serviceTable = dbContext.table("service_service");
         service_maintenanceTable = dbContext.table("service_maintenance");
@@ -231,6 +246,24 @@ public class ServiceRepository {
                 .stream(ServiceRepository::toService).collect(Collectors.toList());
     }
 
+    //Tjenestene som er avhengig av komponentene, i en spørring. Komponent id - tjenester
+    public Map<UUID, List<ServiceEntity>> getServicesDependantOnComponents(Collection<UUID> component_ids) {
+        Map<UUID, List<ServiceEntity>> result = new HashMap<>();
+        if (component_ids.isEmpty()) {
+            return result;
+        }
+        DbContextTableAlias serviceAlias = serviceTable.alias("service");
+        DbContextTableAlias s2k = service_serviceTable.alias("s2k");
+        serviceAlias
+                .leftJoin(serviceAlias.column("id"), s2k.column("service1_id"))
+                .orderBy(serviceAlias.column("name"))
+                .whereIn("s2k.service2_id", component_ids)
+                .forEach(row -> result
+                        .computeIfAbsent(row.table(s2k).getUUID("service2_id"), ignored -> new ArrayList<>())
+                        .add(toService(row.table(serviceAlias))));
+        return result;
+    }
+
     public List<ServiceEntity> retrieveServicesWithPollingGcp() {
         return serviceTable.query().whereExpression("polling_url is not null")
                 .where("polling_on_prem", false)
@@ -287,4 +320,113 @@ public class ServiceRepository {
             throw ExceptionUtil.soften(e);
         }
     }
+
+    //Teller records per status for hver tjeneste i timen som starter hourStart, og erstatter timen i
+    //hourly_status_aggregation_service. Kan kjøres på nytt så lenge records for hele timen fortsatt finnes.
+    public int aggregateHourlyStatus(ZonedDateTime hourStart) {
+        List<DailyStatusAggregationForServiceEntity> counts = countStatuses(
+                "select service_id, " +
+                        "sum(case when status = ? then 1 else 0 end) as number_of_status_ok, " +
+                        "sum(case when status = ? then 1 else 0 end) as number_of_status_issue, " +
+                        "sum(case when status = ? then 1 else 0 end) as number_of_status_down " +
+                        "from service_status where created_at >= ? and created_at < ? group by service_id",
+                List.of(ServiceStatus.OK.getDbRepresentation(), ServiceStatus.ISSUE.getDbRepresentation(),
+                        ServiceStatus.DOWN.getDbRepresentation(), hourStart, hourStart.plusHours(1)));
+        hourlyStatusTable.where("hour_start", hourStart).executeDelete();
+        hourlyStatusTable.bulkInsert(counts)
+                .setField("id", count -> UUID.randomUUID())
+                .setField("service_id", DailyStatusAggregationForServiceEntity::getService_id)
+                .setField("hour_start", count -> hourStart)
+                .setField("number_of_status_ok", DailyStatusAggregationForServiceEntity::getNumber_of_status_ok)
+                .setField("number_of_status_issue", DailyStatusAggregationForServiceEntity::getNumber_of_status_issue)
+                .setField("number_of_status_down", DailyStatusAggregationForServiceEntity::getNumber_of_status_down)
+                .execute();
+        return counts.size();
+    }
+
+    //Ruller opp timene i døgnet i AGGREGATION_ZONE (status fra hourly_status_aggregation_service og responstid fra response_time_histogram)
+    //og erstatter døgnet for tjenestene som har timer. Tjenester uten timer i døgnet beholder det som står der, så døgn
+    //aggregert før timenivået fantes blir ikke overskrevet. Kan kjøres på nytt så lenge timene for hele døgnet finnes.
+    public int aggregateDailyStatus(LocalDate day) {
+        ZonedDateTime start = day.atStartOfDay(AGGREGATION_ZONE);
+        ZonedDateTime end = day.plusDays(1).atStartOfDay(AGGREGATION_ZONE);
+        Map<UUID, ResponseTimeHistogram> responseTimes = new ResponseTimeHistogramRepository(dbContext).getHistogramsByService(start, end);
+        List<DailyStatusAggregationForServiceEntity> aggregations = countStatuses(
+                        "select service_id, " +
+                                "sum(number_of_status_ok) as number_of_status_ok, " +
+                                "sum(number_of_status_issue) as number_of_status_issue, " +
+                                "sum(number_of_status_down) as number_of_status_down " +
+                                "from hourly_status_aggregation_service where hour_start >= ? and hour_start < ? group by service_id",
+                        List.of(start, end));
+        aggregations.forEach(aggregation -> aggregation
+                .setId(UUID.randomUUID())
+                .setAggregation_date(day)
+                .setResponseTimeHistogram(responseTimes.get(aggregation.getService_id())));
+        dbContext.statement("delete from daily_status_aggregation_service where aggregation_date = ? and service_id in " +
+                        "(select service_id from hourly_status_aggregation_service where hour_start >= ? and hour_start < ?)",
+                        List.of(day, start, end))
+                .executeUpdate(dbContext.getThreadConnection());
+        serviceHistoryTable.bulkInsert(aggregations)
+                .setField("id", DailyStatusAggregationForServiceEntity::getId)
+                .setField("service_id", DailyStatusAggregationForServiceEntity::getService_id)
+                .setField("aggregation_date", DailyStatusAggregationForServiceEntity::getAggregation_date)
+                .setField("number_of_status_ok", DailyStatusAggregationForServiceEntity::getNumber_of_status_ok)
+                .setField("number_of_status_issue", DailyStatusAggregationForServiceEntity::getNumber_of_status_issue)
+                .setField("number_of_status_down", DailyStatusAggregationForServiceEntity::getNumber_of_status_down)
+                .setField("response_time_count", aggregation -> Optional.ofNullable(aggregation.getResponseTimeHistogram())
+                        .map(ResponseTimeHistogram::getCount).orElse(null))
+                .setField("max_response_time", aggregation -> Optional.ofNullable(aggregation.getResponseTimeHistogram())
+                        .map(ResponseTimeHistogram::getMax).orElse(null))
+                .setField("response_time_buckets", aggregation -> Optional.ofNullable(aggregation.getResponseTimeHistogram())
+                        .map(ResponseTimeHistogram::encodeBuckets).orElse(null))
+                .execute();
+        return aggregations.size();
+    }
+
+    private List<DailyStatusAggregationForServiceEntity> countStatuses(String query, List<Object> parameters) {
+        return dbContext.statement(query, parameters)
+                .list(row -> new DailyStatusAggregationForServiceEntity()
+                        .setService_id(row.getUUID("service_id"))
+                        .setNumber_of_status_ok(row.getInt("number_of_status_ok"))
+                        .setNumber_of_status_issue(row.getInt("number_of_status_issue"))
+                        .setNumber_of_status_down(row.getInt("number_of_status_down")));
+    }
+
+    public Optional<ZonedDateTime> getLatestHourlyStatus() {
+        return dbContext.statement("select hour_start from hourly_status_aggregation_service order by hour_start desc limit 1", List.of())
+                .singleObject(row -> row.getZonedDateTime("hour_start"));
+    }
+
+    public Optional<LocalDate> getLatestDailyStatus() {
+        return dbContext.statement("select aggregation_date from daily_status_aggregation_service order by aggregation_date desc limit 1", List.of())
+                .singleObject(row -> row.getLocalDate("aggregation_date"));
+    }
+
+    //Sletter timene som startet før cutoff for tjenester av typen, og returnerer antall slettede
+    public int deleteHourlyStatusOlderThan(ZonedDateTime cutoff, ServiceType type) {
+        return dbContext.statement("delete from hourly_status_aggregation_service where hour_start < ? " +
+                                "and service_id in (select id from service where type = ?)",
+                        List.of(cutoff, type.getDbRepresentation()))
+                .executeUpdate(dbContext.getThreadConnection());
+    }
+
+    //Aggregert historikk for tjenesten fra og med from, eldste først
+    public List<DailyStatusAggregationForServiceEntity> getServiceHistory(UUID serviceId, LocalDate from) {
+        return serviceHistoryTable.where("service_id", serviceId)
+                .whereExpression("aggregation_date >= ?", from)
+                .orderBy("aggregation_date")
+                .list(row -> new DailyStatusAggregationForServiceEntity()
+                        .setId(row.getUUID("id"))
+                        .setService_id(row.getUUID("service_id"))
+                        .setAggregation_date(row.getLocalDate("aggregation_date"))
+                        .setNumber_of_status_ok(row.getInt("number_of_status_ok"))
+                        .setNumber_of_status_issue(row.getInt("number_of_status_issue"))
+                        .setNumber_of_status_down(row.getInt("number_of_status_down"))
+                        .setResponseTimeHistogram(toResponseTimeHistogram(row)));
+    }
+
+    private static ResponseTimeHistogram toResponseTimeHistogram(DatabaseRow row) throws SQLException {
+        String buckets = row.getString("response_time_buckets");
+        return buckets == null ? null : ResponseTimeHistogram.decode(buckets, row.getInt("max_response_time"));
+    }
 }
@@ -191,4 +191,12 @@ public class SubAreaRepository {
                 .where("sa2s.service_id",service_id)
                 .stream(SubAreaRepository::toSubArea).collect(Collectors.toList());
     }
+
+    //Underområde id - tjenester i underområdet
+    public Map<UUID, List<UUID>> getServiceIdsOnSubAreas() {
+        return subAreaServiceTable.unordered()
+                .list(row -> Map.entry(row.getUUID("sub_area_id"), row.getUUID("service_id")))
+                .stream()
+                .collect(Collectors.groupingBy(Map.Entry::getKey, Collectors.mapping(Map.Entry::getValue, Collectors.toList())));
+    }
 }
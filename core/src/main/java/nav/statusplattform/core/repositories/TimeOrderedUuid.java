@@ -0,0 +1,37 @@
+package nav.statusplattform.core.repositories;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+//UUID versjon 7: 48 bit millisekunder siden epoch, deretter 12 bit teller og 62 bit tilfeldige.
+//Id-er generert etter hverandre sorterer stigende, slik at nye rader havner bakerst i primærnøkkel-indeksen.
+public class TimeOrderedUuid {
+    private static final int MAX_SEQUENCE = 0xFFF;
+
+    private static long lastMillis = -1;
+    private static int sequence = 0;
+
+    public static UUID generate() {
+        long millis;
+        int currentSequence;
+        synchronized (TimeOrderedUuid.class) {
+            millis = Math.max(System.currentTimeMillis(), lastMillis);
+            if (millis == lastMillis) {
+                if (sequence == MAX_SEQUENCE) {
+                    //Telleren er brukt opp i dette millisekundet, låner av neste
+                    millis++;
+                    sequence = 0;
+                } else {
+                    sequence++;
+                }
+            } else {
+                sequence = ThreadLocalRandom.current().nextInt(MAX_SEQUENCE / 2);
+            }
+            lastMillis = millis;
+            currentSequence = sequence;
+        }
+        long mostSignificantBits = (millis << 16) | 0x7000L | currentSequence;
+        long leastSignificantBits = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+}
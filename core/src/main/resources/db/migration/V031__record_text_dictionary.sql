@@ -0,0 +1,16 @@
+-- Tekster som gjentas i service_status (description, logglink) lagres én gang og refereres med id.
+-- Radene endres eller slettes aldri. Eldre records med tekst i description/logglink leses som før.
+CREATE TABLE record_text
+(
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    hash       VARCHAR(64)              NOT NULL,
+    content    VARCHAR(1000)            NOT NULL,
+    created_at timestamp with time zone NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (id),
+    UNIQUE (hash)
+);
+
+ALTER TABLE service_status
+    ADD COLUMN description_id BIGINT NULL;
+ALTER TABLE service_status
+    ADD COLUMN logglink_id BIGINT NULL;
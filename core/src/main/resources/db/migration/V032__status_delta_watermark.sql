@@ -0,0 +1,3 @@
+-- Tidspunktet (fra poller) for siste record som er telt på deltaen. Records eldre enn dette på aktiv delta
+-- lagres bare som historikk, og endrer ikke status.
+ALTER TABLE service_status_delta ADD COLUMN last_applied_at timestamp with time zone NULL;
@@ -0,0 +1,2 @@
+CREATE UNIQUE INDEX idx_daily_status_aggregation_service_day
+    ON daily_status_aggregation_service (service_id, aggregation_date);
@@ -0,0 +1,2 @@
+CREATE INDEX idx_service_status_delta_service_created_at
+    ON service_status_delta (service_id, created_at);
@@ -0,0 +1,16 @@
+-- Histogram over responstid per tjeneste og time. Hver instans skriver egne rader, som slås sammen ved oppslag.
+CREATE TABLE response_time_histogram
+(
+    id                UUID        NOT NULL,
+    service_id        UUID        NOT NULL,
+    hour_start        timestamp with time zone NOT NULL,
+    count             bigint      NOT NULL,
+    max_response_time integer     NOT NULL,
+    buckets           VARCHAR(4000) NOT NULL,
+    created_at        timestamp with time zone NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (id),
+    FOREIGN KEY (service_id) REFERENCES service (id)
+);
+
+CREATE INDEX idx_response_time_histogram_service_hour
+    ON response_time_histogram (service_id, hour_start);
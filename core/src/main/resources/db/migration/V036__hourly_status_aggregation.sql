@@ -0,0 +1,28 @@
+-- Timenivået mellom records og døgnaggregeringen: antall per status per tjeneste og time.
+-- Responstid per time ligger i response_time_histogram.
+CREATE TABLE hourly_status_aggregation_service
+(
+    id                     UUID        NOT NULL,
+    service_id             UUID        NOT NULL,
+    hour_start             timestamp with time zone NOT NULL,
+    number_of_status_ok    INTEGER     NOT NULL,
+    number_of_status_issue INTEGER     NOT NULL,
+    number_of_status_down  INTEGER     NOT NULL,
+    created_at             timestamp with time zone NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (id),
+    FOREIGN KEY (service_id) REFERENCES service (id)
+);
+
+CREATE UNIQUE INDEX idx_hourly_status_aggregation_service_hour
+    ON hourly_status_aggregation_service (service_id, hour_start);
+
+CREATE INDEX idx_hourly_status_aggregation_hour
+    ON hourly_status_aggregation_service (hour_start);
+
+-- Responstid per døgn, slått sammen fra timehistogrammene. Tomt for døgn aggregert før timenivået fantes.
+ALTER TABLE daily_status_aggregation_service ADD COLUMN response_time_count bigint NULL;
+ALTER TABLE daily_status_aggregation_service ADD COLUMN max_response_time integer NULL;
+ALTER TABLE daily_status_aggregation_service ADD COLUMN response_time_buckets VARCHAR(4000) NULL;
+
+CREATE INDEX idx_response_time_histogram_hour
+    ON response_time_histogram (hour_start);
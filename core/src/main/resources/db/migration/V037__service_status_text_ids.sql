@@ -0,0 +1,3 @@
+-- RecordRetentionJob sletter tekster i record_text som ingen records bruker lenger
+CREATE INDEX idx_service_status_description_id ON service_status (description_id);
+CREATE INDEX idx_service_status_logglink_id ON service_status (logglink_id);
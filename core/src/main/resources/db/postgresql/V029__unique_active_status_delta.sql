@@ -0,0 +1,11 @@
+-- Kun én aktiv delta per tjeneste. Partial index støttes ikke av H2, derfor ligger denne migreringen kun i db/postgresql.
+UPDATE service_status_delta old
+SET active = false
+WHERE old.active = true
+  AND EXISTS(SELECT 1
+             FROM service_status_delta newer
+             WHERE newer.service_id = old.service_id
+               AND newer.active = true
+               AND (newer.created_at > old.created_at OR (newer.created_at = old.created_at AND newer.id > old.id)));
+
+CREATE UNIQUE INDEX idx_service_status_delta_active ON service_status_delta (service_id) WHERE active = true;
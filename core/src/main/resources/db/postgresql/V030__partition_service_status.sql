@@ -0,0 +1,39 @@
+-- service_status partisjoneres på created_at med én partisjon per døgn (UTC).
+-- Partisjoner opprettes på forhånd og slettes av RecordRetentionJob. Rader utenfor alle partisjoner havner i default.
+ALTER TABLE service_status RENAME TO service_status_unpartitioned;
+ALTER TABLE service_status_unpartitioned RENAME CONSTRAINT service_status_pkey TO service_status_unpartitioned_pkey;
+DROP INDEX idx_service_status_created_at;
+
+CREATE TABLE service_status
+(
+    LIKE service_status_unpartitioned INCLUDING DEFAULTS,
+    PRIMARY KEY (id, created_at),
+    FOREIGN KEY (service_id) REFERENCES service (id)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE service_status_default PARTITION OF service_status DEFAULT;
+
+CREATE INDEX idx_service_status_service_id_created_at ON service_status (service_id, created_at DESC);
+CREATE INDEX idx_service_status_created_at ON service_status (created_at);
+
+DO
+$$
+    DECLARE
+        day DATE := (SELECT coalesce(min(created_at AT TIME ZONE 'UTC'), now() AT TIME ZONE 'UTC')::date
+                     FROM service_status_unpartitioned);
+    BEGIN
+        WHILE day <= (now() AT TIME ZONE 'UTC')::date + 3
+            LOOP
+                EXECUTE format(
+                        'CREATE TABLE service_status_p%s PARTITION OF service_status FOR VALUES FROM (%L) TO (%L)',
+                        to_char(day, 'YYYYMMDD'), day::timestamp AT TIME ZONE 'UTC', (day + 1)::timestamp AT TIME ZONE 'UTC');
+                day := day + 1;
+            END LOOP;
+    END
+$$;
+
+INSERT INTO service_status
+SELECT *
+FROM service_status_unpartitioned;
+
+DROP TABLE service_status_unpartitioned;
@@ -0,0 +1,55 @@
+package nav.statusplattform.core.cache;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+class DashboardResponseCacheTest {
+
+    @BeforeEach
+    void clearCache() {
+        DashboardResponseCache.clear();
+    }
+
+    @Test
+    void invalidateServicesRemovesDashboardsWithService() {
+        //Arrange
+        UUID dashboard = UUID.randomUUID();
+        UUID otherDashboard = UUID.randomUUID();
+        UUID service = UUID.randomUUID();
+        UUID otherService = UUID.randomUUID();
+        DashboardResponseCache.put(dashboard, body("a"), Set.of(service), DashboardResponseCache.getGeneration(), Duration.ofMillis(10));
+        DashboardResponseCache.put(otherDashboard, body("b"), Set.of(otherService), DashboardResponseCache.getGeneration(), Duration.ofMillis(30));
+        //Act
+        DashboardResponseCache.invalidateServices(List.of(service));
+        //Assert
+        Assertions.assertThat(DashboardResponseCache.get(dashboard)).isEmpty();
+        Assertions.assertThat(DashboardResponseCache.get(otherDashboard)).hasValueSatisfying(cached ->
+                Assertions.assertThat(cached).isEqualTo(body("b")));
+        Assertions.assertThat(DashboardResponseCache.getHits()).isEqualTo(1);
+        Assertions.assertThat(DashboardResponseCache.getMisses()).isEqualTo(1);
+        Assertions.assertThat(DashboardResponseCache.getAverageRebuildTime()).isEqualTo(Duration.ofMillis(20));
+    }
+
+    @Test
+    void putIsSkippedWhenInvalidatedDuringBuild() {
+        //Arrange
+        UUID dashboard = UUID.randomUUID();
+        long generation = DashboardResponseCache.getGeneration();
+        //Act
+        DashboardResponseCache.invalidateAll();
+        DashboardResponseCache.put(dashboard, body("stale"), Set.of(), generation, Duration.ofMillis(10));
+        //Assert
+        Assertions.assertThat(DashboardResponseCache.get(dashboard)).isEmpty();
+    }
+
+    private static byte[] body(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
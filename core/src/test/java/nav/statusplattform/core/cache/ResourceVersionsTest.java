@@ -0,0 +1,90 @@
+package nav.statusplattform.core.cache;
+
+import nav.statusplattform.core.entities.AreaEntity;
+import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.records.StatusTree;
+import nav.statusplattform.core.repositories.AreaRepository;
+import nav.statusplattform.core.repositories.DashboardRepository;
+import nav.statusplattform.core.repositories.SampleData;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import nav.statusplattform.core.repositories.TestDataSource;
+import nav.statusplattform.core.repositories.TestUtil;
+import org.assertj.core.api.Assertions;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.UUID;
+
+class ResourceVersionsTest {
+
+    private final DataSource dataSource = TestDataSource.create();
+
+    private final DbContext dbContext = new DbContext();
+    private DbContextConnection connection;
+
+    private final AreaRepository areaRepository = new AreaRepository(dbContext);
+    private final DashboardRepository dashboardRepository = new DashboardRepository(dbContext);
+    private final ServiceRepository serviceRepository = new ServiceRepository(dbContext);
+
+    @BeforeEach
+    void startConnection() {
+        connection = dbContext.startConnection(dataSource);
+        TestUtil.clearAllTableData(dbContext);
+    }
+
+    @AfterEach
+    void endConnection() {
+        connection.close();
+    }
+
+    @Test
+    void statusChangeChangesTagOfDashboardsWithTheService() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        AreaEntity area = SampleData.getRandomizedAreaEntity();
+        area.setId(areaRepository.save(area));
+        areaRepository.addServiceToArea(area.getId(), service.getId());
+        UUID dashboardWithService = dashboardRepository.save("with service");
+        dashboardRepository.settAreasOnDashboard(dashboardWithService, area.getId());
+        UUID otherDashboard = dashboardRepository.save("other");
+        StatusTree.ensureBuilt(dbContext);
+
+        String withServiceBefore = versions(ResourceVersions.getDashboardTag(dashboardWithService));
+        String otherBefore = versions(ResourceVersions.getDashboardTag(otherDashboard));
+        String areasBefore = versions(ResourceVersions.getAreasTag());
+        String servicesBefore = versions(ResourceVersions.getServicesTag());
+        //Act
+        ResourceVersions.servicesChanged(List.of(service.getId()));
+        //Assert
+        Assertions.assertThat(versions(ResourceVersions.getDashboardTag(dashboardWithService))).isNotEqualTo(withServiceBefore);
+        Assertions.assertThat(versions(ResourceVersions.getServicesTag())).isNotEqualTo(servicesBefore);
+        Assertions.assertThat(versions(ResourceVersions.getDashboardTag(otherDashboard))).isEqualTo(otherBefore);
+        Assertions.assertThat(versions(ResourceVersions.getAreasTag())).isEqualTo(areasBefore);
+    }
+
+    @Test
+    void catalogChangeChangesAllTags() {
+        //Arrange
+        UUID dashboardId = UUID.randomUUID();
+        String dashboardBefore = versions(ResourceVersions.getDashboardTag(dashboardId));
+        String areasBefore = versions(ResourceVersions.getAreasTag());
+        String opsMessagesBefore = versions(ResourceVersions.getOpsMessagesTag());
+        //Act
+        ResourceVersions.catalogChanged();
+        //Assert
+        Assertions.assertThat(versions(ResourceVersions.getDashboardTag(dashboardId))).isNotEqualTo(dashboardBefore);
+        Assertions.assertThat(versions(ResourceVersions.getAreasTag())).isNotEqualTo(areasBefore);
+        Assertions.assertThat(versions(ResourceVersions.getOpsMessagesTag())).isNotEqualTo(opsMessagesBefore);
+    }
+
+    //Tellerne uten instans og tidsvindu, så testen ikke avhenger av når den kjøres
+    private static String versions(String tag) {
+        return tag.substring(tag.indexOf('-', tag.indexOf('-') + 1));
+    }
+}
@@ -0,0 +1,66 @@
+package nav.statusplattform.core.cache;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentRequestsShareOneComputation() throws Exception {
+        //Arrange
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        //Act
+        Future<String> leader = executor.submit(() -> singleFlight.execute("dashboard", () -> {
+            computations.incrementAndGet();
+            started.countDown();
+            await(release);
+            return "result";
+        }));
+        started.await(5, TimeUnit.SECONDS);
+        Future<String> follower = executor.submit(() -> singleFlight.execute("dashboard", () -> {
+            computations.incrementAndGet();
+            return "other result";
+        }));
+        while (singleFlight.getCoalesced() == 0 && !follower.isDone()) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        //Assert
+        Assertions.assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        Assertions.assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        Assertions.assertThat(computations.get()).isEqualTo(1);
+        Assertions.assertThat(singleFlight.execute("dashboard", () -> "new result")).isEqualTo("new result");
+        executor.shutdown();
+    }
+
+    @Test
+    void exceptionIsNotKept() {
+        //Arrange
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        //Act
+        //Assert
+        Assertions.assertThatThrownBy(() -> singleFlight.execute("dashboard", () -> {
+            throw new IllegalArgumentException("Not found");
+        })).isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThat(singleFlight.execute("dashboard", () -> "result")).isEqualTo("result");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.OpeningHoursGroupEntity;
+import nav.statusplattform.core.entities.OpeningHoursRuleEntity;
+import nav.statusplattform.core.entities.RecordDeltaEntity;
+import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.repositories.OpeningHoursRepository;
+import nav.statusplattform.core.repositories.SampleData;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import nav.statusplattform.core.repositories.TestDataSource;
+import nav.statusplattform.core.repositories.TestUtil;
+import org.assertj.core.api.Assertions;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+class AvailabilityCalculatorTest {
+
+    private static final LocalDate DAY = LocalDate.of(2023, 3, 1);
+
+    private final DataSource dataSource = TestDataSource.create();
+
+    private final DbContext dbContext = new DbContext();
+    private DbContextConnection connection;
+
+    private final ServiceRepository serviceRepository = new ServiceRepository(dbContext);
+    private final OpeningHoursRepository openingHoursRepository = new OpeningHoursRepository(dbContext);
+    private final AvailabilityCalculator availabilityCalculator = new AvailabilityCalculator(dbContext, ZoneOffset.UTC);
+
+    @BeforeEach
+    void startConnection() {
+        connection = dbContext.startConnection(dataSource);
+        TestUtil.clearAllTableData(dbContext);
+    }
+
+    @AfterEach
+    void endConnection() {
+        connection.close();
+    }
+
+    @Test
+    void calculatePeriod() {
+        //Arrange
+        UUID serviceId = UUID.randomUUID();
+        List<RecordDeltaEntity> deltas = List.of(
+                delta(serviceId, ServiceStatus.OK, 0, false),
+                delta(serviceId, ServiceStatus.DOWN, 2, false),
+                delta(serviceId, ServiceStatus.OK, 3, false),
+                delta(serviceId, ServiceStatus.DOWN, 10, false),
+                delta(serviceId, ServiceStatus.ISSUE, 11, true));
+        //Act
+        ServiceAvailability availability = AvailabilityCalculator.calculatePeriod(deltas,
+                at(0).toInstant(), at(24).toInstant(), true);
+        //Assert
+        Assertions.assertThat(availability.getOk()).isEqualTo(Duration.ofHours(9));
+        Assertions.assertThat(availability.getDown()).isEqualTo(Duration.ofHours(2));
+        Assertions.assertThat(availability.getIssue()).isEqualTo(Duration.ofHours(13));
+        Assertions.assertThat(availability.getIncidents()).isEqualTo(2);
+        Assertions.assertThat(availability.getMttr()).contains(Duration.ofHours(1));
+        Assertions.assertThat(availability.getMtbf()).contains(Duration.ofHours(11));
+        Assertions.assertThat(availability.getUptimePercentage()).hasValueSatisfying(uptime ->
+                Assertions.assertThat(uptime).isCloseTo(100.0 * 22 / 24, Assertions.within(0.001)));
+    }
+
+    @Test
+    void outageOverMidnightIsOneIncident() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        saveDeltas(List.of(
+                delta(service.getId(), ServiceStatus.OK, -24, false),
+                delta(service.getId(), ServiceStatus.DOWN, 20, false),
+                delta(service.getId(), ServiceStatus.OK, 28, false),
+                delta(service.getId(), ServiceStatus.OK, 72, true)));
+        //Act
+        ServiceAvailability availability = availabilityCalculator
+                .calculate(List.of(service.getId()), DAY, DAY.plusDays(1), false).get(service.getId());
+        //Assert
+        Assertions.assertThat(availability.getDown()).isEqualTo(Duration.ofHours(8));
+        Assertions.assertThat(availability.getOk()).isEqualTo(Duration.ofHours(40));
+        Assertions.assertThat(availability.getIncidents()).isEqualTo(1);
+        //Bare det andre døgnet: utfallet pågikk da perioden startet
+        ServiceAvailability secondDay = availabilityCalculator
+                .calculate(List.of(service.getId()), DAY.plusDays(1), DAY.plusDays(1), false).get(service.getId());
+        Assertions.assertThat(secondDay.getDown()).isEqualTo(Duration.ofHours(4));
+        Assertions.assertThat(secondDay.getIncidents()).isEqualTo(1);
+    }
+
+    @Test
+    void completedDaysAreCached() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        saveDeltas(List.of(
+                delta(service.getId(), ServiceStatus.DOWN, 0, false),
+                delta(service.getId(), ServiceStatus.OK, 6, true)));
+        Map<UUID, ServiceAvailability> first = availabilityCalculator.calculate(List.of(service.getId()), DAY, DAY, false);
+        dbContext.table("service_status_delta").where("service_id", service.getId()).executeDelete();
+        //Act
+        Map<UUID, ServiceAvailability> second = availabilityCalculator.calculate(List.of(service.getId()), DAY, DAY, false);
+        //Assert
+        Assertions.assertThat(second.get(service.getId()).getDown()).isEqualTo(first.get(service.getId()).getDown())
+                .isEqualTo(Duration.ofHours(6));
+    }
+
+    @Test
+    void onlyOpeningHoursAreCounted() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        UUID ruleId = openingHoursRepository.save(new OpeningHoursRuleEntity(null, "Hverdager", "??.??.???? ? 1-5 07:00-17:00"));
+        UUID groupId = openingHoursRepository.saveGroup(new OpeningHoursGroupEntity().setName("Kontortid").setRules(List.of(ruleId)));
+        openingHoursRepository.setOpeningHoursToService(groupId, service.getId());
+        saveDeltas(List.of(
+                delta(service.getId(), ServiceStatus.DOWN, 0, false),
+                delta(service.getId(), ServiceStatus.OK, 8, false),
+                delta(service.getId(), ServiceStatus.DOWN, 16, false),
+                delta(service.getId(), ServiceStatus.OK, 32, true)));
+        //Act
+        ServiceAvailability availability = availabilityCalculator
+                .calculate(List.of(service.getId()), DAY, DAY, true).get(service.getId());
+        //Assert
+        Assertions.assertThat(availability.getDown()).isEqualTo(Duration.ofHours(2));
+        Assertions.assertThat(availability.getOk()).isEqualTo(Duration.ofHours(8));
+        Assertions.assertThat(availability.getIncidents()).isEqualTo(2);
+    }
+
+    private void saveDeltas(List<RecordDeltaEntity> deltas) {
+        List<RecordDeltaEntity> withUpdatedAt = new ArrayList<>();
+        for (int i = 0; i < deltas.size(); i++) {
+            RecordDeltaEntity delta = deltas.get(i);
+            withUpdatedAt.add(delta.setUpdated_at(i + 1 < deltas.size() ? deltas.get(i + 1).getCreated_at() : delta.getCreated_at()));
+        }
+        dbContext.table("service_status_delta").bulkInsert(withUpdatedAt)
+                .setField("id", RecordDeltaEntity::getId)
+                .setField("service_id", RecordDeltaEntity::getServiceId)
+                .setField("status", delta -> delta.getStatus().getDbRepresentation())
+                .setField("active", RecordDeltaEntity::getActive)
+                .setField("counter", RecordDeltaEntity::getCounter)
+                .setField("created_at", RecordDeltaEntity::getCreated_at)
+                .setField("updated_at", RecordDeltaEntity::getUpdated_at)
+                .execute();
+    }
+
+    private static RecordDeltaEntity delta(UUID serviceId, ServiceStatus status, int hour, boolean active) {
+        return new RecordDeltaEntity()
+                .setId(UUID.randomUUID())
+                .setServiceId(serviceId)
+                .setStatus(status)
+                .setActive(active)
+                .setCounter(1)
+                .setCreated_at(at(hour))
+                .setUpdated_at(at(hour));
+    }
+
+    private static ZonedDateTime at(int hour) {
+        return DAY.atStartOfDay(ZoneOffset.UTC).plusHours(hour);
+    }
+}
@@ -0,0 +1,61 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+class ChartDownsamplerTest {
+
+    private static final ZonedDateTime FROM = ZonedDateTime.parse("2023-03-01T00:00:00Z");
+
+    @Test
+    void keepsFirstLastAndSpikes() {
+        //Arrange
+        ChartDownsampler downsampler = new ChartDownsampler(FROM, FROM.plusSeconds(10_000), 100);
+        //Act
+        for (int second = 0; second < 10_000; second++) {
+            boolean spike = second == 5_050;
+            downsampler.accept(record(second, spike ? ServiceStatus.DOWN : ServiceStatus.OK, spike ? 10_000 : 100 + second % 7));
+        }
+        List<ChartPoint> points = downsampler.finish();
+        //Assert
+        Assertions.assertThat(points).hasSize(100);
+        Assertions.assertThat(points.get(0).getTimestamp()).isEqualTo(FROM);
+        Assertions.assertThat(points.get(99).getTimestamp()).isEqualTo(FROM.plusSeconds(9_999));
+        Assertions.assertThat(points).extracting(ChartPoint::getCount).containsOnly(100);
+        ChartPoint spike = points.get(50);
+        Assertions.assertThat(spike.getResponseTime()).isEqualTo(10_000);
+        Assertions.assertThat(spike.getTimestamp()).isEqualTo(FROM.plusSeconds(5_050));
+        Assertions.assertThat(spike.getStatus()).isEqualTo(ServiceStatus.DOWN);
+        Assertions.assertThat(points).filteredOn(point -> point.getStatus() == ServiceStatus.DOWN).hasSize(1);
+    }
+
+    @Test
+    void emptyBucketsAreSkipped() {
+        //Arrange
+        ChartDownsampler downsampler = new ChartDownsampler(FROM, FROM.plusSeconds(100), 10);
+        //Act
+        downsampler.accept(record(1, ServiceStatus.OK, 100));
+        downsampler.accept(record(2, ServiceStatus.ISSUE, null));
+        downsampler.accept(record(55, ServiceStatus.UNKNOWN, null));
+        downsampler.accept(record(99, ServiceStatus.OK, 300));
+        List<ChartPoint> points = downsampler.finish();
+        //Assert
+        Assertions.assertThat(points).extracting(ChartPoint::getStatus)
+                .containsExactly(ServiceStatus.ISSUE, ServiceStatus.UNKNOWN, ServiceStatus.OK);
+        Assertions.assertThat(points).extracting(ChartPoint::getResponseTime).containsExactly(100, null, 300);
+        Assertions.assertThat(points.get(1).getTimestamp()).isEqualTo(FROM.plusSeconds(55));
+        Assertions.assertThat(new ChartDownsampler(FROM, FROM.plusSeconds(100), 10).finish()).isEmpty();
+    }
+
+    private static RecordEntity record(int second, ServiceStatus status, Integer responseTime) {
+        return new RecordEntity()
+                .setCreated_at(FROM.plusSeconds(second))
+                .setStatus(status)
+                .setResponsetime(responseTime);
+    }
+}
@@ -0,0 +1,94 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.RecordDeltaEntity;
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.repositories.RecordRepository;
+import nav.statusplattform.core.repositories.SampleData;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import nav.statusplattform.core.repositories.TestDataSource;
+import nav.statusplattform.core.repositories.TestUtil;
+import org.assertj.core.api.Assertions;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+class LatestStatusCacheTest {
+
+    private final DataSource dataSource = TestDataSource.create();
+
+    private final DbContext dbContext = new DbContext();
+    private DbContextConnection connection;
+
+    private final RecordRepository recordRepository = new RecordRepository(dbContext);
+    private final ServiceRepository serviceRepository = new ServiceRepository(dbContext);
+
+    @BeforeEach
+    void startConnection() {
+        connection = dbContext.startConnection(dataSource);
+        TestUtil.clearAllTableData(dbContext);
+    }
+
+    @AfterEach
+    void endConnection() {
+        connection.close();
+    }
+
+    @Test
+    void getLoadsLatestRecordOnce() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        RecordEntity record = SampleData.getRandomizedRecordEntityForService(service).setStatus(ServiceStatus.OK);
+        record.setId(recordRepository.save(record));
+        //Act
+        RecordEntity loaded = LatestStatusCache.get(service.getId(), recordRepository).orElseThrow();
+        recordRepository.deleteRecords(List.of(record));
+        RecordEntity cached = LatestStatusCache.get(service.getId(), recordRepository).orElseThrow();
+        //Assert
+        Assertions.assertThat(loaded.getId()).isEqualTo(record.getId());
+        Assertions.assertThat(cached.getId()).isEqualTo(record.getId());
+    }
+
+    @Test
+    void getFallsBackToActiveDelta() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        UUID serviceWithoutStatus = UUID.randomUUID();
+        recordRepository.saveNewStatusDiffs(List.of(new RecordDeltaEntity()
+                .setId(UUID.randomUUID())
+                .setServiceId(service.getId())
+                .setStatus(ServiceStatus.DOWN)
+                .setActive(true)
+                .setCounter(1)));
+        //Act
+        RecordEntity fromDelta = LatestStatusCache.get(service.getId(), recordRepository).orElseThrow();
+        //Assert
+        Assertions.assertThat(fromDelta.getStatus()).isEqualTo(ServiceStatus.DOWN);
+        Assertions.assertThat(LatestStatusCache.get(serviceWithoutStatus, recordRepository)).isEmpty();
+    }
+
+    @Test
+    void updateKeepsNewestRecord() {
+        //Arrange
+        UUID serviceId = UUID.randomUUID();
+        ZonedDateTime now = ZonedDateTime.now();
+        RecordEntity newest = new RecordEntity().setId(UUID.randomUUID()).setServiceId(serviceId).setStatus(ServiceStatus.OK).setCreated_at(now);
+        RecordEntity older = new RecordEntity().setId(UUID.randomUUID()).setServiceId(serviceId).setStatus(ServiceStatus.DOWN).setCreated_at(now.minusMinutes(1));
+        RecordEntity late = new RecordEntity().setId(UUID.randomUUID()).setServiceId(serviceId).setStatus(ServiceStatus.ISSUE).setCreated_at(now.minusMinutes(2));
+        //Act
+        LatestStatusCache.update(List.of(newest, older));
+        LatestStatusCache.update(List.of(late));
+        //Assert
+        Assertions.assertThat(LatestStatusCache.get(serviceId, recordRepository).orElseThrow().getId()).isEqualTo(newest.getId());
+    }
+}
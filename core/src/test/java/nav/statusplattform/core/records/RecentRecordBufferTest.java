@@ -0,0 +1,142 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.repositories.RecordRepository;
+import nav.statusplattform.core.repositories.SampleData;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import nav.statusplattform.core.repositories.TestDataSource;
+import nav.statusplattform.core.repositories.TestUtil;
+import org.assertj.core.api.Assertions;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+class RecentRecordBufferTest {
+
+    private final DataSource dataSource = TestDataSource.create();
+
+    private final DbContext dbContext = new DbContext();
+    private DbContextConnection connection;
+
+    private final RecordRepository recordRepository = new RecordRepository(dbContext);
+    private final ServiceRepository serviceRepository = new ServiceRepository(dbContext);
+
+    @BeforeEach
+    void startConnection() {
+        connection = dbContext.startConnection(dataSource);
+        TestUtil.clearAllTableData(dbContext);
+    }
+
+    @AfterEach
+    void endConnection() {
+        connection.close();
+    }
+
+    @Test
+    void getRecordHistoryLoadsOnceAndAddsNewRecords() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        ZonedDateTime now = ZonedDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        RecordEntity saved = SampleData.getRandomizedRecordEntityForService(service).setCreated_at(now.minusMinutes(2));
+        saved.setId(RecordRepository.saveRecordBackInTime(saved, dbContext));
+        RecordEntity newest = recordAt(service.getId(), now, ServiceStatus.DOWN).setResponsetime(null);
+        RecordEntity late = recordAt(service.getId(), now.minusMinutes(1), ServiceStatus.OK);
+        //Act
+        List<RecordEntity> loaded = RecentRecordBuffer.getRecordHistory(service.getId(), 10, recordRepository);
+        RecentRecordBuffer.add(List.of(newest, late));
+        List<RecordEntity> history = RecentRecordBuffer.getRecordHistory(service.getId(), 10, recordRepository);
+        //Assert
+        Assertions.assertThat(loaded).containsExactly(saved);
+        Assertions.assertThat(history).extracting(RecordEntity::getId)
+                .containsExactly(newest.getId(), late.getId(), saved.getId());
+        Assertions.assertThat(history.get(0).getResponsetime()).isNull();
+        Assertions.assertThat(history.get(0).getCreated_at().toInstant()).isEqualTo(now.toInstant());
+    }
+
+    @Test
+    void keepsNewestRecordsWhenFull() {
+        //Arrange
+        UUID serviceId = UUID.randomUUID();
+        ZonedDateTime now = ZonedDateTime.now();
+        List<RecordEntity> records = new ArrayList<>();
+        for (int i = RecentRecordBuffer.CAPACITY + 10; i > 0; i--) {
+            records.add(recordAt(serviceId, now.minusSeconds(i), ServiceStatus.OK));
+        }
+        RecentRecordBuffer.loadAll(List.of(serviceId), recordRepository);
+        //Act
+        RecentRecordBuffer.add(records);
+        RecentRecordBuffer.add(List.of(recordAt(serviceId, now.minusDays(1), ServiceStatus.DOWN)));
+        List<RecordEntity> history = RecentRecordBuffer.getRecordHistory(serviceId, RecentRecordBuffer.CAPACITY, recordRepository);
+        //Assert
+        Assertions.assertThat(history).hasSize(RecentRecordBuffer.CAPACITY);
+        Assertions.assertThat(history.get(0).getId()).isEqualTo(records.get(records.size() - 1).getId());
+        Assertions.assertThat(history.get(history.size() - 1).getId()).isEqualTo(records.get(10).getId());
+    }
+
+    @Test
+    void loadAllReadsHistoryPerService() {
+        //Arrange
+        List<ServiceEntity> services = SampleData.getNonEmptyListOfServiceEntity(2);
+        services.forEach(service -> service.setId(serviceRepository.save(service)));
+        ZonedDateTime now = ZonedDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        services.forEach(service -> {
+            for (int i = 1; i <= 3; i++) {
+                RecordRepository.saveRecordBackInTime(SampleData.getRandomizedRecordEntityForService(service).setCreated_at(now.minusMinutes(i)), dbContext);
+            }
+        });
+        List<UUID> serviceIds = services.stream().map(ServiceEntity::getId).collect(Collectors.toList());
+        //Act
+        RecentRecordBuffer.loadAll(serviceIds, recordRepository);
+        //Assert
+        Assertions.assertThat(recordRepository.getRecordHistories(serviceIds, 2).values()).allSatisfy(history ->
+                Assertions.assertThat(history).hasSize(2));
+        Assertions.assertThat(RecentRecordBuffer.getRecordHistory(serviceIds.get(0), 10, recordRepository))
+                .extracting(RecordEntity::getCreated_at)
+                .containsExactly(now.minusMinutes(1), now.minusMinutes(2), now.minusMinutes(3));
+    }
+
+    @Test
+    void keepsTextIdsAndResolvesTextsOnRead() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        ZonedDateTime now = ZonedDateTime.now();
+        RecordEntity saved = recordAt(service.getId(), now.minusMinutes(1), ServiceStatus.ISSUE)
+                .setId(null).setDescription("Treg respons").setLogglink("https://logs.example/1");
+        recordRepository.save(saved);
+        RecentRecordBuffer.getRecordHistory(service.getId(), 10, recordRepository);
+        RecordEntity added = recordAt(service.getId(), now, ServiceStatus.ISSUE).setDescription("Treg respons");
+        recordRepository.saveAll(List.of(added));
+        //Act
+        RecentRecordBuffer.add(List.of(added));
+        List<RecordEntity> history = RecentRecordBuffer.getRecordHistory(service.getId(), 10, recordRepository);
+        //Assert
+        Assertions.assertThat(history).extracting(RecordEntity::getDescription)
+                .containsExactly("Treg respons", "Treg respons");
+        Assertions.assertThat(history).extracting(RecordEntity::getLogglink)
+                .containsExactly(null, "https://logs.example/1");
+        Assertions.assertThat(history.get(0).getDescriptionId()).isEqualTo(history.get(1).getDescriptionId());
+    }
+
+    private static RecordEntity recordAt(UUID serviceId, ZonedDateTime createdAt, ServiceStatus status) {
+        return new RecordEntity()
+                .setId(UUID.randomUUID())
+                .setServiceId(serviceId)
+                .setStatus(status)
+                .setResponsetime(42)
+                .setCreated_at(createdAt);
+    }
+}
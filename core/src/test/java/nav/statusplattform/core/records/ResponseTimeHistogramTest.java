@@ -0,0 +1,57 @@
+package nav.statusplattform.core.records;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ResponseTimeHistogramTest {
+
+    @Test
+    void percentilesAreAtMostOneBucketTooHigh() {
+        //Arrange
+        ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+        //Act
+        for (int responseTime = 1; responseTime <= 1000; responseTime++) {
+            histogram.record(responseTime);
+        }
+        //Assert
+        Assertions.assertThat(histogram.getCount()).isEqualTo(1000);
+        Assertions.assertThat(histogram.getMax()).isEqualTo(1000);
+        Assertions.assertThat(histogram.getPercentile(50).getAsInt()).isBetween(500, 563);
+        Assertions.assertThat(histogram.getPercentile(90).getAsInt()).isBetween(900, 1000);
+        Assertions.assertThat(histogram.getPercentile(100).getAsInt()).isEqualTo(1000);
+        Assertions.assertThat(new ResponseTimeHistogram().getPercentile(50)).isEmpty();
+    }
+
+    @Test
+    void bucketsCoverAllValues() {
+        //Arrange
+        //Act
+        //Assert
+        for (int bucket = 0; bucket < ResponseTimeHistogram.BUCKET_COUNT; bucket++) {
+            long upperBound = ResponseTimeHistogram.upperBoundOf(bucket);
+            Assertions.assertThat(ResponseTimeHistogram.bucketOf((int) (upperBound - 1))).isEqualTo(bucket);
+            if (upperBound <= Integer.MAX_VALUE) {
+                Assertions.assertThat(ResponseTimeHistogram.bucketOf((int) upperBound)).isEqualTo(bucket + 1);
+            }
+        }
+        Assertions.assertThat(ResponseTimeHistogram.bucketOf(Integer.MAX_VALUE)).isEqualTo(ResponseTimeHistogram.BUCKET_COUNT - 1);
+    }
+
+    @Test
+    void mergeAndEncode() {
+        //Arrange
+        ResponseTimeHistogram first = new ResponseTimeHistogram();
+        first.record(10);
+        first.record(200);
+        ResponseTimeHistogram second = new ResponseTimeHistogram();
+        second.record(3000);
+        //Act
+        first.merge(second);
+        ResponseTimeHistogram decoded = ResponseTimeHistogram.decode(first.encodeBuckets(), first.getMax());
+        //Assert
+        Assertions.assertThat(decoded.getCount()).isEqualTo(3);
+        Assertions.assertThat(decoded.getMax()).isEqualTo(3000);
+        Assertions.assertThat(decoded.getPercentile(1).getAsInt()).isEqualTo(10);
+        Assertions.assertThat(decoded.encodeBuckets()).isEqualTo(first.encodeBuckets());
+    }
+}
@@ -0,0 +1,46 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.enums.ServiceType;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+class RetentionPolicyTest {
+
+    @Test
+    void rejectsRawRetentionShorterThanHourlyRollup() {
+        //Arrange
+        RetentionPolicy retentionPolicy = new RetentionPolicy();
+        //Act
+        //Assert
+        Assertions.assertThatThrownBy(() -> retentionPolicy.setRaw(ServiceType.TJENESTE, Duration.ofHours(2)))
+                .isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThat(retentionPolicy.getRaw(ServiceType.TJENESTE)).isEqualTo(RetentionPolicy.DEFAULT_RAW);
+    }
+
+    @Test
+    void rejectsHourlyRetentionShorterThanDailyRollup() {
+        //Arrange
+        RetentionPolicy retentionPolicy = new RetentionPolicy();
+        //Act
+        //Assert
+        Assertions.assertThatThrownBy(() -> retentionPolicy.setHourly(ServiceType.KOMPONENT, Duration.ofDays(2)))
+                .isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThat(retentionPolicy.getHourly(ServiceType.KOMPONENT)).isEqualTo(RetentionPolicy.DEFAULT_HOURLY);
+    }
+
+    @Test
+    void shortestAndLongestAcrossServiceTypes() {
+        //Arrange
+        RetentionPolicy retentionPolicy = new RetentionPolicy()
+                .setRaw(ServiceType.TJENESTE, RetentionPolicy.MIN_RAW)
+                .setRaw(ServiceType.KOMPONENT, Duration.ofHours(72))
+                .setHourly(ServiceType.TJENESTE, RetentionPolicy.MIN_HOURLY);
+        //Act
+        //Assert
+        Assertions.assertThat(retentionPolicy.getShortestRaw()).isEqualTo(RetentionPolicy.MIN_RAW);
+        Assertions.assertThat(retentionPolicy.getLongestRaw()).isEqualTo(Duration.ofHours(72));
+        Assertions.assertThat(retentionPolicy.getShortestHourly()).isEqualTo(RetentionPolicy.MIN_HOURLY);
+    }
+}
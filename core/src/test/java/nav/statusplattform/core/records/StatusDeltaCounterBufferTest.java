@@ -0,0 +1,134 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.RecordDeltaEntity;
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.repositories.RecordRepository;
+import nav.statusplattform.core.repositories.SampleData;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import nav.statusplattform.core.repositories.TestDataSource;
+import nav.statusplattform.core.repositories.TestUtil;
+import nav.statusplattform.core.repositories.TimeOrderedUuid;
+import org.assertj.core.api.Assertions;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+class StatusDeltaCounterBufferTest {
+
+    private final DataSource dataSource = TestDataSource.create();
+
+    private final DbContext dbContext = new DbContext();
+    private DbContextConnection connection;
+
+    @BeforeEach
+    void startConnection() {
+        connection = dbContext.startConnection(dataSource);
+        TestUtil.clearAllTableData(dbContext);
+    }
+
+    @AfterEach
+    void endConnection() {
+        connection.close();
+    }
+
+    private final RecordRepository recordRepository = new RecordRepository(dbContext);
+    private final ServiceRepository serviceRepository = new ServiceRepository(dbContext);
+
+    @Test
+    void flushIncreasesCounterOnActiveDelta() {
+        //Arrange
+        UUID serviceId = saveServiceWithActiveDelta(ServiceStatus.OK, ZonedDateTime.now().minusMinutes(5));
+        StatusDeltaCounterBuffer.track(serviceId, ServiceStatus.OK);
+        //Act
+        List<RecordEntity> okRecords = records(serviceId, ServiceStatus.OK, 3);
+        boolean countedOk = StatusDeltaCounterBuffer.isTracked(serviceId, okRecords);
+        StatusDeltaCounterBuffer.add(serviceId, okRecords);
+        boolean countedDown = StatusDeltaCounterBuffer.isTracked(serviceId, records(serviceId, ServiceStatus.DOWN, 1));
+        int counterBeforeFlush = recordRepository.getActiveRecordDelta(serviceId).orElseThrow().getCounter();
+        StatusDeltaCounterBuffer.flush(dbContext);
+        //Assert
+        Assertions.assertThat(countedOk).isTrue();
+        Assertions.assertThat(countedDown).isFalse();
+        Assertions.assertThat(counterBeforeFlush).isEqualTo(1);
+        Assertions.assertThat(recordRepository.getActiveRecordDelta(serviceId).orElseThrow().getCounter()).isEqualTo(4);
+        Assertions.assertThat(StatusDeltaCounterBuffer.remove(serviceId)).isEmpty();
+    }
+
+    @Test
+    void flushWritesNewDeltaWhenStatusChangedByAnotherWriter() {
+        //Arrange
+        UUID serviceId = saveServiceWithActiveDelta(ServiceStatus.OK, ZonedDateTime.now().minusMinutes(5));
+        StatusDeltaCounterBuffer.track(serviceId, ServiceStatus.OK);
+        StatusDeltaCounterBuffer.add(serviceId, records(serviceId, ServiceStatus.OK, 1));
+        //En annen instans lagrer DOWN, som denne instansen ikke vet om
+        RecordEntity otherWriterRecord = records(serviceId, ServiceStatus.DOWN, 1).get(0);
+        otherWriterRecord.setCreated_at(otherWriterRecord.getCreated_at().minusSeconds(30));
+        new StatusDeltaWriter(recordRepository).write(new TreeMap<>(Map.of(serviceId, List.of(otherWriterRecord))));
+        StatusDeltaCounterBuffer.add(serviceId, records(serviceId, ServiceStatus.OK, 2));
+        //Act
+        StatusDeltaCounterBuffer.flush(dbContext);
+        //Assert
+        RecordDeltaEntity activeDelta = recordRepository.getActiveRecordDelta(serviceId).orElseThrow();
+        Assertions.assertThat(activeDelta.getStatus()).isEqualTo(ServiceStatus.OK);
+        Assertions.assertThat(activeDelta.getCounter()).isEqualTo(3);
+        Assertions.assertThat(dbContext.table("service_status_delta").where("service_id", serviceId)
+                        .list(row -> row.getString("status") + ":" + row.getInt("counter")))
+                .containsExactlyInAnyOrder("OK:1", "DOWN:1", "OK:3");
+        Assertions.assertThat(StatusDeltaCounterBuffer.isTracked(serviceId, records(serviceId, ServiceStatus.OK, 1))).isTrue();
+    }
+
+    @Test
+    void flushKeepsRecordsWhenWriteFails() {
+        //Arrange
+        //Tjenesten finnes ikke, så delta kan ikke lagres
+        UUID serviceId = UUID.randomUUID();
+        StatusDeltaCounterBuffer.track(serviceId, ServiceStatus.OK);
+        List<RecordEntity> records = records(serviceId, ServiceStatus.OK, 2);
+        StatusDeltaCounterBuffer.add(serviceId, records);
+        //Act
+        Assertions.assertThatThrownBy(() -> StatusDeltaCounterBuffer.flush(dbContext)).isInstanceOf(SQLException.class);
+        //Assert
+        Assertions.assertThat(StatusDeltaCounterBuffer.remove(serviceId)).extracting(RecordEntity::getId)
+                .containsExactlyElementsOf(records.stream().map(RecordEntity::getId).collect(Collectors.toList()));
+    }
+
+    private static List<RecordEntity> records(UUID serviceId, ServiceStatus status, int count) {
+        List<RecordEntity> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(new RecordEntity()
+                    .setId(TimeOrderedUuid.generate())
+                    .setServiceId(serviceId)
+                    .setStatus(status)
+                    .setCreated_at(ZonedDateTime.now().truncatedTo(ChronoUnit.MICROS)));
+        }
+        return records;
+    }
+
+    private UUID saveServiceWithActiveDelta(ServiceStatus status, ZonedDateTime lastAppliedAt) {
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        UUID serviceId = serviceRepository.save(service);
+        recordRepository.saveNewStatusDiffs(List.of(new RecordDeltaEntity()
+                .setId(UUID.randomUUID())
+                .setServiceId(serviceId)
+                .setStatus(status)
+                .setActive(true)
+                .setCounter(1)
+                .setLastAppliedAt(lastAppliedAt)));
+        return serviceId;
+    }
+}
@@ -0,0 +1,86 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.RecordDeltaEntity;
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.repositories.RecordRepository;
+import nav.statusplattform.core.repositories.SampleData;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import nav.statusplattform.core.repositories.TestDataSource;
+import nav.statusplattform.core.repositories.TestUtil;
+import org.assertj.core.api.Assertions;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+class StatusDeltaWriterTest {
+
+    private final DataSource dataSource = TestDataSource.create();
+
+    private final DbContext dbContext = new DbContext();
+    private DbContextConnection connection;
+
+    private final RecordRepository recordRepository = new RecordRepository(dbContext);
+    private final ServiceRepository serviceRepository = new ServiceRepository(dbContext);
+
+    @BeforeEach
+    void startConnection() {
+        connection = dbContext.startConnection(dataSource);
+        TestUtil.clearAllTableData(dbContext);
+    }
+
+    @AfterEach
+    void endConnection() {
+        connection.close();
+    }
+
+    @Test
+    void retriesWhenAnotherWriterSavedActiveDeltaFirst() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        ZonedDateTime now = ZonedDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        RecordDeltaEntity otherWriterDelta = new RecordDeltaEntity().setId(UUID.randomUUID()).setServiceId(service.getId())
+                .setStatus(ServiceStatus.OK).setActive(true).setCounter(1)
+                .setCreated_at(now.minusMinutes(1)).setLastAppliedAt(now.minusMinutes(1));
+        //En annen skriver legger inn aktiv delta etter at aktive deltaer er lest, så første insert kolliderer på unik indeks
+        RecordRepository racingRepository = new RecordRepository(dbContext) {
+            private boolean raced;
+
+            @Override
+            public Map<UUID, RecordDeltaEntity> getActiveRecordDeltas(Collection<UUID> serviceIds) {
+                Map<UUID, RecordDeltaEntity> result = super.getActiveRecordDeltas(serviceIds);
+                if (!raced) {
+                    raced = true;
+                    saveNewStatusDiffs(List.of(otherWriterDelta));
+                }
+                return result;
+            }
+        };
+        RecordEntity record = SampleData.getRandomizedRecordEntityForService(service)
+                .setId(UUID.randomUUID()).setStatus(ServiceStatus.DOWN).setCreated_at(now);
+        //Act
+        StatusDeltaWriter writer = new StatusDeltaWriter(racingRepository)
+                .write(new TreeMap<>(Map.of(service.getId(), List.of(record))));
+        //Assert
+        Assertions.assertThat(recordRepository.getActiveRecordDelta(service.getId())).hasValueSatisfying(active -> {
+            Assertions.assertThat(active.getId()).isEqualTo(record.getId());
+            Assertions.assertThat(active.getStatus()).isEqualTo(ServiceStatus.DOWN);
+        });
+        Assertions.assertThat(dbContext.table("service_status_delta").where("id", otherWriterDelta.getId())
+                .singleObject(row -> row.getBoolean("active"))).contains(false);
+        Assertions.assertThat(writer.getChangedServices()).containsExactly(service.getId());
+    }
+}
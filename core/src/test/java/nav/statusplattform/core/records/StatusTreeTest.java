@@ -0,0 +1,113 @@
+package nav.statusplattform.core.records;
+
+import nav.statusplattform.core.entities.AreaEntity;
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.entities.SubAreaEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.repositories.AreaRepository;
+import nav.statusplattform.core.repositories.DashboardRepository;
+import nav.statusplattform.core.repositories.RecordRepository;
+import nav.statusplattform.core.repositories.SampleData;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import nav.statusplattform.core.repositories.SubAreaRepository;
+import nav.statusplattform.core.repositories.TestDataSource;
+import nav.statusplattform.core.repositories.TestUtil;
+import org.assertj.core.api.Assertions;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+class StatusTreeTest {
+
+    private final DataSource dataSource = TestDataSource.create();
+
+    private final DbContext dbContext = new DbContext();
+    private DbContextConnection connection;
+
+    private final AreaRepository areaRepository = new AreaRepository(dbContext);
+    private final SubAreaRepository subAreaRepository = new SubAreaRepository(dbContext);
+    private final DashboardRepository dashboardRepository = new DashboardRepository(dbContext);
+    private final ServiceRepository serviceRepository = new ServiceRepository(dbContext);
+    private final RecordRepository recordRepository = new RecordRepository(dbContext);
+
+    @BeforeEach
+    void startConnection() {
+        connection = dbContext.startConnection(dataSource);
+        TestUtil.clearAllTableData(dbContext);
+    }
+
+    @AfterEach
+    void endConnection() {
+        connection.close();
+    }
+
+    @Test
+    void statusChangeUpdatesSubAreaAreaAndDashboard() {
+        //Arrange
+        List<ServiceEntity> services = SampleData.getNonEmptyListOfServiceEntity(2);
+        services.forEach(service -> service.setId(serviceRepository.save(service)));
+        ServiceEntity serviceInArea = services.get(0);
+        ServiceEntity serviceInSubArea = services.get(1);
+
+        AreaEntity area = SampleData.getRandomizedAreaEntity();
+        area.setId(areaRepository.save(area));
+        SubAreaEntity subArea = SampleData.getRandomizedSubAreaEntity();
+        subArea.setId(subAreaRepository.save(subArea));
+        areaRepository.addServiceToArea(area.getId(), serviceInArea.getId());
+        subAreaRepository.addServiceToSubArea(subArea.getId(), serviceInSubArea.getId());
+        areaRepository.addSubAreaToArea(area.getId(), subArea.getId());
+        UUID dashboardId = dashboardRepository.save("dashboard");
+        dashboardRepository.settAreasOnDashboard(dashboardId, area.getId());
+
+        recordRepository.save(SampleData.getRandomizedRecordEntityForService(serviceInArea).setStatus(ServiceStatus.OK));
+        StatusTree.ensureBuilt(dbContext);
+        StatusTree.StatusCounts areaBefore = StatusTree.getArea(area.getId()).orElseThrow();
+        //Act
+        LatestStatusCache.update(List.of(new RecordEntity()
+                .setId(UUID.randomUUID())
+                .setServiceId(serviceInSubArea.getId())
+                .setStatus(ServiceStatus.DOWN)
+                .setCreated_at(ZonedDateTime.now())));
+        //Assert
+        Assertions.assertThat(areaBefore.getOk()).isEqualTo(1);
+        Assertions.assertThat(areaBefore.getNumberOfServices()).isEqualTo(2);
+        Assertions.assertThat(areaBefore.getWorstStatus()).contains(ServiceStatus.OK);
+        Assertions.assertThat(StatusTree.getSubArea(subArea.getId()).orElseThrow().getDown()).isEqualTo(1);
+        Assertions.assertThat(StatusTree.getArea(area.getId()).orElseThrow().getWorstStatus()).contains(ServiceStatus.DOWN);
+        Assertions.assertThat(StatusTree.getDashboard(dashboardId).orElseThrow().getDown()).isEqualTo(1);
+        Assertions.assertThat(StatusTree.getDashboard(dashboardId).orElseThrow().getOk()).isEqualTo(1);
+    }
+
+    @Test
+    void serviceInAreaAndSubAreaIsCountedOnce() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        AreaEntity area = SampleData.getRandomizedAreaEntity();
+        area.setId(areaRepository.save(area));
+        SubAreaEntity subArea = SampleData.getRandomizedSubAreaEntity();
+        subArea.setId(subAreaRepository.save(subArea));
+        areaRepository.addServiceToArea(area.getId(), service.getId());
+        subAreaRepository.addServiceToSubArea(subArea.getId(), service.getId());
+        areaRepository.addSubAreaToArea(area.getId(), subArea.getId());
+        //Act
+        StatusTree.ensureBuilt(dbContext);
+        LatestStatusCache.update(List.of(new RecordEntity()
+                .setId(UUID.randomUUID())
+                .setServiceId(service.getId())
+                .setStatus(ServiceStatus.ISSUE)
+                .setCreated_at(ZonedDateTime.now())));
+        //Assert
+        StatusTree.StatusCounts areaCounts = StatusTree.getArea(area.getId()).orElseThrow();
+        Assertions.assertThat(areaCounts.getNumberOfServices()).isEqualTo(1);
+        Assertions.assertThat(areaCounts.getIssue()).isEqualTo(1);
+    }
+}
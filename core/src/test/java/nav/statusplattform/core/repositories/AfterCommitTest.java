@@ -0,0 +1,66 @@
+package nav.statusplattform.core.repositories;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class AfterCommitTest {
+
+    @Test
+    void runsCommitActionsAfterCommit() {
+        //Arrange
+        List<String> actions = new ArrayList<>();
+        //Act
+        try (AfterCommit afterCommit = AfterCommit.begin()) {
+            AfterCommit.onCommit(() -> actions.add("commit"));
+            AfterCommit.onRollback(() -> actions.add("rollback"));
+            Assertions.assertThat(actions).isEmpty();
+            afterCommit.committed();
+        }
+        //Assert
+        Assertions.assertThat(actions).containsExactly("commit");
+    }
+
+    @Test
+    void runsRollbackActionsWhenNotCommitted() {
+        //Arrange
+        List<String> actions = new ArrayList<>();
+        //Act
+        try (AfterCommit ignored = AfterCommit.begin()) {
+            AfterCommit.onCommit(() -> actions.add("commit"));
+            AfterCommit.onRollback(() -> actions.add("rollback"));
+        }
+        //Assert
+        Assertions.assertThat(actions).containsExactly("rollback");
+    }
+
+    @Test
+    void nestedBeginWaitsForOuterCommit() {
+        //Arrange
+        List<String> actions = new ArrayList<>();
+        //Act
+        try (AfterCommit outer = AfterCommit.begin()) {
+            try (AfterCommit inner = AfterCommit.begin()) {
+                AfterCommit.onCommit(() -> actions.add("commit"));
+                inner.committed();
+            }
+            Assertions.assertThat(actions).isEmpty();
+            outer.committed();
+        }
+        //Assert
+        Assertions.assertThat(actions).containsExactly("commit");
+    }
+
+    @Test
+    void runsCommitActionsImmediatelyWithoutTransaction() {
+        //Arrange
+        List<String> actions = new ArrayList<>();
+        //Act
+        AfterCommit.onCommit(() -> actions.add("commit"));
+        AfterCommit.onRollback(() -> actions.add("rollback"));
+        //Assert
+        Assertions.assertThat(actions).containsExactly("commit");
+    }
+}
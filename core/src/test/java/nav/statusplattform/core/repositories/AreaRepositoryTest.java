@@ -311,6 +311,27 @@ class AreaRepositoryTest {
         Assertions.assertThat(retrievedAll.get(area)).containsExactlyInAnyOrderElementsOf(retrievedServices);
     }
 
+    @Test
+    void getAreasContainingServices() {
+        //Arrange
+        List<ServiceEntity> services = SampleData.getNonEmptyListOfServiceEntity(3);
+        services.forEach(s -> s.setId(serviceRepository.save(s)));
+        AreaEntity area = SampleData.getRandomizedAreaEntity();
+        area.setId(areaRepository.save(area));
+        AreaEntity otherArea = SampleData.getRandomizedAreaEntityWithNameNotInList(List.of(area));
+        otherArea.setId(areaRepository.save(otherArea));
+        areaRepository.addServiceToArea(area.getId(), services.get(0).getId());
+        areaRepository.addServiceToArea(otherArea.getId(), services.get(0).getId());
+        areaRepository.addServiceToArea(area.getId(), services.get(1).getId());
+        //Act
+        Map<UUID, List<AreaEntity>> areasContainingServices = areaRepository.getAreasContainingServices(
+                services.stream().map(ServiceEntity::getId).toList());
+        //Assert
+        Assertions.assertThat(areasContainingServices).containsOnlyKeys(services.get(0).getId(), services.get(1).getId());
+        Assertions.assertThat(areasContainingServices.get(services.get(0).getId())).containsExactlyInAnyOrder(area, otherArea);
+        Assertions.assertThat(areasContainingServices.get(services.get(1).getId())).containsExactly(area);
+    }
+
      @Test
     void getSubAreasOnArea() {
         //Arrange
@@ -173,6 +173,35 @@ class DashboardRepositoryTest {
         Assertions.assertThat(exists.getValue().get(0).getServices()).containsAll(services);
     }
 
+    @Test
+    void retrieveOneWithSubAreas() {
+        //Arrange
+        UUID dashboardId = dashboardRepository.save(SampleData.getRandomFromArray(dashboardNames));
+        List<ServiceEntity> services = SampleData.getNonEmptyListOfServiceEntity(3);
+        services.forEach(service -> service.setId(serviceRepository.save(service)));
+        AreaEntity area = SampleData.getRandomizedAreaEntity();
+        area.setId(areaRepository.save(area));
+        AreaEntity otherArea = SampleData.getRandomizedAreaEntityWithNameNotInList(List.of(area));
+        otherArea.setId(areaRepository.save(otherArea));
+        AreaEntity areaNotOnDashboard = SampleData.getRandomizedAreaEntityWithNameNotInList(List.of(area, otherArea));
+        areaNotOnDashboard.setId(areaRepository.save(areaNotOnDashboard));
+        areaRepository.setServicesOnArea(area.getId(), List.of(services.get(0).getId(), services.get(1).getId()));
+        serviceRepository.delete(services.get(1).getId());
+        SubAreaEntity subArea = SampleData.getRandomizedSubAreaEntity();
+        subArea.setId(subAreaRepository.save(subArea));
+        subAreaRepository.addServiceToSubArea(subArea.getId(), services.get(2).getId());
+        areaRepository.addSubAreaToArea(otherArea.getId(), subArea.getId());
+        dashboardRepository.settAreasOnDashboard(dashboardId, List.of(otherArea.getId(), area.getId()));
+        //Act
+        List<AreaWithServices> areas = dashboardRepository.retrieveOne(dashboardId).getValue();
+        //Assert
+        Assertions.assertThat(areas).extracting(AreaWithServices::getArea).containsExactly(otherArea, area);
+        Assertions.assertThat(areas.get(1).getServices()).containsExactly(services.get(0));
+        Assertions.assertThat(areas.get(1).getSubAreas()).isEmpty();
+        Assertions.assertThat(areas.get(0).getServices()).isEmpty();
+        Assertions.assertThat(areas.get(0).getSubAreas()).containsExactly(new SubAreaWithServices(subArea, List.of(services.get(2))));
+    }
+
     @Test
     void retrieveOneFromName() {
         //TODO denne
@@ -0,0 +1,102 @@
+package nav.statusplattform.core.repositories;
+
+import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.entities.ServiceEntity;
+import org.assertj.core.api.Assertions;
+import org.flywaydb.core.Flyway;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.fluentjdbc.DbTransaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.postgresql.ds.PGSimpleDataSource;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+
+//Partisjonering finnes ikke i H2, så testene kjøres bare mot PostgreSQL,
+//for eksempel STATUSPLATTFORM_TEST_POSTGRES_URL=jdbc:postgresql://localhost:5432/postgres?user=postgres&password=postgres.
+//Skjemaet record_partition_test slettes og migreres på nytt før hver test.
+@EnabledIfEnvironmentVariable(named = "STATUSPLATTFORM_TEST_POSTGRES_URL", matches = ".+")
+class RecordPartitionRepositoryPostgresTest {
+
+    private static final String SCHEMA = "record_partition_test";
+
+    private final DbContext dbContext = new DbContext();
+    private DbContextConnection connection;
+
+    private final RecordPartitionRepository recordPartitionRepository = new RecordPartitionRepository(dbContext);
+    private final RecordRepository recordRepository = new RecordRepository(dbContext);
+    private final ServiceRepository serviceRepository = new ServiceRepository(dbContext);
+
+    @BeforeEach
+    void startConnection() {
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setURL(System.getenv("STATUSPLATTFORM_TEST_POSTGRES_URL"));
+        dataSource.setCurrentSchema(SCHEMA);
+        Flyway flyway = Flyway.configure()
+                .dataSource(dataSource)
+                .schemas(SCHEMA)
+                .cleanDisabled(false)
+                .locations("classpath:db/migration", "classpath:db/postgresql")
+                .load();
+        flyway.clean();
+        flyway.migrate();
+        connection = dbContext.startConnection(dataSource);
+    }
+
+    @AfterEach
+    void endConnection() {
+        connection.close();
+    }
+
+    @Test
+    void createPartitionMovesRecordsFromDefaultPartition() {
+        //Arrange
+        LocalDate day = LocalDate.now(ZoneOffset.UTC).plusDays(30);
+        saveRecord(day.atTime(12, 0).atZone(ZoneOffset.UTC));
+        int recordsInDefaultBefore = count("service_status_default");
+        //Act
+        try (DbTransaction transaction = dbContext.ensureTransaction()) {
+            recordPartitionRepository.createPartition(day);
+            transaction.setComplete();
+        }
+        //Assert
+        Assertions.assertThat(recordsInDefaultBefore).isEqualTo(1);
+        Assertions.assertThat(recordPartitionRepository.getPartitionDays()).contains(day);
+        Assertions.assertThat(count("service_status_default")).isZero();
+        Assertions.assertThat(count("service_status_p" + DateTimeFormatter.ofPattern("yyyyMMdd").format(day))).isEqualTo(1);
+    }
+
+    @Test
+    void deleteFromDefaultPartitionDeletesExpiredRecords() {
+        //Arrange
+        saveRecord(ZonedDateTime.of(2000, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC));
+        saveRecord(ZonedDateTime.now(ZoneOffset.UTC).plusDays(30));
+        //Act
+        int deleted = recordPartitionRepository.deleteFromDefaultPartition(ZonedDateTime.now().minusDays(1), 1000);
+        //Assert
+        Assertions.assertThat(deleted).isEqualTo(1);
+        Assertions.assertThat(count("service_status_default")).isEqualTo(1);
+    }
+
+    private void saveRecord(ZonedDateTime createdAt) {
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        recordRepository.saveAll(List.of(SampleData.getRandomizedRecordEntityForService(service)
+                .setId(UUID.randomUUID())
+                .setCreated_at(createdAt)));
+    }
+
+    private int count(String table) {
+        return dbContext.statement("select count(*) as records from " + table, List.of())
+                .singleObject(row -> row.getInt("records"))
+                .orElseThrow();
+    }
+}
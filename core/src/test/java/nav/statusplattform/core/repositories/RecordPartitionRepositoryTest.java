@@ -0,0 +1,52 @@
+package nav.statusplattform.core.repositories;
+
+import org.assertj.core.api.Assertions;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+
+class RecordPartitionRepositoryTest {
+
+    private final DataSource dataSource = TestDataSource.create();
+
+    private final DbContext dbContext = new DbContext();
+    private DbContextConnection connection;
+
+    @BeforeEach
+    void startConnection() {
+        connection = dbContext.startConnection(dataSource);
+        TestUtil.clearAllTableData(dbContext);
+    }
+
+    @AfterEach
+    void endConnection() {
+        connection.close();
+    }
+
+    private final RecordPartitionRepository recordPartitionRepository = new RecordPartitionRepository(dbContext);
+
+    @Test
+    void isNotPartitionedWithoutPostgres() {
+        //Arrange
+        //Act
+        boolean partitioned = recordPartitionRepository.isPartitioned();
+        //Assert
+        Assertions.assertThat(partitioned).isFalse();
+        Assertions.assertThat(recordPartitionRepository.getPartitionDays()).isEmpty();
+    }
+
+    @Test
+    void partitionBoundsAreUtcTimestamps() {
+        //Arrange
+        LocalDate day = LocalDate.of(2024, 3, 31);
+        //Act
+        String bound = RecordPartitionRepository.partitionBound(day);
+        //Assert
+        Assertions.assertThat(bound).isEqualTo("'2024-03-31 00:00:00+00'");
+    }
+}
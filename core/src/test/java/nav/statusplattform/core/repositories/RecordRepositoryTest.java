@@ -4,6 +4,8 @@ package nav.statusplattform.core.repositories;
 import nav.statusplattform.core.entities.RecordDeltaEntity;
 import nav.statusplattform.core.entities.RecordEntity;
 import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.enums.ServiceType;
 import org.assertj.core.api.Assertions;
 import org.fluentjdbc.DbContext;
 import org.fluentjdbc.DbContextConnection;
@@ -13,6 +15,7 @@ import org.junit.jupiter.api.Test;
 
 import javax.sql.DataSource;
 import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -53,6 +56,26 @@ class RecordRepositoryTest {
         Assertions.assertThat(retrievedEntity.get()).isEqualTo(record);
      }
 
+    @Test
+    void saveWithTextsFromDictionary() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        List<RecordEntity> records = generateRandomizedRecordEntities(service, 3);
+        records.forEach(record -> record.setId(UUID.randomUUID()).setDescription("Timeout mot baksystem").setLogglink("https://logs.example/service"));
+        //Act
+        recordRepository.saveAll(records);
+        RecordEntity saved = SampleData.getRandomizedRecordEntityForService(service).setDescription("Timeout mot baksystem");
+        saved.setId(recordRepository.save(saved));
+        List<RecordEntity> history = recordRepository.getRecordHistory(service.getId(), 10);
+        //Assert
+        Assertions.assertThat(history).hasSize(4);
+        Assertions.assertThat(history).extracting(RecordEntity::getDescription).containsOnly("Timeout mot baksystem");
+        Assertions.assertThat(history).filteredOn(record -> !record.getId().equals(saved.getId()))
+                .extracting(RecordEntity::getLogglink).containsOnly("https://logs.example/service");
+        Assertions.assertThat(dbContext.table("record_text").unordered().listLongs("id")).hasSize(2);
+    }
+
     @Test
     void saveNewStatusDiff() {
          //Arrange
@@ -283,6 +306,185 @@ class RecordRepositoryTest {
         Assertions.assertThat(retrievedRecordsAfter).isEmpty();
     }
 
+    @Test
+    void deleteRecordsOlderThanInChunks(){
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        generateRandomizedRecordEntities(service, 12).forEach(record -> {
+            record.setCreated_at(ZonedDateTime.now().minusDays(3));
+            record.setId(TestUtil.saveRecordBackInTime(record, dbContext));
+        });
+        RecordEntity newRecord = SampleData.getRandomizedRecordEntityForService(service);
+        newRecord.setId(recordRepository.save(newRecord));
+        ZonedDateTime cutoff = ZonedDateTime.now().minusHours(48);
+        //Act
+        List<Integer> deletedPerChunk = new ArrayList<>();
+        int deleted;
+        do {
+            deleted = recordRepository.deleteRecordsOlderThan(cutoff, 5);
+            deletedPerChunk.add(deleted);
+        } while (deleted > 0);
+        //Assert
+        Assertions.assertThat(deletedPerChunk).containsExactly(5, 5, 2, 0);
+        Assertions.assertThat(recordRepository.getRecordsOlderThan(2)).isEmpty();
+        Assertions.assertThat(recordRepository.getLatestRecord(service.getId()).orElseThrow().getId()).isEqualTo(newRecord.getId());
+    }
+
+    @Test
+    void deleteRecordsOlderThanForServiceType(){
+        //Arrange
+        ServiceEntity tjeneste = SampleData.getRandomizedServiceEntity().setType(ServiceType.TJENESTE);
+        tjeneste.setId(serviceRepository.save(tjeneste));
+        ServiceEntity komponent = SampleData.getRandomizedServiceEntity().setType(ServiceType.KOMPONENT);
+        komponent.setId(serviceRepository.save(komponent));
+        List.of(tjeneste, komponent).forEach(service -> generateRandomizedRecordEntities(service, 3).forEach(record -> {
+            record.setCreated_at(ZonedDateTime.now().minusDays(3));
+            record.setId(TestUtil.saveRecordBackInTime(record, dbContext));
+        }));
+        //Act
+        int deleted = recordRepository.deleteRecordsOlderThan(ZonedDateTime.now().minusHours(48), ServiceType.KOMPONENT, 1000);
+        //Assert
+        Assertions.assertThat(deleted).isEqualTo(3);
+        Assertions.assertThat(recordRepository.getLatestRecord(komponent.getId())).isEmpty();
+        Assertions.assertThat(recordRepository.getLatestRecord(tjeneste.getId())).isPresent();
+    }
+
+    @Test
+    void saveAllKeepsRecordTimestamp() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        ZonedDateTime pollerTime = ZonedDateTime.now().minusHours(3).truncatedTo(ChronoUnit.SECONDS);
+        RecordEntity record = SampleData.getRandomizedRecordEntityForService(service).setId(UUID.randomUUID()).setCreated_at(pollerTime);
+        //Act
+        recordRepository.saveAll(List.of(record));
+        //Assert
+        Assertions.assertThat(recordRepository.getLatestRecord(service.getId()).orElseThrow().getCreated_at().toInstant())
+                .isEqualTo(pollerTime.toInstant());
+    }
+
+    @Test
+    void saveNewStatusDiffsKeepsRecordTimestamp() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        ZonedDateTime pollerTime = ZonedDateTime.now().minusHours(3).truncatedTo(ChronoUnit.SECONDS);
+        RecordDeltaEntity delta = delta(service.getId(), ServiceStatus.DOWN, true, pollerTime);
+        //Act
+        recordRepository.saveNewStatusDiffs(List.of(delta));
+        //Assert
+        RecordDeltaEntity activeDelta = recordRepository.getActiveRecordDelta(service.getId()).orElseThrow();
+        Assertions.assertThat(activeDelta.getCreated_at().toInstant()).isEqualTo(pollerTime.toInstant());
+        Assertions.assertThat(activeDelta.getLastAppliedAt().toInstant()).isEqualTo(pollerTime.toInstant());
+    }
+
+    @Test
+    void saveNewStatusDiffsSkipsHistoryForRejectedService() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        ServiceEntity otherService = SampleData.getRandomizedServiceEntityWithNameNotInList(List.of(service));
+        otherService.setId(serviceRepository.save(otherService));
+        ZonedDateTime now = ZonedDateTime.now();
+        RecordDeltaEntity rejectedActive = delta(service.getId(), ServiceStatus.DOWN, true, now);
+        //Raden finnes allerede, så insert gjøres ikke, som når en annen transaksjon har lagt inn aktiv delta
+        recordRepository.saveNewStatusDiffs(List.of(new RecordDeltaEntity().setId(rejectedActive.getId()).setServiceId(service.getId())
+                .setStatus(ServiceStatus.OK).setActive(false).setCounter(1).setLastAppliedAt(now)));
+        RecordDeltaEntity rejectedHistory = delta(service.getId(), ServiceStatus.ISSUE, false, now.minusMinutes(1));
+        RecordDeltaEntity savedHistory = delta(otherService.getId(), ServiceStatus.ISSUE, false, now.minusMinutes(1));
+        RecordDeltaEntity savedActive = delta(otherService.getId(), ServiceStatus.OK, true, now);
+        //Act
+        List<RecordDeltaEntity> rejected = recordRepository.saveNewStatusDiffs(List.of(rejectedHistory, rejectedActive, savedHistory, savedActive));
+        //Assert
+        Assertions.assertThat(rejected).extracting(RecordDeltaEntity::getId).containsExactly(rejectedActive.getId());
+        Assertions.assertThat(dbContext.table("service_status_delta").where("service_id", service.getId()).list(row -> row.getUUID("id")))
+                .containsExactly(rejectedActive.getId());
+        Assertions.assertThat(dbContext.table("service_status_delta").where("service_id", otherService.getId()).list(row -> row.getUUID("id")))
+                .containsExactlyInAnyOrder(savedHistory.getId(), savedActive.getId());
+    }
+
+    @Test
+    void saveNewStatusDiffsRejectsSecondActiveDeltaForService() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        ZonedDateTime now = ZonedDateTime.now();
+        RecordDeltaEntity active = delta(service.getId(), ServiceStatus.OK, true, now.minusMinutes(1));
+        recordRepository.saveNewStatusDiffs(List.of(active));
+        RecordDeltaEntity competing = delta(service.getId(), ServiceStatus.DOWN, true, now);
+        //Act
+        List<RecordDeltaEntity> rejected = recordRepository.saveNewStatusDiffs(List.of(competing));
+        //Assert
+        Assertions.assertThat(rejected).extracting(RecordDeltaEntity::getId).containsExactly(competing.getId());
+        Assertions.assertThat(recordRepository.getActiveRecordDelta(service.getId()))
+                .hasValueSatisfying(delta -> Assertions.assertThat(delta.getId()).isEqualTo(active.getId()));
+    }
+
+    private static RecordDeltaEntity delta(UUID serviceId, ServiceStatus status, boolean active, ZonedDateTime createdAt) {
+        return new RecordDeltaEntity().setId(UUID.randomUUID()).setServiceId(serviceId).setStatus(status)
+                .setActive(active).setCounter(1).setCreated_at(createdAt).setLastAppliedAt(createdAt);
+    }
+
+    @Test
+    void saveAllAndStatusDiffsInBatch() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        ServiceEntity otherService = SampleData.getRandomizedServiceEntityWithNameNotInList(List.of(service));
+        otherService.setId(serviceRepository.save(otherService));
+        List<RecordEntity> records = List.of(
+                SampleData.getRandomizedRecordEntityForService(service).setId(UUID.randomUUID()).setStatus(ServiceStatus.OK),
+                SampleData.getRandomizedRecordEntityForService(otherService).setId(UUID.randomUUID()));
+        List<RecordDeltaEntity> deltas = new ArrayList<>();
+        records.forEach(record -> deltas.add(new RecordDeltaEntity()
+                .setId(record.getId())
+                .setServiceId(record.getServiceId())
+                .setStatus(record.getStatus())
+                .setActive(true)
+                .setCounter(1)));
+        //Act
+        recordRepository.saveAll(records);
+        recordRepository.saveNewStatusDiffs(deltas);
+        List<RecordDeltaEntity> increased = recordRepository.increaseCountOnActiveStatusDiffs(List.of(
+                new RecordDeltaEntity().setServiceId(otherService.getId()).setStatus(records.get(1).getStatus()).setCounter(4).setLastAppliedAt(ZonedDateTime.now()),
+                new RecordDeltaEntity().setServiceId(service.getId()).setStatus(ServiceStatus.UNKNOWN).setCounter(4).setLastAppliedAt(ZonedDateTime.now())));
+        Set<UUID> closed = recordRepository.setOldStatusDiffsInactive(Map.of(service.getId(), ZonedDateTime.now()));
+        Map<UUID, RecordDeltaEntity> activeDeltas = recordRepository.getActiveRecordDeltas(List.of(service.getId(), otherService.getId()));
+        //Assert
+        Assertions.assertThat(recordRepository.getLatestRecord(service.getId()).orElseThrow().getId()).isEqualTo(records.get(0).getId());
+        Assertions.assertThat(recordRepository.getLatestRecord(otherService.getId()).orElseThrow().getId()).isEqualTo(records.get(1).getId());
+        Assertions.assertThat(increased).extracting(RecordDeltaEntity::getServiceId).containsExactly(otherService.getId());
+        Assertions.assertThat(closed).containsExactly(service.getId());
+        Assertions.assertThat(activeDeltas).containsOnlyKeys(otherService.getId());
+        Assertions.assertThat(activeDeltas.get(otherService.getId()).getId()).isEqualTo(records.get(1).getId());
+        Assertions.assertThat(activeDeltas.get(otherService.getId()).getCounter()).isEqualTo(5);
+    }
+
+    @Test
+    void getLatestRecords() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        ServiceEntity otherService = SampleData.getRandomizedServiceEntityWithNameNotInList(List.of(service));
+        otherService.setId(serviceRepository.save(otherService));
+        ServiceEntity serviceWithoutRecords = SampleData.getRandomizedServiceEntityWithNameNotInList(List.of(service, otherService));
+        serviceWithoutRecords.setId(serviceRepository.save(serviceWithoutRecords));
+        RecordEntity oldRecord = SampleData.getRandomizedRecordEntityForService(service);
+        oldRecord.setCreated_at(ZonedDateTime.now().minusHours(1));
+        oldRecord.setId(TestUtil.saveRecordBackInTime(oldRecord, dbContext));
+        RecordEntity latestRecord = SampleData.getRandomizedRecordEntityForService(service);
+        latestRecord.setId(recordRepository.save(latestRecord));
+        RecordEntity otherRecord = SampleData.getRandomizedRecordEntityForService(otherService);
+        otherRecord.setId(recordRepository.save(otherRecord));
+        //Act
+        Map<UUID, RecordEntity> latestRecords = recordRepository.getLatestRecords(List.of(service.getId(), otherService.getId(), serviceWithoutRecords.getId()));
+        //Assert
+        Assertions.assertThat(latestRecords).containsOnlyKeys(service.getId(), otherService.getId());
+        Assertions.assertThat(latestRecords.get(service.getId()).getId()).isEqualTo(latestRecord.getId());
+        Assertions.assertThat(latestRecords.get(otherService.getId()).getId()).isEqualTo(otherRecord.getId());
+    }
+
     private RecordEntity getRandomizedRecordEntity() {
         return new RecordEntity()
                 .setCreated_at(ZonedDateTime.now())
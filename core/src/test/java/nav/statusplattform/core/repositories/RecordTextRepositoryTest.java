@@ -0,0 +1,78 @@
+package nav.statusplattform.core.repositories;
+
+import nav.statusplattform.core.entities.ServiceEntity;
+import org.assertj.core.api.Assertions;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.fluentjdbc.DbTransaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+class RecordTextRepositoryTest {
+
+    private final DataSource dataSource = TestDataSource.create();
+
+    private final DbContext dbContext = new DbContext();
+    private DbContextConnection connection;
+
+    @BeforeEach
+    void startConnection() {
+        connection = dbContext.startConnection(dataSource);
+        TestUtil.clearAllTableData(dbContext);
+    }
+
+    @AfterEach
+    void endConnection() {
+        connection.close();
+    }
+
+    private final RecordTextRepository recordTextRepository = new RecordTextRepository(dbContext);
+
+    @Test
+    void getOrCreateIds() {
+        //Arrange
+        Map<String, Long> before = recordTextRepository.getOrCreateIds(List.of("Tjenesten svarer ikke", "https://logs.example/1"));
+        RecordTextRepository.clearCache();
+        //Act
+        Map<String, Long> after = recordTextRepository.getOrCreateIds(Arrays.asList("Tjenesten svarer ikke", "Ny tekst", null));
+        //Assert
+        Assertions.assertThat(before).hasSize(2);
+        Assertions.assertThat(after).containsOnlyKeys("Tjenesten svarer ikke", "Ny tekst");
+        Assertions.assertThat(after.get("Tjenesten svarer ikke")).isEqualTo(before.get("Tjenesten svarer ikke"));
+        Assertions.assertThat(dbContext.table("record_text").where("content", "Tjenesten svarer ikke").listLongs("id")).hasSize(1);
+    }
+
+    @Test
+    void getOrCreateIdsDoesNotCacheRolledBackTexts() {
+        //Arrange
+        try (AfterCommit ignored = AfterCommit.begin(); DbTransaction ignoredTransaction = dbContext.ensureTransaction()) {
+            recordTextRepository.getOrCreateIds(List.of("Rullet tilbake"));
+        }
+        //Act
+        Map<String, Long> ids = recordTextRepository.getOrCreateIds(List.of("Rullet tilbake"));
+        //Assert
+        Assertions.assertThat(dbContext.table("record_text").where("content", "Rullet tilbake").listLongs("id"))
+                .containsExactly(ids.get("Rullet tilbake"));
+    }
+
+    @Test
+    void deleteUnreferenced() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(new ServiceRepository(dbContext).save(service));
+        new RecordRepository(dbContext).save(SampleData.getRandomizedRecordEntityForService(service).setDescription("I bruk"));
+        recordTextRepository.getOrCreateIds(List.of("Ikke i bruk"));
+        //Act
+        int deleted = recordTextRepository.deleteUnreferenced(10);
+        //Assert
+        Assertions.assertThat(deleted).isEqualTo(1);
+        Assertions.assertThat(dbContext.table("record_text").unordered().list(row -> row.getString("content")))
+                .containsExactly("I bruk");
+    }
+}
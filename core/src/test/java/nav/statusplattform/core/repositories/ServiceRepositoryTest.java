@@ -1,8 +1,12 @@
 package nav.statusplattform.core.repositories;
 
+import nav.statusplattform.core.entities.DailyStatusAggregationForServiceEntity;
 import nav.statusplattform.core.entities.MaintenanceEntity;
+import nav.statusplattform.core.entities.ResponseTimeHistogramEntity;
 import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
 import nav.statusplattform.core.enums.ServiceType;
+import nav.statusplattform.core.records.ResponseTimeHistogram;
 import org.assertj.core.api.Assertions;
 import org.fluentjdbc.DbContext;
 import org.fluentjdbc.DbContextConnection;
@@ -11,6 +15,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 import static org.assertj.core.api.Assertions.fail;
@@ -365,6 +373,24 @@ class ServiceRepositoryTest {
       Assertions.assertThat(retrievedServicesDependantOnComponent.size()).isEqualTo(services.size());
    }
 
+   @Test
+   void getServicesDependantOnComponents() {
+      //Arrange
+      List<ServiceEntity> services = SampleData.getNonEmptyListOfServiceEntity(3);
+      services.forEach(service -> service.setId(serviceRepository.save(service)));
+      ServiceEntity komponent = SampleData.getRandomizedServiceEntityWithNameNotInList(services);
+      komponent.setId(serviceRepository.save(komponent));
+      ServiceEntity otherKomponent = SampleData.getRandomizedServiceEntityWithNameNotInList(List.of(services.get(0), services.get(1), services.get(2), komponent));
+      otherKomponent.setId(serviceRepository.save(otherKomponent));
+      services.forEach(service -> serviceRepository.addDependencyToService(service.getId(), komponent.getId()));
+      serviceRepository.addDependencyToService(services.get(0).getId(), otherKomponent.getId());
+      //Act
+      Map<UUID, List<ServiceEntity>> dependantServices = serviceRepository.getServicesDependantOnComponents(List.of(komponent.getId(), otherKomponent.getId()));
+      //Assert
+      Assertions.assertThat(dependantServices.get(komponent.getId())).containsExactlyInAnyOrderElementsOf(services);
+      Assertions.assertThat(dependantServices.get(otherKomponent.getId())).containsExactly(services.get(0));
+   }
+
    @Test
    void retrieveServicesWithPolling() {
       //Arrange
@@ -484,5 +510,61 @@ class ServiceRepositoryTest {
 
    }
 
+   @Test
+   void aggregateDailyStatus() {
+      //Arrange
+      ServiceEntity service = SampleData.getRandomizedServiceEntity();
+      service.setId(serviceRepository.save(service));
+      ZoneId zone = ServiceRepository.AGGREGATION_ZONE;
+      LocalDate yesterday = LocalDate.now(zone).minusDays(1);
+      ZonedDateTime noon = yesterday.atTime(12, 0).atZone(zone);
+      List.of(ServiceStatus.OK, ServiceStatus.OK, ServiceStatus.ISSUE, ServiceStatus.DOWN).forEach(status ->
+              RecordRepository.saveRecordBackInTime(SampleData.getRandomizedRecordEntityForService(service)
+                      .setStatus(status).setCreated_at(noon), dbContext));
+      RecordRepository.saveRecordBackInTime(SampleData.getRandomizedRecordEntityForService(service)
+              .setStatus(ServiceStatus.DOWN).setCreated_at(yesterday.atStartOfDay(zone).minusMinutes(1)), dbContext);
+      ResponseTimeHistogram responseTimes = new ResponseTimeHistogram();
+      responseTimes.record(120);
+      responseTimes.record(480);
+      new ResponseTimeHistogramRepository(dbContext).saveAll(List.of(new ResponseTimeHistogramEntity()
+              .setService_id(service.getId()).setHour(noon).setHistogram(responseTimes)));
+      serviceRepository.aggregateHourlyStatus(noon);
+      serviceRepository.aggregateHourlyStatus(yesterday.atStartOfDay(zone).minusHours(1));
+      //Act
+      serviceRepository.aggregateDailyStatus(yesterday);
+      int aggregatedServices = serviceRepository.aggregateDailyStatus(yesterday);
+      //Assert
+      List<DailyStatusAggregationForServiceEntity> history = serviceRepository.getServiceHistory(service.getId(), yesterday.minusDays(7));
+      Assertions.assertThat(aggregatedServices).isEqualTo(1);
+      Assertions.assertThat(history).hasSize(1);
+      Assertions.assertThat(history.get(0).getAggregation_date()).isEqualTo(yesterday);
+      Assertions.assertThat(history.get(0).getNumber_of_status_ok()).isEqualTo(2);
+      Assertions.assertThat(history.get(0).getNumber_of_status_issue()).isEqualTo(1);
+      Assertions.assertThat(history.get(0).getNumber_of_status_down()).isEqualTo(1);
+      Assertions.assertThat(history.get(0).getResponseTimeHistogram().getCount()).isEqualTo(2);
+      Assertions.assertThat(history.get(0).getResponseTimeHistogram().getMax()).isEqualTo(480);
+   }
 
+   @Test
+   void aggregateHourlyStatusAndDeleteByServiceType() {
+      //Arrange
+      ServiceEntity tjeneste = SampleData.getRandomizedServiceEntity().setType(ServiceType.TJENESTE);
+      tjeneste.setId(serviceRepository.save(tjeneste));
+      ServiceEntity komponent = SampleData.getRandomizedServiceEntity().setType(ServiceType.KOMPONENT);
+      komponent.setId(serviceRepository.save(komponent));
+      ZonedDateTime hour = ZonedDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(5);
+      List.of(tjeneste, komponent).forEach(service -> List.of(ServiceStatus.OK, ServiceStatus.DOWN).forEach(status ->
+              RecordRepository.saveRecordBackInTime(SampleData.getRandomizedRecordEntityForService(service)
+                      .setStatus(status).setCreated_at(hour.plusMinutes(30)), dbContext)));
+      //Act
+      int aggregatedServices = serviceRepository.aggregateHourlyStatus(hour);
+      int deleted = serviceRepository.deleteHourlyStatusOlderThan(hour.plusHours(1), ServiceType.KOMPONENT);
+      //Assert
+      Assertions.assertThat(aggregatedServices).isEqualTo(2);
+      Assertions.assertThat(deleted).isEqualTo(1);
+      Assertions.assertThat(serviceRepository.getLatestHourlyStatus()).hasValueSatisfying(latest ->
+              Assertions.assertThat(latest.toInstant()).isEqualTo(hour.toInstant()));
+      Assertions.assertThat(dbContext.table("hourly_status_aggregation_service").where("service_id", tjeneste.getId())
+              .list(row -> row.getInt("number_of_status_down"))).containsExactly(1);
+   }
 }
@@ -10,7 +10,10 @@ public class TestDataSource {
     public static DataSource create() {
         JdbcDataSource dataSource = new JdbcDataSource();
         dataSource.setUrl("jdbc:h2:mem:test;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
-        Flyway.configure().dataSource(dataSource).load().migrate();
+        //db/h2 har H2-varianter av migreringene i db/postgresql
+        Flyway.configure().dataSource(dataSource)
+                .locations("classpath:db/migration", "classpath:db/h2")
+                .load().migrate();
         return dataSource;
     }
 
@@ -1,6 +1,13 @@
 package nav.statusplattform.core.repositories;
 
+import nav.statusplattform.core.cache.DashboardResponseCache;
 import nav.statusplattform.core.entities.RecordEntity;
+import nav.statusplattform.core.records.AvailabilityCalculator;
+import nav.statusplattform.core.records.LatestStatusCache;
+import nav.statusplattform.core.records.RecentRecordBuffer;
+import nav.statusplattform.core.records.ResponseTimeHistogramBuffer;
+import nav.statusplattform.core.records.StatusDeltaCounterBuffer;
+import nav.statusplattform.core.records.StatusTree;
 import org.fluentjdbc.DatabaseSaveResult;
 import org.fluentjdbc.DatabaseTableImpl;
 import org.fluentjdbc.DbContext;
@@ -11,15 +18,33 @@ import java.util.UUID;
 public class TestUtil {
 
     public static void clearAllTableData(DbContext dbContext){
+        StatusDeltaCounterBuffer.clear();
+        LatestStatusCache.clear();
+        RecentRecordBuffer.clear();
+        DashboardResponseCache.clear();
+        StatusTree.clear();
+        AvailabilityCalculator.clear();
+        ResponseTimeHistogramBuffer.clear();
+        RecordTextRepository.clearCache();
+
         DbContextTable serviceServiceTable = dbContext.table("service_service");
         serviceServiceTable.whereExpression("service1_id is NOT null").executeDelete();
 
         DbContextTable daily_status_aggregation_service = dbContext.table("daily_status_aggregation_service");
         daily_status_aggregation_service.whereExpression("id is NOT null").executeDelete();
 
+        DbContextTable hourlyStatusAggregationTable = dbContext.table("hourly_status_aggregation_service");
+        hourlyStatusAggregationTable.whereExpression("id is NOT null").executeDelete();
+
         DbContextTable serviceStatusTable = dbContext.table("service_status");
         serviceStatusTable.whereExpression("id is NOT null").executeDelete();
 
+        DbContextTable recordTextTable = dbContext.table("record_text");
+        recordTextTable.whereExpression("id is NOT null").executeDelete();
+
+        DbContextTable responseTimeHistogramTable = dbContext.table("response_time_histogram");
+        responseTimeHistogramTable.whereExpression("id is NOT null").executeDelete();
+
         DbContextTable serviceStatusDeltaTable = dbContext.table("service_status_delta");
         serviceStatusDeltaTable.whereExpression("id is NOT null").executeDelete();
 
@@ -0,0 +1,38 @@
+package nav.statusplattform.core.repositories;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+class TimeOrderedUuidTest {
+
+    @Test
+    void generate() {
+        //Arrange
+        long before = System.currentTimeMillis();
+        //Act
+        UUID uuid = TimeOrderedUuid.generate();
+        //Assert
+        Assertions.assertThat(uuid.version()).isEqualTo(7);
+        Assertions.assertThat(uuid.variant()).isEqualTo(2);
+        Assertions.assertThat(uuid.getMostSignificantBits() >>> 16).isBetween(before, System.currentTimeMillis() + 1);
+    }
+
+    @Test
+    void generateIsOrderedLikeTheDatabaseOrdersUuids() {
+        //Arrange
+        List<UUID> generated = new ArrayList<>();
+        //Act
+        for (int i = 0; i < 10_000; i++) {
+            generated.add(TimeOrderedUuid.generate());
+        }
+        //Assert
+        //PostgreSQL sammenligner uuid byte for byte, som tilsvarer sortering på strengform
+        Assertions.assertThat(generated).isSortedAccordingTo(Comparator.comparing(UUID::toString));
+        Assertions.assertThat(generated).doesNotHaveDuplicates();
+    }
+}
@@ -0,0 +1,5 @@
+-- Samme regel som db/postgresql/V029 for testene: kun én aktiv delta per tjeneste. H2 støtter ikke partial index,
+-- så indeksen ligger på en generert kolonne som bare har service_id når deltaen er aktiv (NULL kan forekomme flere ganger).
+ALTER TABLE service_status_delta ADD COLUMN active_service_id UUID GENERATED ALWAYS AS (CASE WHEN active THEN service_id END);
+
+CREATE UNIQUE INDEX idx_service_status_delta_active ON service_status_delta (active_service_id);
@@ -1,6 +1,7 @@
 package no.nav.statusplattform.infrastructure;
 
 
+import nav.statusplattform.core.repositories.AfterCommit;
 import org.fluentjdbc.DbContext;
 import org.fluentjdbc.DbContextConnection;
 import org.fluentjdbc.DbTransaction;
@@ -11,12 +12,18 @@ import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
 import javax.sql.DataSource;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ApiFilter implements Filter {
     private final DbContext dbContext;
     private DataSource dataSource;
+    //Stier som ikke bruker databasen i forespørselstråden, og slipper gjennom uten databaseforbindelse og transaksjon
+    private final Set<String> pathsWithoutConnection = ConcurrentHashMap.newKeySet();
 
     public ApiFilter(DbContext dbContext) {
         this.dbContext = dbContext;
@@ -24,11 +31,18 @@ public class ApiFilter implements Filter {
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
-        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        if (pathsWithoutConnection.contains(httpRequest.getRequestURI().substring(httpRequest.getContextPath().length()))) {
+            chain.doFilter(request, response);
+            return;
+        }
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource);
+             AfterCommit afterCommit = AfterCommit.begin()) {
             try (DbTransaction transaction = dbContext.ensureTransaction()) {
                 chain.doFilter(request, response);
                 transaction.setComplete();
             }
+            afterCommit.committed();
         }
     }
 
@@ -36,6 +50,10 @@ public class ApiFilter implements Filter {
         this.dataSource = dataSource;
     }
 
+    public void skipConnectionFor(Collection<String> paths) {
+        pathsWithoutConnection.addAll(paths);
+    }
+
 
     @Override
     public void init(FilterConfig filterConfig) {
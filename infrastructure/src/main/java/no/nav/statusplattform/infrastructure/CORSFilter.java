@@ -48,6 +48,7 @@ public class CORSFilter implements Filter {
        ((HttpServletResponse) servletResponse).addHeader("Access-Control-Allow-Origin", frontendLocation);
        ((HttpServletResponse) servletResponse).addHeader("Access-Control-Allow-Methods","GET, OPTIONS, HEAD, PUT, POST, DELETE");
        ((HttpServletResponse) servletResponse).addHeader("Access-Control-Allow-Headers", "*");
+       ((HttpServletResponse) servletResponse).addHeader("Access-Control-Expose-Headers", "X-Next-Cursor, X-Accepted-Records, ETag");
 
 
         HttpServletResponse resp = (HttpServletResponse) servletResponse;
@@ -0,0 +1,91 @@
+package no.nav.statusplattform.infrastructure;
+
+import nav.statusplattform.core.cache.ResourceVersions;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//ETag fra ResourceVersions på lesetjenestene som polles. Har klienten samme versjon (If-None-Match), svares det 304
+//før DashboardCacheFilter og ApiFilter, altså uten databaseforbindelse.
+//ETag beregnes før forespørselen behandles, så en endring underveis gir ny ETag ved neste forespørsel.
+public class ConditionalGetFilter implements Filter {
+    private static final Pattern DASHBOARD_PATH = Pattern.compile("^/Dashboard/([0-9a-fA-F-]{36})$");
+    private static final Pattern OPS_MESSAGE_PATH = Pattern.compile("^/OpsMessage(/[0-9a-fA-F-]{36})?$");
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        if (!httpRequest.getMethod().equals("GET")) {
+            chain.doFilter(request, response);
+            return;
+        }
+        Optional<String> etag = getETag(httpRequest.getRequestURI().substring(httpRequest.getContextPath().length()));
+        if (etag.isEmpty()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        httpResponse.setHeader("ETag", etag.get());
+        //Klienten kan bruke svaret, men må spørre på nytt hver gang
+        httpResponse.setHeader("Cache-Control", "no-cache");
+        if (matches(httpRequest.getHeader("If-None-Match"), etag.get())) {
+            httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    static Optional<String> getETag(String path) {
+        switch (path) {
+            case "/Services":
+                return Optional.of(ResourceVersions.getServicesTag());
+            case "/Areas":
+                return Optional.of(ResourceVersions.getAreasTag());
+        }
+        if (OPS_MESSAGE_PATH.matcher(path).matches()) {
+            return Optional.of(ResourceVersions.getOpsMessagesTag());
+        }
+        Matcher dashboard = DASHBOARD_PATH.matcher(path);
+        if (dashboard.matches()) {
+            try {
+                return Optional.of(ResourceVersions.getDashboardTag(UUID.fromString(dashboard.group(1))));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    //If-None-Match kan inneholde flere ETags, og svake ETags (W/) sammenlignes som sterke
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .anyMatch(tag -> tag.equals(etag) || tag.equals("*"));
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+
+    }
+
+    @Override
+    public void destroy() {
+
+    }
+}
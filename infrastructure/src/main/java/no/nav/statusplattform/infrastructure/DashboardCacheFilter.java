@@ -0,0 +1,93 @@
+package no.nav.statusplattform.infrastructure;
+
+import nav.statusplattform.core.cache.DashboardResponseCache;
+import nav.statusplattform.core.cache.ResourceVersions;
+import nav.statusplattform.core.records.StatusTree;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//Besvarer GET /Dashboard/{id} fra DashboardResponseCache før ApiFilter åpner databaseforbindelse.
+//Endringer (POST, PUT og DELETE) i katalogen, driftsmeldinger og åpningstider kan endre et dashboard, og tømmer cachen når de har lykkes (2xx).
+//Bare endringer i katalogen tømmer strukturen i StatusTree. De øker også versjonen i ResourceVersions.
+//Statusendringer fra records invalideres per tjeneste der de lagres, og andre endringer påvirker ikke dashboardene.
+public class DashboardCacheFilter implements Filter {
+    private static final Pattern DASHBOARD_PATH = Pattern.compile("^/Dashboard/([0-9a-fA-F-]{36})$");
+    private static final Set<String> WRITE_METHODS = Set.of("POST", "PUT", "DELETE");
+    private static final List<String> UNCACHED_PATHS = List.of("/ServiceStatus", "/UpdateRecords", "/UpdateRecordsStream", "/Alert", "/HelpText");
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        String path = httpRequest.getRequestURI().substring(httpRequest.getContextPath().length());
+        if (httpRequest.getMethod().equals("GET")) {
+            Optional<byte[]> cached = getDashboardId(path).flatMap(DashboardResponseCache::get);
+            if (cached.isPresent()) {
+                writeCached((HttpServletResponse) response, cached.get());
+                return;
+            }
+            chain.doFilter(request, response);
+            return;
+        }
+        chain.doFilter(request, response);
+        if (!WRITE_METHODS.contains(httpRequest.getMethod())) {
+            return;
+        }
+        int status = ((HttpServletResponse) response).getStatus();
+        if (status < 200 || status >= 300 || UNCACHED_PATHS.contains(path)) {
+            return;
+        }
+        DashboardResponseCache.invalidateAll();
+        if (path.startsWith("/OpsMessage")) {
+            ResourceVersions.opsMessagesChanged();
+        } else if (path.startsWith("/OpeningHours")) {
+            ResourceVersions.dashboardsChanged();
+        } else {
+            StatusTree.invalidate();
+            ResourceVersions.catalogChanged();
+        }
+    }
+
+    private static Optional<UUID> getDashboardId(String path) {
+        Matcher matcher = DASHBOARD_PATH.matcher(path);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(UUID.fromString(matcher.group(1)));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static void writeCached(HttpServletResponse response, byte[] body) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+
+    }
+
+    @Override
+    public void destroy() {
+
+    }
+}
@@ -0,0 +1,168 @@
+package no.nav.statusplattform.infrastructure;
+
+import nav.statusplattform.core.cache.SingleFlight;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Optional;
+
+//Samtidige like GET-forespørsler på lesetjenestene som polles deler ett svar. Den første går videre til ApiFilter og
+//controlleren, de andre venter her, før ApiFilter, altså uten databaseforbindelse, og får samme svar.
+//Nøkkelen inneholder versjonen fra ResourceVersions (samme som ETag i ConditionalGetFilter), så en forespørsel etter en
+//endring ikke får et svar bygget på eldre data. Bare 200-svar deles: feiler den første, behandles de andre hver for seg.
+public class SingleFlightFilter implements Filter {
+    private final SingleFlight<String, Flight> requests = new SingleFlight<>();
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        String path = httpRequest.getRequestURI().substring(httpRequest.getContextPath().length());
+        Optional<String> version = ConditionalGetFilter.getETag(path);
+        if (!httpRequest.getMethod().equals("GET") || version.isEmpty()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        String key = path + "?" + httpRequest.getQueryString() + version.get();
+        CapturingResponse own = new CapturingResponse(httpResponse);
+        Flight flight = requests.execute(key, () -> own.capture(request, chain));
+        if (flight.response == own) {
+            own.writeCaptured();
+        } else if (flight.isShareable()) {
+            httpResponse.setStatus(HttpServletResponse.SC_OK);
+            httpResponse.setContentType(flight.contentType);
+            httpResponse.setContentLength(flight.body.length);
+            httpResponse.getOutputStream().write(flight.body);
+        } else {
+            chain.doFilter(request, response);
+        }
+    }
+
+    //Antall forespørsler som fikk svaret fra en annen forespørsel
+    long getCoalesced() {
+        return requests.getCoalesced();
+    }
+
+    //Svaret fra den første forespørselen, kopiert ut før forespørselen avsluttes og svaret gjenbrukes av serveren
+    private static class Flight {
+        private final CapturingResponse response;
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+        private final Exception failure;
+
+        private Flight(CapturingResponse response, byte[] body, Exception failure) {
+            this.response = response;
+            this.status = response.getStatus();
+            this.contentType = response.getContentType();
+            this.body = body;
+            this.failure = failure;
+        }
+
+        private boolean isShareable() {
+            return failure == null && status == HttpServletResponse.SC_OK;
+        }
+    }
+
+    //Status og headere går rett til svaret, mens innholdet holdes tilbake så det kan deles
+    private static class CapturingResponse extends HttpServletResponseWrapper {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                body.write(b, off, len);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        private PrintWriter writer;
+        private Exception failure;
+
+        private CapturingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        //Exceptions tas vare på i stedet for å kastes, så ventende forespørsler ikke får dem
+        private Flight capture(ServletRequest request, FilterChain chain) {
+            try {
+                chain.doFilter(request, this);
+                if (writer != null) {
+                    writer.flush();
+                }
+            } catch (IOException | ServletException | RuntimeException e) {
+                failure = e;
+            }
+            return new Flight(this, body.toByteArray(), failure);
+        }
+
+        private void writeCaptured() throws IOException, ServletException {
+            if (failure instanceof IOException ioException) {
+                throw ioException;
+            } else if (failure instanceof ServletException servletException) {
+                throw servletException;
+            } else if (failure instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (body.size() > 0) {
+                getResponse().getOutputStream().write(body.toByteArray());
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(body, Charset.forName(getCharacterEncoding())));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+
+    }
+
+    @Override
+    public void destroy() {
+
+    }
+}
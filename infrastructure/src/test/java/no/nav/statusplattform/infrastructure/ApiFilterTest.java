@@ -0,0 +1,57 @@
+package no.nav.statusplattform.infrastructure;
+
+import org.assertj.core.api.Assertions;
+import org.fluentjdbc.DbContext;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+class ApiFilterTest {
+
+    private final ApiFilter filter = new ApiFilter(new DbContext());
+
+    @BeforeEach
+    void setDataSource() {
+        filter.setDataSource((DataSource) Proxy.newProxyInstance(ApiFilterTest.class.getClassLoader(),
+                new Class[]{DataSource.class}, (proxy, invokedMethod, args) -> {
+                    throw new SQLException("No connection available");
+                }));
+        filter.skipConnectionFor(List.of("/UpdateRecords"));
+    }
+
+    @Test
+    void skippedPathDoesNotTakeConnection() throws Exception {
+        //Arrange
+        AtomicBoolean handled = new AtomicBoolean();
+        //Act
+        filter.doFilter(request("/UpdateRecords"), null, (request, response) -> handled.set(true));
+        //Assert
+        Assertions.assertThat(handled).isTrue();
+    }
+
+    @Test
+    void otherPathsTakeConnection() {
+        //Arrange
+        AtomicBoolean handled = new AtomicBoolean();
+        //Act
+        //Assert
+        Assertions.assertThatThrownBy(() -> filter.doFilter(request("/ServiceStatus/" + 1), null, (request, response) -> handled.set(true)))
+                .isInstanceOf(SQLException.class);
+        Assertions.assertThat(handled).isFalse();
+    }
+
+    private static HttpServletRequest request(String path) {
+        return (HttpServletRequest) Proxy.newProxyInstance(ApiFilterTest.class.getClassLoader(),
+                new Class[]{HttpServletRequest.class}, (proxy, invokedMethod, args) -> switch (invokedMethod.getName()) {
+                    case "getRequestURI" -> path;
+                    case "getContextPath" -> "";
+                    default -> throw new UnsupportedOperationException(invokedMethod.getName());
+                });
+    }
+}
@@ -0,0 +1,73 @@
+package no.nav.statusplattform.infrastructure;
+
+import nav.statusplattform.core.cache.DashboardResponseCache;
+import nav.statusplattform.core.cache.ResourceVersions;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+
+class DashboardCacheFilterTest {
+
+    private final DashboardCacheFilter filter = new DashboardCacheFilter();
+    private final UUID dashboardId = UUID.randomUUID();
+
+    @BeforeEach
+    void cacheDashboard() {
+        DashboardResponseCache.clear();
+        DashboardResponseCache.put(dashboardId, "{}".getBytes(), Set.of(), DashboardResponseCache.getGeneration(), Duration.ZERO);
+    }
+
+    @Test
+    void headRequestLeavesCacheAlone() throws Exception {
+        //Arrange
+        //Act
+        filter.doFilter(request("HEAD", "/Services"), response(200), (request, response) -> {});
+        //Assert
+        Assertions.assertThat(DashboardResponseCache.get(dashboardId)).isPresent();
+    }
+
+    @Test
+    void successfulWriteInvalidatesCache() throws Exception {
+        //Arrange
+        String servicesTag = ResourceVersions.getServicesTag();
+        //Act
+        filter.doFilter(request("PUT", "/Service/" + UUID.randomUUID()), response(200), (request, response) -> {});
+        //Assert
+        Assertions.assertThat(DashboardResponseCache.get(dashboardId)).isEmpty();
+        Assertions.assertThat(ResourceVersions.getServicesTag()).isNotEqualTo(servicesTag);
+    }
+
+    @Test
+    void failedWriteLeavesCacheAlone() throws Exception {
+        //Arrange
+        //Act
+        filter.doFilter(request("DELETE", "/Service/" + UUID.randomUUID()), response(404), (request, response) -> {});
+        //Assert
+        Assertions.assertThat(DashboardResponseCache.get(dashboardId)).isPresent();
+    }
+
+    private static HttpServletRequest request(String method, String path) {
+        return (HttpServletRequest) Proxy.newProxyInstance(DashboardCacheFilterTest.class.getClassLoader(),
+                new Class[]{HttpServletRequest.class}, (proxy, invokedMethod, args) -> switch (invokedMethod.getName()) {
+                    case "getMethod" -> method;
+                    case "getRequestURI" -> path;
+                    case "getContextPath" -> "";
+                    default -> throw new UnsupportedOperationException(invokedMethod.getName());
+                });
+    }
+
+    private static HttpServletResponse response(int status) {
+        return (HttpServletResponse) Proxy.newProxyInstance(DashboardCacheFilterTest.class.getClassLoader(),
+                new Class[]{HttpServletResponse.class}, (proxy, invokedMethod, args) -> switch (invokedMethod.getName()) {
+                    case "getStatus" -> status;
+                    default -> throw new UnsupportedOperationException(invokedMethod.getName());
+                });
+    }
+}
@@ -0,0 +1,164 @@
+package no.nav.statusplattform.infrastructure;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+class SingleFlightFilterTest {
+
+    private final SingleFlightFilter filter = new SingleFlightFilter();
+
+    @Test
+    void concurrentRequestsShareOneResponse() throws Exception {
+        //Arrange
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger handled = new AtomicInteger();
+        FakeResponse first = new FakeResponse();
+        FakeResponse second = new FakeResponse();
+        CompletableFuture<Void> firstRequest = CompletableFuture.runAsync(() -> doFilter("/Services", first, () -> {
+            handled.incrementAndGet();
+            awaitQuietly(release);
+            return 200;
+        }));
+        awaitUntil(() -> handled.get() == 1);
+        //Act
+        CompletableFuture<Void> secondRequest = CompletableFuture.runAsync(() -> doFilter("/Services", second, () -> {
+            handled.incrementAndGet();
+            return 200;
+        }));
+        awaitUntil(() -> filter.getCoalesced() == 1);
+        release.countDown();
+        firstRequest.get(5, TimeUnit.SECONDS);
+        secondRequest.get(5, TimeUnit.SECONDS);
+        //Assert
+        Assertions.assertThat(handled).hasValue(1);
+        Assertions.assertThat(filter.getCoalesced()).isEqualTo(1);
+        Assertions.assertThat(first.body()).isEqualTo("[]");
+        Assertions.assertThat(second.body()).isEqualTo("[]");
+        Assertions.assertThat(second.contentType).isEqualTo("application/json");
+    }
+
+    @Test
+    void failedResponseIsNotShared() throws Exception {
+        //Arrange
+        FakeResponse response = new FakeResponse();
+        //Act
+        doFilter("/Areas", response, () -> 500);
+        doFilter("/Areas", response, () -> 200);
+        //Assert
+        Assertions.assertThat(filter.getCoalesced()).isZero();
+        Assertions.assertThat(response.status).isEqualTo(200);
+    }
+
+    @Test
+    void otherPathsPassThrough() throws Exception {
+        //Arrange
+        FakeResponse response = new FakeResponse();
+        //Act
+        doFilter("/ServiceStatus/" + 1, response, () -> 200);
+        //Assert
+        Assertions.assertThat(response.body()).isEqualTo("[]");
+    }
+
+    private void doFilter(String path, FakeResponse response, IntSupplier controller) {
+        try {
+            filter.doFilter(request(path), response.proxy(), (request, chainResponse) -> {
+                HttpServletResponse httpResponse = (HttpServletResponse) chainResponse;
+                httpResponse.setStatus(controller.getAsInt());
+                httpResponse.setContentType("application/json");
+                httpResponse.getWriter().write("[]");
+            });
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static HttpServletRequest request(String path) {
+        return (HttpServletRequest) Proxy.newProxyInstance(SingleFlightFilterTest.class.getClassLoader(),
+                new Class[]{HttpServletRequest.class}, (proxy, invokedMethod, args) -> switch (invokedMethod.getName()) {
+                    case "getMethod" -> "GET";
+                    case "getRequestURI" -> path;
+                    case "getContextPath" -> "";
+                    case "getQueryString" -> null;
+                    default -> throw new UnsupportedOperationException(invokedMethod.getName());
+                });
+    }
+
+    private static class FakeResponse {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final PrintWriter writer = new PrintWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+        private int status = 200;
+        private String contentType;
+
+        private String body() {
+            writer.flush();
+            return body.toString(StandardCharsets.UTF_8);
+        }
+
+        private HttpServletResponse proxy() {
+            ServletOutputStream outputStream = new ServletOutputStream() {
+                @Override
+                public void write(int b) {
+                    body.write(b);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+            };
+            return (HttpServletResponse) Proxy.newProxyInstance(SingleFlightFilterTest.class.getClassLoader(),
+                    new Class[]{HttpServletResponse.class}, (proxy, invokedMethod, args) -> switch (invokedMethod.getName()) {
+                        case "setStatus" -> {
+                            status = (int) args[0];
+                            yield null;
+                        }
+                        case "getStatus" -> status;
+                        case "setContentType" -> {
+                            contentType = (String) args[0];
+                            yield null;
+                        }
+                        case "getContentType" -> contentType;
+                        case "setContentLength" -> null;
+                        case "getCharacterEncoding" -> "UTF-8";
+                        case "getOutputStream" -> outputStream;
+                        case "getWriter" -> writer;
+                        default -> throw new UnsupportedOperationException(invokedMethod.getName());
+                    });
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package no.nav.statusplattform.jobs;
+
+import nav.statusplattform.core.records.RetentionPolicy;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.fluentjdbc.DbTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+
+//Ruller opp timene fra HourlyStatusAggregationJob til antall per status og responstid per tjeneste og døgn i
+//daily_status_aggregation_service. Døgnene regnes i samme sone som timene (ServiceRepository.AGGREGATION_ZONE).
+//Kjøres flere ganger i døgnet, og regner ut siste opprullede døgn og gårsdagen på nytt hver gang, så timer som rulles
+//opp sent blir med. Døgn regnes ikke ut etter at RecordRetentionJob har begynt å slette timene deres.
+public class DailyStatusAggregationJob extends Thread {
+
+    private static final Logger logger = LoggerFactory.getLogger(DailyStatusAggregationJob.class);
+
+    private final DbContext dbContext;
+    private final ServiceRepository serviceRepository;
+    private DataSource dataSource;
+    private RetentionPolicy retentionPolicy = new RetentionPolicy();
+
+    public DailyStatusAggregationJob(DbContext dbContext) {
+        this.dbContext = dbContext;
+        this.serviceRepository = new ServiceRepository(dbContext);
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    public void run() {
+        try {
+            ZoneId zone = ServiceRepository.AGGREGATION_ZONE;
+            LocalDate yesterday = LocalDate.now(zone).minusDays(1);
+            LocalDate earliest = ZonedDateTime.now(zone).minus(retentionPolicy.getShortestHourly()).toLocalDate().plusDays(1);
+            LocalDate first = getLatestDay().filter(latest -> latest.isAfter(earliest)).orElse(earliest);
+            for (LocalDate day = first.isAfter(yesterday) ? yesterday : first; !day.isAfter(yesterday); day = day.plusDays(1)) {
+                aggregate(day);
+            }
+        } catch (Exception e) {
+            logger.error("Daily status aggregation failed", e);
+        }
+    }
+
+    private Optional<LocalDate> getLatestDay() {
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+            return serviceRepository.getLatestDailyStatus();
+        }
+    }
+
+    private void aggregate(LocalDate day) {
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+            try (DbTransaction transaction = dbContext.ensureTransaction()) {
+                int services = serviceRepository.aggregateDailyStatus(day);
+                transaction.setComplete();
+                logger.info("Aggregated status for {} services on {}", services, day);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package no.nav.statusplattform.jobs;
+
+import nav.statusplattform.core.records.RetentionPolicy;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.fluentjdbc.DbTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+//Ruller opp records til antall per status per tjeneste og time i hourly_status_aggregation_service.
+//Regner ut siste opprullede time på nytt og tar igjen timer som mangler, men bare timer der records fortsatt finnes
+//for alle tjenestetyper. Første gang rulles alle timer med records opp.
+public class HourlyStatusAggregationJob extends Thread {
+
+    private static final Logger logger = LoggerFactory.getLogger(HourlyStatusAggregationJob.class);
+
+    //Records lagret rett før timeskiftet kan bli committet litt etter
+    private static final Duration COMPLETION_MARGIN = Duration.ofMinutes(5);
+
+    private final DbContext dbContext;
+    private final ServiceRepository serviceRepository;
+    private DataSource dataSource;
+    private RetentionPolicy retentionPolicy = new RetentionPolicy();
+
+    public HourlyStatusAggregationJob(DbContext dbContext) {
+        this.dbContext = dbContext;
+        this.serviceRepository = new ServiceRepository(dbContext);
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    public void run() {
+        try {
+            ZonedDateTime now = ZonedDateTime.now(ServiceRepository.AGGREGATION_ZONE);
+            ZonedDateTime end = now.minus(COMPLETION_MARGIN).truncatedTo(ChronoUnit.HOURS);
+            ZonedDateTime earliest = now.minus(retentionPolicy.getShortestRaw()).truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            ZonedDateTime first = getLatestHour().filter(latest -> latest.isAfter(earliest)).orElse(earliest);
+            int hours = 0;
+            for (ZonedDateTime hour = first; hour.isBefore(end); hour = hour.plusHours(1)) {
+                aggregate(hour);
+                hours++;
+            }
+            logger.info("Aggregated {} hours of status from {}", hours, first);
+        } catch (Exception e) {
+            logger.error("Hourly status aggregation failed", e);
+        }
+    }
+
+    private Optional<ZonedDateTime> getLatestHour() {
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+            return serviceRepository.getLatestHourlyStatus().map(hour -> hour.withZoneSameInstant(ServiceRepository.AGGREGATION_ZONE));
+        }
+    }
+
+    private void aggregate(ZonedDateTime hour) {
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+            try (DbTransaction transaction = dbContext.ensureTransaction()) {
+                serviceRepository.aggregateHourlyStatus(hour);
+                transaction.setComplete();
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package no.nav.statusplattform.jobs;
 
+import nav.statusplattform.core.records.RetentionPolicy;
 import org.fluentjdbc.DbContext;
 
 import javax.sql.DataSource;
@@ -11,21 +12,65 @@ public class JobHandler {
 
     private final DbContext dbContext = new DbContext();
     private OpeningHoursDailyEval openingHoursDailyEval;
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private final RecordRetentionJob recordRetentionJob;
+    private final StatusDeltaCounterFlushJob statusDeltaCounterFlushJob;
+    private final HourlyStatusAggregationJob hourlyStatusAggregationJob;
+    private final DailyStatusAggregationJob dailyStatusAggregationJob;
+    private final ResponseTimeHistogramFlushJob responseTimeHistogramFlushJob;
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(6);
     private final int UPDATE_TIME = 24;
+    private final int RETENTION_INTERVAL_MINUTES = 5;
+    private final int COUNTER_FLUSH_INTERVAL_SECONDS = 30;
+    private final int HOURLY_AGGREGATION_INTERVAL_MINUTES = 15;
+    private final int AGGREGATION_INTERVAL_MINUTES = 60;
+    private final int HISTOGRAM_FLUSH_INTERVAL_SECONDS = 60;
 
     public JobHandler() {
         openingHoursDailyEval = new OpeningHoursDailyEval(dbContext);
         openingHoursDailyEval.setDaemon(true);
         openingHoursDailyEval.setName("Polling thread");
+        recordRetentionJob = new RecordRetentionJob(dbContext);
+        recordRetentionJob.setDaemon(true);
+        recordRetentionJob.setName("Record retention thread");
+        statusDeltaCounterFlushJob = new StatusDeltaCounterFlushJob(dbContext);
+        statusDeltaCounterFlushJob.setDaemon(true);
+        statusDeltaCounterFlushJob.setName("Status counter flush thread");
+        hourlyStatusAggregationJob = new HourlyStatusAggregationJob(dbContext);
+        hourlyStatusAggregationJob.setDaemon(true);
+        hourlyStatusAggregationJob.setName("Hourly status aggregation thread");
+        dailyStatusAggregationJob = new DailyStatusAggregationJob(dbContext);
+        dailyStatusAggregationJob.setDaemon(true);
+        dailyStatusAggregationJob.setName("Daily status aggregation thread");
+        responseTimeHistogramFlushJob = new ResponseTimeHistogramFlushJob(dbContext);
+        responseTimeHistogramFlushJob.setDaemon(true);
+        responseTimeHistogramFlushJob.setName("Response time histogram flush thread");
     }
 
     public void setDataSource(DataSource dataSource){
         openingHoursDailyEval.setDataSource(dataSource);
+        recordRetentionJob.setDataSource(dataSource);
+        statusDeltaCounterFlushJob.setDataSource(dataSource);
+        hourlyStatusAggregationJob.setDataSource(dataSource);
+        dailyStatusAggregationJob.setDataSource(dataSource);
+        responseTimeHistogramFlushJob.setDataSource(dataSource);
 
     }
+
+    //Må settes før start
+    public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+        recordRetentionJob.setRetentionPolicy(retentionPolicy);
+        hourlyStatusAggregationJob.setRetentionPolicy(retentionPolicy);
+        dailyStatusAggregationJob.setRetentionPolicy(retentionPolicy);
+    }
+    //scheduleWithFixedDelay stopper nye kjøringer av en jobb som kaster unntak, så jobbene fanger og logger dem selv
     public void start(){
         scheduler.scheduleWithFixedDelay(openingHoursDailyEval,0, UPDATE_TIME ,TimeUnit.HOURS);
+        scheduler.scheduleWithFixedDelay(recordRetentionJob, RETENTION_INTERVAL_MINUTES, RETENTION_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        scheduler.scheduleWithFixedDelay(statusDeltaCounterFlushJob, COUNTER_FLUSH_INTERVAL_SECONDS, COUNTER_FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(hourlyStatusAggregationJob, 1, HOURLY_AGGREGATION_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        //Etter første timeopprulling, så døgnet rulles opp fra ferdige timer
+        scheduler.scheduleWithFixedDelay(dailyStatusAggregationJob, RETENTION_INTERVAL_MINUTES, AGGREGATION_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        scheduler.scheduleWithFixedDelay(responseTimeHistogramFlushJob, HISTOGRAM_FLUSH_INTERVAL_SECONDS, HISTOGRAM_FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
 
     }
 
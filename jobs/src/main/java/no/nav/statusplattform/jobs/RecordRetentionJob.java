@@ -0,0 +1,197 @@
+package no.nav.statusplattform.jobs;
+
+import nav.statusplattform.core.enums.ServiceType;
+import nav.statusplattform.core.records.RetentionMetrics;
+import nav.statusplattform.core.records.RetentionPolicy;
+import nav.statusplattform.core.repositories.RecordPartitionRepository;
+import nav.statusplattform.core.repositories.RecordRepository;
+import nav.statusplattform.core.repositories.RecordTextRepository;
+import nav.statusplattform.core.repositories.ResponseTimeHistogramRepository;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.fluentjdbc.DbTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+//Sletter records og timer som er eldre enn RetentionPolicy for tjenestetypen. Døgnaggregeringen slettes aldri.
+//Er service_status partisjonert, droppes hele døgnpartisjoner som er eldre enn lengste retention for records, og nye
+//partisjoner opprettes på forhånd. Records for tjenestetyper med kortere retention, og alle records når tabellen ikke
+//er partisjonert, slettes i små biter med pause mellom hver. Det samme gjelder records i default-partisjonen, og
+//tekster i record_text som ingen records bruker lenger.
+//Records slettes aldri fra og med siste time i hourly_status_aggregation_service, og timer aldri fra og med siste døgn i
+//daily_status_aggregation_service, fordi aggregeringsjobbene regner ut siste time og døgn på nytt. Henger aggregeringen
+//etter, beholdes radene til de er rullet opp.
+public class RecordRetentionJob extends Thread {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecordRetentionJob.class);
+
+    private static final int CHUNK_SIZE = 1000;
+    private static final int MAX_CHUNKS_PER_RUN = 100;
+    private static final long PAUSE_BETWEEN_CHUNKS_MILLIS = 200;
+    private static final int PARTITIONS_AHEAD_DAYS = 3;
+    //Cutoff når ingenting er rullet opp ennå
+    private static final ZonedDateTime NOTHING_ROLLED_UP = Instant.EPOCH.atZone(ZoneOffset.UTC);
+
+    private final DbContext dbContext;
+    private final RecordRepository recordRepository;
+    private final RecordPartitionRepository recordPartitionRepository;
+    private final RecordTextRepository recordTextRepository;
+    private final ServiceRepository serviceRepository;
+    private final ResponseTimeHistogramRepository histogramRepository;
+    private DataSource dataSource;
+    private RetentionPolicy retentionPolicy = new RetentionPolicy();
+
+    private long totalRowsDeleted;
+
+    public RecordRetentionJob(DbContext dbContext) {
+        this.dbContext = dbContext;
+        this.recordRepository = new RecordRepository(dbContext);
+        this.recordPartitionRepository = new RecordPartitionRepository(dbContext);
+        this.recordTextRepository = new RecordTextRepository(dbContext);
+        this.serviceRepository = new ServiceRepository(dbContext);
+        this.histogramRepository = new ResponseTimeHistogramRepository(dbContext);
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void setRetentionPolicy(RetentionPolicy retentionPolicy) {
+        this.retentionPolicy = retentionPolicy;
+    }
+
+    public void run() {
+        try {
+            deleteOldRecords();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Record retention failed", e);
+        }
+    }
+
+    private void deleteOldRecords() throws InterruptedException {
+        ZonedDateTime now = ZonedDateTime.now();
+        ZonedDateTime latestHour = getLatestHour();
+        Duration longestRaw = retentionPolicy.getLongestRaw();
+        ZonedDateTime longestCutoff = earliest(now.minus(longestRaw), latestHour);
+        boolean partitioned = maintainPartitions(longestCutoff);
+        if (partitioned) {
+            deleteRecords("records older than " + longestCutoff + " in the default partition", () -> recordPartitionRepository.deleteFromDefaultPartition(longestCutoff, CHUNK_SIZE),
+                    RetentionMetrics::recordsDeleted);
+        }
+        for (ServiceType type : ServiceType.values()) {
+            Duration raw = retentionPolicy.getRaw(type);
+            if (!partitioned || raw.compareTo(longestRaw) < 0) {
+                ZonedDateTime cutoff = earliest(now.minus(raw), latestHour);
+                deleteRecords(type + " records older than " + cutoff, () -> recordRepository.deleteRecordsOlderThan(cutoff, type, CHUNK_SIZE),
+                        RetentionMetrics::recordsDeleted);
+            }
+        }
+        deleteRecords("unreferenced record texts", () -> recordTextRepository.deleteUnreferenced(CHUNK_SIZE),
+                RetentionMetrics::recordTextsDeleted);
+        deleteHours(now);
+        RetentionMetrics.runCompleted();
+    }
+
+    private void deleteRecords(String description, IntSupplier deleteChunk, LongConsumer metric) throws InterruptedException {
+        long deletedThisRun = 0;
+        for (int chunk = 0; chunk < MAX_CHUNKS_PER_RUN; chunk++) {
+            int deleted = deleteChunk(deleteChunk);
+            deletedThisRun += deleted;
+            if (deleted < CHUNK_SIZE) {
+                break;
+            }
+            Thread.sleep(PAUSE_BETWEEN_CHUNKS_MILLIS);
+        }
+        totalRowsDeleted += deletedThisRun;
+        metric.accept(deletedThisRun);
+        logger.info("Record retention deleted {} {} ({} in total)", deletedThisRun, description, totalRowsDeleted);
+    }
+
+    //Timer er få sammenlignet med records, og slettes i én transaksjon
+    private void deleteHours(ZonedDateTime now) {
+        ZonedDateTime latestDay = getLatestDay();
+        int hourlyRowsDeleted = 0;
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+            try (DbTransaction transaction = dbContext.ensureTransaction()) {
+                for (ServiceType type : ServiceType.values()) {
+                    ZonedDateTime cutoff = earliest(now.minus(retentionPolicy.getHourly(type)), latestDay);
+                    int statusHours = serviceRepository.deleteHourlyStatusOlderThan(cutoff, type);
+                    int histogramHours = histogramRepository.deleteOlderThan(cutoff, type);
+                    hourlyRowsDeleted += statusHours + histogramHours;
+                    logger.info("Record retention deleted {} hourly status and {} hourly response time rows for {} older than {}",
+                            statusHours, histogramHours, type, cutoff);
+                }
+                transaction.setComplete();
+            }
+        }
+        RetentionMetrics.hourlyRowsDeleted(hourlyRowsDeleted);
+    }
+
+    private ZonedDateTime getLatestHour() {
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+            return serviceRepository.getLatestHourlyStatus().orElse(NOTHING_ROLLED_UP);
+        }
+    }
+
+    private ZonedDateTime getLatestDay() {
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+            return serviceRepository.getLatestDailyStatus()
+                    .map(day -> day.atStartOfDay(ServiceRepository.AGGREGATION_ZONE))
+                    .orElse(NOTHING_ROLLED_UP);
+        }
+    }
+
+    private static ZonedDateTime earliest(ZonedDateTime cutoff, ZonedDateTime limit) {
+        return limit.isBefore(cutoff) ? limit : cutoff;
+    }
+
+    //Returnerer false dersom tabellen ikke er partisjonert.
+    //Partisjoner droppes først når hele døgnet er eldre enn cutoff, så records beholdes opptil et døgn ekstra.
+    private boolean maintainPartitions(ZonedDateTime cutoff) {
+        List<LocalDate> expired;
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+            try (DbTransaction transaction = dbContext.ensureTransaction()) {
+                if (!recordPartitionRepository.isPartitioned()) {
+                    return false;
+                }
+                LocalDate today = LocalDate.now(ZoneOffset.UTC);
+                for (int i = 0; i <= PARTITIONS_AHEAD_DAYS; i++) {
+                    recordPartitionRepository.createPartition(today.plusDays(i));
+                }
+                expired = recordPartitionRepository.getPartitionDays().stream()
+                        .filter(day -> !day.plusDays(1).atStartOfDay(ZoneOffset.UTC).isAfter(cutoff))
+                        .collect(Collectors.toList());
+                expired.forEach(recordPartitionRepository::dropPartition);
+                transaction.setComplete();
+                logger.info("Record retention dropped partitions {} older than {}", expired, cutoff);
+            }
+        }
+        RetentionMetrics.partitionsDropped(expired.size());
+        return true;
+    }
+
+    //Hver bit i egen transaksjon, slik at låser og WAL holdes små
+    private int deleteChunk(IntSupplier deleteChunk) {
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+            try (DbTransaction transaction = dbContext.ensureTransaction()) {
+                int deleted = deleteChunk.getAsInt();
+                transaction.setComplete();
+                return deleted;
+            }
+        }
+    }
+}
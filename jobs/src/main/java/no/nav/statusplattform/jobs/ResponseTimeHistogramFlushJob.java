@@ -0,0 +1,42 @@
+package no.nav.statusplattform.jobs;
+
+import nav.statusplattform.core.records.ResponseTimeHistogramBuffer;
+import nav.statusplattform.core.repositories.ResponseTimeHistogramRepository;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.fluentjdbc.DbTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+
+//Skriver histogrammer over responstid for avsluttede timer fra minnet til response_time_histogram
+public class ResponseTimeHistogramFlushJob extends Thread {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseTimeHistogramFlushJob.class);
+
+    private final DbContext dbContext;
+    private final ResponseTimeHistogramRepository histogramRepository;
+    private DataSource dataSource;
+
+    public ResponseTimeHistogramFlushJob(DbContext dbContext) {
+        this.dbContext = dbContext;
+        this.histogramRepository = new ResponseTimeHistogramRepository(dbContext);
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void run() {
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+            try (DbTransaction transaction = dbContext.ensureTransaction()) {
+                ResponseTimeHistogramBuffer.flush(histogramRepository, Instant.now());
+                transaction.setComplete();
+            }
+        } catch (Exception e) {
+            logger.error("Could not flush response time histograms", e);
+        }
+    }
+}
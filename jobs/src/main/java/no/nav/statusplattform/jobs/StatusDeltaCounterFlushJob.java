@@ -0,0 +1,34 @@
+package no.nav.statusplattform.jobs;
+
+import nav.statusplattform.core.records.StatusDeltaCounterBuffer;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+
+//Skriver tellere for uendret status fra minnet til service_status_delta
+public class StatusDeltaCounterFlushJob extends Thread {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatusDeltaCounterFlushJob.class);
+
+    private final DbContext dbContext;
+    private DataSource dataSource;
+
+    public StatusDeltaCounterFlushJob(DbContext dbContext) {
+        this.dbContext = dbContext;
+    }
+
+    public void setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void run() {
+        try (DbContextConnection ignored = dbContext.startConnection(dataSource)) {
+            StatusDeltaCounterBuffer.flush(dbContext);
+        } catch (Exception e) {
+            logger.error("Could not flush status delta counters", e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package no.nav.statusplattform.jobs;
+
+import nav.statusplattform.core.entities.DailyStatusAggregationForServiceEntity;
+import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.repositories.RecordRepository;
+import nav.statusplattform.core.repositories.SampleData;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import nav.statusplattform.core.repositories.TestDataSource;
+import nav.statusplattform.core.repositories.TestUtil;
+import org.assertj.core.api.Assertions;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+class DailyStatusAggregationJobTest {
+
+    private final DataSource dataSource = TestDataSource.create();
+
+    private final DbContext dbContext = new DbContext();
+    private DbContextConnection connection;
+
+    private final ServiceRepository serviceRepository = new ServiceRepository(dbContext);
+
+    @BeforeEach
+    void startConnection() {
+        connection = dbContext.startConnection(dataSource);
+        TestUtil.clearAllTableData(dbContext);
+    }
+
+    @AfterEach
+    void endConnection() {
+        connection.close();
+    }
+
+    @Test
+    void rollsUpRecordsThroughHoursToDaysInSameZone() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        LocalDate yesterday = LocalDate.now(ServiceRepository.AGGREGATION_ZONE).minusDays(1);
+        ZonedDateTime yesterdayStart = yesterday.atStartOfDay(ServiceRepository.AGGREGATION_ZONE);
+        saveRecord(service, ServiceStatus.ISSUE, yesterdayStart.minusMinutes(30));
+        saveRecord(service, ServiceStatus.OK, yesterdayStart.plusHours(1).plusMinutes(30));
+        saveRecord(service, ServiceStatus.OK, yesterdayStart.plusHours(12));
+        saveRecord(service, ServiceStatus.DOWN, yesterdayStart.plusHours(22).plusMinutes(30));
+        HourlyStatusAggregationJob hourlyJob = new HourlyStatusAggregationJob(new DbContext());
+        hourlyJob.setDataSource(dataSource);
+        DailyStatusAggregationJob dailyJob = new DailyStatusAggregationJob(new DbContext());
+        dailyJob.setDataSource(dataSource);
+        //Act
+        hourlyJob.run();
+        dailyJob.run();
+        dailyJob.run();
+        //Assert
+        List<DailyStatusAggregationForServiceEntity> history = serviceRepository.getServiceHistory(service.getId(), yesterday);
+        Assertions.assertThat(history).hasSize(1);
+        Assertions.assertThat(history.get(0).getAggregation_date()).isEqualTo(yesterday);
+        Assertions.assertThat(history.get(0).getNumber_of_status_ok()).isEqualTo(2);
+        Assertions.assertThat(history.get(0).getNumber_of_status_issue()).isZero();
+        Assertions.assertThat(history.get(0).getNumber_of_status_down()).isEqualTo(1);
+    }
+
+    private void saveRecord(ServiceEntity service, ServiceStatus status, ZonedDateTime createdAt) {
+        RecordRepository.saveRecordBackInTime(SampleData.getRandomizedRecordEntityForService(service)
+                .setStatus(status).setCreated_at(createdAt), dbContext);
+    }
+}
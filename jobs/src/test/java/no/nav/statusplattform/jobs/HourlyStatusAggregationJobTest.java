@@ -0,0 +1,69 @@
+package no.nav.statusplattform.jobs;
+
+import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.repositories.RecordRepository;
+import nav.statusplattform.core.repositories.SampleData;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import nav.statusplattform.core.repositories.TestDataSource;
+import nav.statusplattform.core.repositories.TestUtil;
+import org.assertj.core.api.Assertions;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+class HourlyStatusAggregationJobTest {
+
+    private final DataSource dataSource = TestDataSource.create();
+
+    private final DbContext dbContext = new DbContext();
+    private DbContextConnection connection;
+
+    private final ServiceRepository serviceRepository = new ServiceRepository(dbContext);
+
+    @BeforeEach
+    void startConnection() {
+        connection = dbContext.startConnection(dataSource);
+        TestUtil.clearAllTableData(dbContext);
+    }
+
+    @AfterEach
+    void endConnection() {
+        connection.close();
+    }
+
+    @Test
+    void rerunReplacesLatestHourWithoutCountingTwice() {
+        //Arrange
+        ServiceEntity service = SampleData.getRandomizedServiceEntity();
+        service.setId(serviceRepository.save(service));
+        ZonedDateTime hour = ZonedDateTime.now(ZoneOffset.UTC).minusMinutes(5).truncatedTo(ChronoUnit.HOURS).minusHours(1);
+        saveRecord(service, ServiceStatus.OK, hour.plusMinutes(10));
+        saveRecord(service, ServiceStatus.DOWN, hour.plusMinutes(20));
+        HourlyStatusAggregationJob job = new HourlyStatusAggregationJob(new DbContext());
+        job.setDataSource(dataSource);
+        job.run();
+        //Act
+        saveRecord(service, ServiceStatus.OK, hour.plusMinutes(30));
+        job.run();
+        //Assert
+        List<int[]> hours = dbContext.table("hourly_status_aggregation_service").where("service_id", service.getId())
+                .list(row -> new int[]{row.getInt("number_of_status_ok"), row.getInt("number_of_status_down")});
+        Assertions.assertThat(hours).containsExactly(new int[]{2, 1});
+        Assertions.assertThat(serviceRepository.getLatestHourlyStatus()).hasValueSatisfying(latest ->
+                Assertions.assertThat(latest.toInstant()).isEqualTo(hour.toInstant()));
+    }
+
+    private void saveRecord(ServiceEntity service, ServiceStatus status, ZonedDateTime createdAt) {
+        RecordRepository.saveRecordBackInTime(SampleData.getRandomizedRecordEntityForService(service)
+                .setStatus(status).setCreated_at(createdAt), dbContext);
+    }
+}
@@ -0,0 +1,162 @@
+package no.nav.statusplattform.jobs;
+
+import nav.statusplattform.core.entities.ServiceEntity;
+import nav.statusplattform.core.enums.ServiceStatus;
+import nav.statusplattform.core.enums.ServiceType;
+import nav.statusplattform.core.records.RetentionMetrics;
+import nav.statusplattform.core.records.RetentionPolicy;
+import nav.statusplattform.core.repositories.RecordRepository;
+import nav.statusplattform.core.repositories.SampleData;
+import nav.statusplattform.core.repositories.ServiceRepository;
+import nav.statusplattform.core.repositories.TestDataSource;
+import nav.statusplattform.core.repositories.TestUtil;
+import org.assertj.core.api.Assertions;
+import org.fluentjdbc.DbContext;
+import org.fluentjdbc.DbContextConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+class RecordRetentionJobTest {
+
+    private final DataSource dataSource = TestDataSource.create();
+
+    private final DbContext dbContext = new DbContext();
+    private DbContextConnection connection;
+
+    private final ServiceRepository serviceRepository = new ServiceRepository(dbContext);
+
+    @BeforeEach
+    void startConnection() {
+        connection = dbContext.startConnection(dataSource);
+        TestUtil.clearAllTableData(dbContext);
+    }
+
+    @AfterEach
+    void endConnection() {
+        connection.close();
+    }
+
+    @Test
+    void deletesRecordsOlderThanRetentionForServiceType() {
+        //Arrange
+        ServiceEntity tjeneste = saveService(ServiceType.TJENESTE);
+        ServiceEntity komponent = saveService(ServiceType.KOMPONENT);
+        ZonedDateTime now = ZonedDateTime.now();
+        UUID expired = saveRecord(tjeneste, now.minusHours(4));
+        UUID kept = saveRecord(tjeneste, now.minusHours(2));
+        UUID keptForKomponent = saveRecord(komponent, now.minusHours(4));
+        serviceRepository.aggregateHourlyStatus(now.minusHours(2).withZoneSameInstant(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS));
+        RecordRetentionJob job = createJob(new RetentionPolicy().setRaw(ServiceType.TJENESTE, Duration.ofHours(3)));
+        RetentionMetrics.clear();
+        //Act
+        job.run();
+        //Assert
+        Assertions.assertThat(recordIds()).contains(kept, keptForKomponent).doesNotContain(expired);
+        Assertions.assertThat(RetentionMetrics.getRecordsDeleted()).isEqualTo(1);
+        Assertions.assertThat(RetentionMetrics.getRuns()).isEqualTo(1);
+        Assertions.assertThat(RetentionMetrics.getLastRun()).isPresent();
+    }
+
+    @Test
+    void keepsRecordsThatAreNotRolledUpWhenAggregationLags() {
+        //Arrange
+        ServiceEntity service = saveService(ServiceType.TJENESTE);
+        ZonedDateTime latestHour = ZonedDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS).minusHours(6);
+        UUID rolledUp = saveRecord(service, latestHour.minusMinutes(30));
+        UUID inLatestHour = saveRecord(service, latestHour.plusMinutes(30));
+        UUID notRolledUp = saveRecord(service, latestHour.plusHours(1).plusMinutes(30));
+        serviceRepository.aggregateHourlyStatus(latestHour);
+        RecordRetentionJob job = createJob(new RetentionPolicy().setRaw(ServiceType.TJENESTE, RetentionPolicy.MIN_RAW));
+        //Act
+        job.run();
+        //Assert
+        Assertions.assertThat(recordIds()).contains(inLatestHour, notRolledUp).doesNotContain(rolledUp);
+    }
+
+    @Test
+    void keepsRecordsWhenNothingIsRolledUp() {
+        //Arrange
+        ServiceEntity service = saveService(ServiceType.TJENESTE);
+        UUID expired = saveRecord(service, ZonedDateTime.now().minusHours(4));
+        RecordRetentionJob job = createJob(new RetentionPolicy().setRaw(ServiceType.TJENESTE, RetentionPolicy.MIN_RAW));
+        //Act
+        job.run();
+        //Assert
+        Assertions.assertThat(recordIds()).contains(expired);
+    }
+
+    @Test
+    void deletesHoursOlderThanHourlyRetention() {
+        //Arrange
+        ServiceEntity service = saveService(ServiceType.TJENESTE);
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.HOURS);
+        ZonedDateTime expiredHour = now.minusDays(4);
+        ZonedDateTime keptHour = now.minusDays(2);
+        saveRecord(service, expiredHour.plusMinutes(30));
+        saveRecord(service, keptHour.plusMinutes(30));
+        serviceRepository.aggregateHourlyStatus(expiredHour);
+        serviceRepository.aggregateHourlyStatus(keptHour);
+        serviceRepository.aggregateDailyStatus(keptHour.toLocalDate());
+        RecordRetentionJob job = createJob(new RetentionPolicy().setHourly(ServiceType.TJENESTE, RetentionPolicy.MIN_HOURLY));
+        //Act
+        job.run();
+        //Assert
+        Assertions.assertThat(dbContext.table("hourly_status_aggregation_service").where("service_id", service.getId())
+                        .list(row -> row.getZonedDateTime("hour_start").toInstant()))
+                .containsExactly(keptHour.toInstant());
+    }
+
+    @Test
+    void keepsHoursThatAreNotRolledUpWhenDailyAggregationLags() {
+        //Arrange
+        ServiceEntity service = saveService(ServiceType.TJENESTE);
+        LocalDate latestDay = LocalDate.now(ServiceRepository.AGGREGATION_ZONE).minusDays(6);
+        ZonedDateTime rolledUpHour = latestDay.minusDays(1).atStartOfDay(ServiceRepository.AGGREGATION_ZONE).plusHours(12);
+        ZonedDateTime hourInLatestDay = latestDay.atStartOfDay(ServiceRepository.AGGREGATION_ZONE).plusHours(12);
+        ZonedDateTime notRolledUpHour = hourInLatestDay.plusDays(1);
+        List.of(rolledUpHour, hourInLatestDay, notRolledUpHour).forEach(hour -> {
+            saveRecord(service, hour.plusMinutes(30));
+            serviceRepository.aggregateHourlyStatus(hour);
+        });
+        serviceRepository.aggregateDailyStatus(latestDay);
+        RecordRetentionJob job = createJob(new RetentionPolicy().setHourly(ServiceType.TJENESTE, RetentionPolicy.MIN_HOURLY));
+        //Act
+        job.run();
+        //Assert
+        Assertions.assertThat(dbContext.table("hourly_status_aggregation_service").where("service_id", service.getId())
+                        .orderBy("hour_start").list(row -> row.getZonedDateTime("hour_start").toInstant()))
+                .containsExactly(hourInLatestDay.toInstant(), notRolledUpHour.toInstant());
+    }
+
+    private RecordRetentionJob createJob(RetentionPolicy retentionPolicy) {
+        RecordRetentionJob job = new RecordRetentionJob(new DbContext());
+        job.setDataSource(dataSource);
+        job.setRetentionPolicy(retentionPolicy);
+        return job;
+    }
+
+    private ServiceEntity saveService(ServiceType type) {
+        ServiceEntity service = SampleData.getRandomizedServiceEntity().setType(type);
+        service.setId(serviceRepository.save(service));
+        return service;
+    }
+
+    private UUID saveRecord(ServiceEntity service, ZonedDateTime createdAt) {
+        return RecordRepository.saveRecordBackInTime(SampleData.getRandomizedRecordEntityForService(service)
+                .setStatus(ServiceStatus.OK).setCreated_at(createdAt), dbContext);
+    }
+
+    private List<UUID> recordIds() {
+        return dbContext.table("service_status").unordered().list(row -> row.getUUID("id"));
+    }
+}
@@ -18,6 +18,8 @@ public class DataSourceTransformer {
         properties.put("username", config.username);
         properties.put("password", config.password);
         properties.put("maximumPoolSize","32");
+        //Lar driveren skrive om batch-inserts til multi-row insert
+        properties.put("dataSource.reWriteBatchedInserts","true");
 
         int count = 0;
         int maxTries = 10;
@@ -32,7 +34,10 @@ public class DataSourceTransformer {
                 }
             }
         }
-        Flyway.configure().dataSource(dataSource).load().migrate();
+        //db/postgresql inneholder migreringer som ikke kan kjøres mot H2 i testene
+        Flyway.configure().dataSource(dataSource)
+                .locations("classpath:db/migration", "classpath:db/postgresql")
+                .load().migrate();
         return dataSource;
     }
 }
@@ -1,6 +1,8 @@
 package no.nav.statusplattform.server;
 
 
+import nav.statusplattform.core.enums.ServiceType;
+import nav.statusplattform.core.records.RetentionPolicy;
 import no.nav.statusplattform.AppConfig;
 import no.nav.statusplattform.AppConfig.AzureConfig;
 import no.nav.statusplattform.AppConfig.DbConfig;
@@ -22,6 +24,7 @@ import javax.sql.DataSource;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Duration;
 
 public class StatusplattformServer {
     private static final Logger logger = LoggerFactory.getLogger(StatusplattformServer.class);
@@ -45,12 +48,22 @@ public class StatusplattformServer {
                 statusplattformApi,
                 swaggerDocumentation
                 ));
+        //Stopper connector først og deretter konteksten, slik at ingest-køen tømmes før prosessen avsluttes
+        server.setStopAtShutdown(true);
         setupConfiguration();
     }
 
     private void setupConfiguration() {
         setFrontEndLocation(this.appConfig.frontendCorsValue);
+        if (this.appConfig.asyncRecordIngest) {
+            statusplattformApi.enableAsyncRecordIngest(this.appConfig.recordIngestQueueCapacity, this.appConfig.recordIngestWriters);
+        }
         setDataSource(DataSourceTransformer.create(this.appConfig.dbConfig));
+        jobHandler.setRetentionPolicy(new RetentionPolicy()
+                .setRaw(ServiceType.TJENESTE, Duration.ofHours(this.appConfig.retentionRawHoursTjeneste))
+                .setRaw(ServiceType.KOMPONENT, Duration.ofHours(this.appConfig.retentionRawHoursKomponent))
+                .setHourly(ServiceType.TJENESTE, Duration.ofDays(this.appConfig.retentionHourlyDaysTjeneste))
+                .setHourly(ServiceType.KOMPONENT, Duration.ofDays(this.appConfig.retentionHourlyDaysKomponent)));
 
         // TODO: Figure out how to handle these (static?) classes' configuration
         //new AccessTokenHelper().setupAccessToken(this.appConfig.azConfig);